@@ -26,7 +26,7 @@ import org.eclipse.swt.widgets.Canvas;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Event;
 import org.eclipse.swt.widgets.Listener;
-import org.mihalis.opal.utils.SWTGraphicUtil;
+import org.mihalis.opal.utils.ResourceRegistry;
 
 /**
  * Instances of this class provide a selectable user interface object that can
@@ -72,11 +72,11 @@ public class AngleSlider extends Canvas {
 	public AngleSlider(final Composite parent, final int style) {
 		super(parent, style | SWT.DOUBLE_BUFFERED);
 
-		final ClassLoader loader = org.mihalis.opal.angles.AngleSlider.class.getClassLoader();
+		final ResourceRegistry registry = ResourceRegistry.getInstance(getDisplay());
 
-		backgroundImage = new Image(getDisplay(), loader.getResourceAsStream("images/angleBackground.png"));
-		buttonFocus = new Image(getDisplay(), loader.getResourceAsStream("images/angleButtonFocus.png"));
-		buttonNoFocus = new Image(getDisplay(), loader.getResourceAsStream("images/angleButtonFocusLost.png"));
+		backgroundImage = registry.getImage("images/angleBackground.png");
+		buttonFocus = registry.getImage("images/angleButtonFocus.png");
+		buttonNoFocus = registry.getImage("images/angleButtonFocusLost.png");
 
 		addListeners();
 
@@ -100,9 +100,7 @@ public class AngleSlider extends Canvas {
 
 			@Override
 			public void widgetDisposed(final DisposeEvent arg0) {
-				SWTGraphicUtil.safeDispose(backgroundImage);
-				SWTGraphicUtil.safeDispose(buttonFocus);
-				SWTGraphicUtil.safeDispose(buttonNoFocus);
+				ResourceRegistry.getInstance(getDisplay()).release(backgroundImage, buttonFocus, buttonNoFocus);
 			}
 		});
 
@@ -215,14 +213,6 @@ public class AngleSlider extends Canvas {
 		return new Point(WHOLE_RADIUS, WHOLE_RADIUS);
 	}
 
-	@Override
-	public void dispose() {
-		super.dispose();
-		backgroundImage.dispose();
-		buttonFocus.dispose();
-		buttonNoFocus.dispose();
-	}
-
 	/**
 	 * @see org.eclipse.swt.widgets.Scale#getSelection()
 	 */
@@ -10,8 +10,6 @@
  *******************************************************************************/
 package org.mihalis.opal.brushedMetalComposite;
 
-import java.util.Random;
-
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.SWTException;
 import org.eclipse.swt.events.DisposeEvent;
@@ -19,9 +17,6 @@ import org.eclipse.swt.events.DisposeListener;
 import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.graphics.ImageData;
-import org.eclipse.swt.graphics.PaletteData;
-import org.eclipse.swt.graphics.RGB;
-import org.eclipse.swt.graphics.Rectangle;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Event;
@@ -42,9 +37,7 @@ public class BrushedMetalComposite extends Composite {
 	private int color = 0xff888888;
 	private float shine = 0.1f;
 	private boolean monochrome = true;
-	private Random randomNumbers;
-	private final PaletteData palette = new PaletteData(0xFF0000, 0x00FF00, 0x0000FF);
-	private ImageData imageData;
+	private int stripWidth;
 
 	/**
 	 * Constructs a new instance of this class given its parent and a style
@@ -89,12 +82,17 @@ public class BrushedMetalComposite extends Composite {
 		this.addListener(SWT.Resize, new Listener() {
 			@Override
 			public void handleEvent(final Event event) {
-				createBrushedMetalBackground();
+				final int width = getClientArea().width;
+				if (BrushedMetalComposite.this.oldImage != null && (BrushedMetalComposite.this.stripWidth == width || !getTexture().hasShine())) {
+					// The background image is repeated, a new height costs
+					// nothing
+					return;
+				}
 				paintControl();
 			}
 		});
 
-		parent.addDisposeListener(new DisposeListener() {
+		this.addDisposeListener(new DisposeListener() {
 			@Override
 			public void widgetDisposed(final DisposeEvent e) {
 				SWTGraphicUtil.safeDispose(BrushedMetalComposite.this.oldImage);
@@ -104,180 +102,36 @@ public class BrushedMetalComposite extends Composite {
 
 	/**
 	 * Paint the component
-	 * @param e event
 	 */
 	private void paintControl() {
 		final Display display = getDisplay();
-		final Image newImage = new Image(display, this.imageData);
+		final int width = getClientArea().width;
+		final Image newImage = new Image(display, createBrushedMetalBackground(width));
 
 		setBackgroundImage(newImage);
 		SWTGraphicUtil.safeDispose(this.oldImage);
 		this.oldImage = newImage;
+		this.stripWidth = width;
 	}
 
 	/**
-	 * Create a brushed metal background
-	 * 
-	 * @return an image data that contains the background
+	 * @return the texture that matches the parameters of this composite,
+	 *         shared with the other composites that use the same parameters
 	 */
-	private void createBrushedMetalBackground() {
-
-		final Rectangle rect = getClientArea();
-		final int width = Math.max(1, rect.width);
-		final int height = Math.max(1, rect.width);
-
-		final int[] inPixels = new int[width];
-
-		this.imageData = new ImageData(width, height, 0x20, this.palette);
-
-		this.randomNumbers = new Random(0);
-		final int a = this.color & 0xff000000;
-		final int r = this.color >> 16 & 0xff;
-		final int g = this.color >> 8 & 0xff;
-		final int b = this.color & 0xff;
-		for (int y = 0; y < height; y++) {
-			for (int x = 0; x < width; x++) {
-				int tr = r;
-				int tg = g;
-				int tb = b;
-				if (this.shine != 0) {
-					final int f = (int) (255 * this.shine * Math.sin((double) x / width * Math.PI));
-					tr += f;
-					tg += f;
-					tb += f;
-				}
-				if (this.monochrome) {
-					final int n = (int) (255 * (2 * this.randomNumbers.nextFloat() - 1) * this.amount);
-					inPixels[x] = a | this.clamp(tr + n) << 16 | this.clamp(tg + n) << 8 | this.clamp(tb + n);
-				} else {
-					inPixels[x] = a | this.random(tr) << 16 | this.random(tg) << 8 | this.random(tb);
-				}
-			}
-
-			if (this.radius != 0) {
-				setDataElements(0, y, width, 1, this.blur(inPixels, width, this.radius));
-			} else {
-				setDataElements(0, y, width, 1, inPixels);
-			}
-		}
-
+	private BrushedMetalTexture getTexture() {
+		return BrushedMetalTexture.getTexture(this.color, this.radius, this.amount, this.shine, this.monochrome);
 	}
 
 	/**
-	 * Sets the data for a rectangle of pixels from a primitive array
+	 * Create a brushed metal background. The texture is computed once per set
+	 * of parameters; only the shine depends on the width of the composite. The
+	 * background is a strip of the texture, repeated vertically by SWT
 	 * 
-	 * @param posX The X coordinate of the upper left pixel location.
-	 * @param posY The Y coordinate of the upper left pixel location.
-	 * @param width Width of the pixel rectangle.
-	 * @param height Height of the pixel rectangle
-	 * @param pixels An array containing the pixel data to place between x,y and
-	 *            x+w-1, y+h-1.
-	 */
-	private void setDataElements(final int posX, final int posY, final int width, final int height, final int[] pixels) {
-		int cpt = 0;
-		for (int y = posY; y < posY + height; y++) {
-			for (int x = posX; x < posX + width; x++) {
-				final int rgb = pixels[cpt++];
-				final int pixel = this.palette.getPixel(new RGB(rgb >> 16 & 0xFF, rgb >> 8 & 0xFF, rgb & 0xFF));
-				this.imageData.setPixel(x, y, pixel);
-				this.imageData.setAlpha(x, y, rgb >> 24 & 0xFF);
-			}
-		}
-	}
-
-	/**
-	 * Add a random number to the value. The result is between 0 and 255
-	 * 
-	 * @param x the initial value
-	 * @return
-	 */
-	private int random(int x) {
-		x += (int) (255 * (2 * this.randomNumbers.nextFloat() - 1) * this.amount);
-		if (x < 0) {
-			x = 0;
-		} else if (x > 0xff) {
-			x = 0xff;
-		}
-		return x;
-	}
-
-	/**
-	 * Clamp a number between 0 and 255
-	 * 
-	 * @param c the number to clamp
-	 * @return the number. If c is negative, returns 0. If c is greater than
-	 *         255, returns 255.
-	 */
-	private int clamp(final int c) {
-		if (c < 0) {
-			return 0;
-		}
-
-		if (c > 255) {
-			return 255;
-		}
-
-		return c;
-	}
-
-	/**
-	 * Apply a blur filter to an array of int that represents and image which
-	 * size is width columns * 1 row
-	 * 
-	 * @param in the array of int that represents the image
-	 * @param width the width of the image
-	 * @param radius the "radius" blur parameter
-	 */
-	private int[] blur(final int[] in, final int width, final int radius) {
-		final int[] out = new int[width];
-		final int widthMinus1 = width - 1;
-		final int r2 = 2 * radius + 1;
-		int tr = 0, tg = 0, tb = 0;
-
-		for (int i = -radius; i <= radius; i++) {
-			final int rgb = in[this.mod(i, width)];
-			tr += rgb >> 16 & 0xff;
-			tg += rgb >> 8 & 0xff;
-			tb += rgb & 0xff;
-		}
-
-		for (int x = 0; x < width; x++) {
-			out[x] = 0xff000000 | tr / r2 << 16 | tg / r2 << 8 | tb / r2;
-
-			int i1 = x + radius + 1;
-			if (i1 > widthMinus1) {
-				i1 = this.mod(i1, width);
-			}
-			int i2 = x - radius;
-			if (i2 < 0) {
-				i2 = this.mod(i2, width);
-			}
-			final int rgb1 = in[i1];
-			final int rgb2 = in[i2];
-
-			tr += (rgb1 & 0xff0000) - (rgb2 & 0xff0000) >> 16;
-			tg += (rgb1 & 0xff00) - (rgb2 & 0xff00) >> 8;
-			tb += (rgb1 & 0xff) - (rgb2 & 0xff);
-		}
-		return out;
-	}
-
-	/**
-	 * Return a mod b. This differs from the % operator with respect to negative
-	 * numbers.
-	 * 
-	 * @param a the dividend
-	 * @param b the divisor
-	 * @return a mod b
+	 * @param width width of the composite
+	 * @return an image data that contains the background
 	 */
-	private int mod(int a, final int b) {
-		final int n = a / b;
-
-		a -= n * b;
-		if (a < 0) {
-			return a + b;
-		}
-		return a;
+	private ImageData createBrushedMetalBackground(final int width) {
+		return getTexture().createStrip(width);
 	}
 
 	// ------------------------------------ Getters and Setters
@@ -294,7 +148,6 @@ public class BrushedMetalComposite extends Composite {
 	 */
 	public void setRadius(final int radius) {
 		this.radius = radius;
-		createBrushedMetalBackground();
 		paintControl();
 	}
 
@@ -318,7 +171,6 @@ public class BrushedMetalComposite extends Composite {
 			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
 		}
 		this.amount = amount;
-		createBrushedMetalBackground();
 		paintControl();
 	}
 
@@ -341,8 +193,6 @@ public class BrushedMetalComposite extends Composite {
 			SWT.error(SWT.ERROR_NULL_ARGUMENT);
 		}
 		this.color = 0xFF << 24 | color.getRed() << 16 | color.getGreen() << 8 | color.getBlue();
-		createBrushedMetalBackground();
-		;
 		paintControl();
 	}
 
@@ -361,11 +211,10 @@ public class BrushedMetalComposite extends Composite {
 	 *                </ul>
 	 */
 	public void setShine(final float shine) {
-		if (this.amount < 0f || this.amount > 1f) {
+		if (shine < 0f || shine > 1f) {
 			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
 		}
 		this.shine = shine;
-		createBrushedMetalBackground();
 		paintControl();
 	}
 
@@ -381,7 +230,6 @@ public class BrushedMetalComposite extends Composite {
 	 */
 	public void setMonochrome(final boolean monochrome) {
 		this.monochrome = monochrome;
-		createBrushedMetalBackground();
 		paintControl();
 	}
 
@@ -0,0 +1,313 @@
+/*******************************************************************************
+ * Copyright (c) 2011 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - initial API and implementation
+ *******************************************************************************/
+package org.mihalis.opal.brushedMetalComposite;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.PaletteData;
+import org.mihalis.opal.utils.RowBandExecutor;
+
+/**
+ * Instances of this class are brushed metal textures. The noise of the
+ * texture is generated once per set of parameters, as a tile that can be
+ * repeated in both directions, and shared by all composites that use these
+ * parameters. The shine depends on the width of the composite: it is added
+ * when a strip of the width of the composite is created from the tile. The
+ * strip is repeated vertically by the background of the composite.
+ */
+class BrushedMetalTexture {
+
+	static final int TILE_WIDTH = 512;
+	static final int TILE_HEIGHT = 128;
+	private static final int MAX_TEXTURES = 16;
+	private static final PaletteData PALETTE = new PaletteData(0xFF0000, 0x00FF00, 0x0000FF);
+
+	private static final Map<Parameters, BrushedMetalTexture> TEXTURES = new LinkedHashMap<Parameters, BrushedMetalTexture>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<Parameters, BrushedMetalTexture> eldest) {
+			return size() > MAX_TEXTURES;
+		}
+	};
+
+	private final Parameters parameters;
+	private final int[] tile;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param parameters parameters of the texture
+	 */
+	private BrushedMetalTexture(final Parameters parameters) {
+		this.parameters = parameters;
+		this.tile = new int[TILE_WIDTH * TILE_HEIGHT];
+		createTile();
+	}
+
+	/**
+	 * @param color color of the metal (ARGB)
+	 * @param radius radius of the blur
+	 * @param amount amount of noise
+	 * @param shine shine
+	 * @param monochrome if true, the noise is the same for all components
+	 * @return the texture for these parameters, shared with the other
+	 *         composites that use the same parameters
+	 */
+	static synchronized BrushedMetalTexture getTexture(final int color, final int radius, final float amount, final float shine, final boolean monochrome) {
+		final Parameters parameters = new Parameters(color, radius, amount, shine, monochrome);
+		BrushedMetalTexture texture = TEXTURES.get(parameters);
+		if (texture == null) {
+			texture = new BrushedMetalTexture(parameters);
+			TEXTURES.put(parameters, texture);
+		}
+		return texture;
+	}
+
+	/**
+	 * @return <code>true</code> if the texture depends on the width of the
+	 *         composite
+	 */
+	boolean hasShine() {
+		return this.parameters.shine != 0;
+	}
+
+	/**
+	 * Create the tile: noise added to the color, then blurred horizontally.
+	 * The blur wraps around the tile, so it can be repeated horizontally. Each
+	 * row has its own sequence of random numbers
+	 */
+	private void createTile() {
+		final int a = this.parameters.color & 0xff000000;
+		final int r = this.parameters.color >> 16 & 0xff;
+		final int g = this.parameters.color >> 8 & 0xff;
+		final int b = this.parameters.color & 0xff;
+		final float amount = this.parameters.amount;
+
+		final int[] inPixels = new int[TILE_WIDTH];
+		final int[] outPixels = new int[TILE_WIDTH];
+		final Random randomNumbers = new Random();
+		for (int y = 0; y < TILE_HEIGHT; y++) {
+			randomNumbers.setSeed(y);
+			for (int x = 0; x < TILE_WIDTH; x++) {
+				if (this.parameters.monochrome) {
+					final int n = (int) (255 * (2 * randomNumbers.nextFloat() - 1) * amount);
+					inPixels[x] = a | clamp(r + n) << 16 | clamp(g + n) << 8 | clamp(b + n);
+				} else {
+					inPixels[x] = a | random(randomNumbers, amount, r) << 16 | random(randomNumbers, amount, g) << 8 | random(randomNumbers, amount, b);
+				}
+			}
+
+			if (this.parameters.radius != 0) {
+				blur(inPixels, outPixels, TILE_WIDTH, this.parameters.radius);
+				System.arraycopy(outPixels, 0, this.tile, y * TILE_WIDTH, TILE_WIDTH);
+			} else {
+				System.arraycopy(inPixels, 0, this.tile, y * TILE_WIDTH, TILE_WIDTH);
+			}
+		}
+	}
+
+	/**
+	 * Create a strip of the texture, made of the tile repeated horizontally
+	 * and of the shine. The pixels are written directly in the data of the
+	 * image
+	 * 
+	 * @param width width of the strip. If the texture has no shine, the strip
+	 *            has the width of the tile, since it can be repeated
+	 * @return the image data of the strip
+	 */
+	ImageData createStrip(final int width) {
+		final int stripWidth = hasShine() ? Math.max(1, width) : TILE_WIDTH;
+		final ImageData data = new ImageData(stripWidth, TILE_HEIGHT, 0x20, PALETTE);
+		data.alphaData = new byte[stripWidth * TILE_HEIGHT];
+
+		final int[] shineOffsets = new int[stripWidth];
+		if (hasShine()) {
+			for (int x = 0; x < stripWidth; x++) {
+				shineOffsets[x] = (int) (255 * this.parameters.shine * Math.sin((double) x / stripWidth * Math.PI));
+			}
+		}
+
+		RowBandExecutor.execute(stripWidth, TILE_HEIGHT, new RowBandExecutor.RowBandTask() {
+			@Override
+			public void process(final int startRow, final int endRow) {
+				for (int y = startRow; y < endRow; y++) {
+					int index = y * data.bytesPerLine;
+					int alphaIndex = y * stripWidth;
+					final int tileOffset = y * TILE_WIDTH;
+					for (int x = 0; x < stripWidth; x++) {
+						final int pixel = BrushedMetalTexture.this.tile[tileOffset + x % TILE_WIDTH];
+						final int f = shineOffsets[x];
+						// 32 bits pixels are stored with the most significant
+						// byte first: unused byte, red, green, blue
+						data.data[index++] = 0;
+						data.data[index++] = (byte) clamp((pixel >> 16 & 0xff) + f);
+						data.data[index++] = (byte) clamp((pixel >> 8 & 0xff) + f);
+						data.data[index++] = (byte) clamp((pixel & 0xff) + f);
+						data.alphaData[alphaIndex++] = (byte) (pixel >> 24);
+					}
+				}
+			}
+		});
+		return data;
+	}
+
+	/**
+	 * Add a random number to the value. The result is between 0 and 255
+	 * 
+	 * @param randomNumbers generator of random numbers
+	 * @param amount amount of noise
+	 * @param x the initial value
+	 * @return
+	 */
+	private static int random(final Random randomNumbers, final float amount, int x) {
+		x += (int) (255 * (2 * randomNumbers.nextFloat() - 1) * amount);
+		if (x < 0) {
+			x = 0;
+		} else if (x > 0xff) {
+			x = 0xff;
+		}
+		return x;
+	}
+
+	/**
+	 * Clamp a number between 0 and 255
+	 * 
+	 * @param c the number to clamp
+	 * @return the number. If c is negative, returns 0. If c is greater than
+	 *         255, returns 255.
+	 */
+	private static int clamp(final int c) {
+		if (c < 0) {
+			return 0;
+		}
+
+		if (c > 255) {
+			return 255;
+		}
+
+		return c;
+	}
+
+	/**
+	 * Apply a blur filter to an array of int that represents and image which
+	 * size is width columns * 1 row
+	 * 
+	 * @param in the array of int that represents the image
+	 * @param out the array that receives the blurred image
+	 * @param width the width of the image
+	 * @param radius the "radius" blur parameter
+	 */
+	private static void blur(final int[] in, final int[] out, final int width, final int radius) {
+		final int widthMinus1 = width - 1;
+		final int r2 = 2 * radius + 1;
+		int tr = 0, tg = 0, tb = 0;
+
+		for (int i = -radius; i <= radius; i++) {
+			final int rgb = in[mod(i, width)];
+			tr += rgb >> 16 & 0xff;
+			tg += rgb >> 8 & 0xff;
+			tb += rgb & 0xff;
+		}
+
+		for (int x = 0; x < width; x++) {
+			out[x] = 0xff000000 | tr / r2 << 16 | tg / r2 << 8 | tb / r2;
+
+			int i1 = x + radius + 1;
+			if (i1 > widthMinus1) {
+				i1 = mod(i1, width);
+			}
+			int i2 = x - radius;
+			if (i2 < 0) {
+				i2 = mod(i2, width);
+			}
+			final int rgb1 = in[i1];
+			final int rgb2 = in[i2];
+
+			tr += (rgb1 & 0xff0000) - (rgb2 & 0xff0000) >> 16;
+			tg += (rgb1 & 0xff00) - (rgb2 & 0xff00) >> 8;
+			tb += (rgb1 & 0xff) - (rgb2 & 0xff);
+		}
+	}
+
+	/**
+	 * Return a mod b. This differs from the % operator with respect to negative
+	 * numbers.
+	 * 
+	 * @param a the dividend
+	 * @param b the divisor
+	 * @return a mod b
+	 */
+	private static int mod(int a, final int b) {
+		final int n = a / b;
+
+		a -= n * b;
+		if (a < 0) {
+			return a + b;
+		}
+		return a;
+	}
+
+	/**
+	 * Parameters of a texture
+	 */
+	private static class Parameters {
+		private final int color;
+		private final int radius;
+		private final float amount;
+		private final float shine;
+		private final boolean monochrome;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param color color of the metal (ARGB)
+		 * @param radius radius of the blur
+		 * @param amount amount of noise
+		 * @param shine shine
+		 * @param monochrome if true, the noise is the same for all components
+		 */
+		Parameters(final int color, final int radius, final float amount, final float shine, final boolean monochrome) {
+			this.color = color;
+			this.radius = radius;
+			this.amount = amount;
+			this.shine = shine;
+			this.monochrome = monochrome;
+		}
+
+		/**
+		 * @see java.lang.Object#hashCode()
+		 */
+		@Override
+		public int hashCode() {
+			int result = this.color;
+			result = 31 * result + this.radius;
+			result = 31 * result + Float.floatToIntBits(this.amount);
+			result = 31 * result + Float.floatToIntBits(this.shine);
+			return 31 * result + (this.monochrome ? 1 : 0);
+		}
+
+		/**
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof Parameters)) {
+				return false;
+			}
+			final Parameters other = (Parameters) obj;
+			return this.color == other.color && this.radius == other.radius && Float.floatToIntBits(this.amount) == Float.floatToIntBits(other.amount) && Float.floatToIntBits(this.shine) == Float.floatToIntBits(other.shine) && this.monochrome == other.monochrome;
+		}
+	}
+}
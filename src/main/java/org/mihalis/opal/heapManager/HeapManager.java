@@ -10,8 +10,18 @@
  *******************************************************************************/
 package org.mihalis.opal.heapManager;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.SWTException;
+import org.eclipse.swt.events.DisposeEvent;
+import org.eclipse.swt.events.DisposeListener;
 import org.eclipse.swt.events.PaintEvent;
 import org.eclipse.swt.events.PaintListener;
 import org.eclipse.swt.events.SelectionAdapter;
@@ -26,19 +36,36 @@ import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.widgets.Button;
 import org.eclipse.swt.widgets.Canvas;
 import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Widget;
 import org.mihalis.opal.utils.ResourceManager;
 import org.mihalis.opal.utils.SWTGraphicUtil;
 
 /**
  * Instances of this class are controls that display the memory used, the whole
- * memory, and contains a button to perform a GC
+ * memory, and contains a button to perform a GC.<br/>
+ * The bar is split between the old generation, the survivor space and the
+ * eden space, and its tooltip gives the usage of each pool, metaspace
+ * included. The widget does not poll the memory: it is repainted when the
+ * memory pools send a notification, after each garbage collection and each
+ * time the usage of a pool grows by one step.
  */
 public class HeapManager extends Composite {
+	private static final int EDEN = 0;
+	private static final int SURVIVOR = 1;
+	private static final int OLD = 2;
+	private static final int METASPACE = 3;
+	private static final String[] POOL_LABELS = new String[] { ResourceManager.EDEN_SPACE, ResourceManager.SURVIVOR_SPACE, ResourceManager.OLD_GEN_MEMORY, ResourceManager.METASPACE };
+
 	private Canvas bar;
 	private Button button;
 	private int heapMaxSize;
-	private int heapSize;
+	private final List<MemoryPoolMXBean> pools;
+	private final List<Integer> poolKinds;
+	private final long[] poolUsed;
+	private final long[] poolMax;
+	private final AtomicBoolean updatePending;
+	private final Runnable memoryListener;
 	private Color barBorderColor;
 	private Color barInnerColor;
 	private Color barTextColor;
@@ -79,10 +106,85 @@ public class HeapManager extends Composite {
 		gridLayout.horizontalSpacing = gridLayout.verticalSpacing = 0;
 		setLayout(gridLayout);
 
+		this.pools = new ArrayList<MemoryPoolMXBean>();
+		this.poolKinds = new ArrayList<Integer>();
+		for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			final int kind = getKind(pool);
+			if (kind >= 0) {
+				this.pools.add(pool);
+				this.poolKinds.add(kind);
+			}
+		}
+		this.poolUsed = new long[POOL_LABELS.length];
+		this.poolMax = new long[POOL_LABELS.length];
+		this.updatePending = new AtomicBoolean(false);
+
 		createBar();
 		createButton();
-		updateContent();
 		createDefaultColors();
+		this.memoryListener = createMemoryListener();
+		MemoryPoolWatcher.addListener(this.memoryListener);
+		addDisposeListener(new DisposeListener() {
+			@Override
+			public void widgetDisposed(final DisposeEvent e) {
+				MemoryPoolWatcher.removeListener(HeapManager.this.memoryListener);
+			}
+		});
+		updateContent();
+	}
+
+	/**
+	 * @param pool a memory pool
+	 * @return the kind of pool (EDEN, SURVIVOR, OLD or METASPACE), or -1 if
+	 *         the pool is not displayed
+	 */
+	private static int getKind(final MemoryPoolMXBean pool) {
+		final String name = pool.getName();
+		if (pool.getType() == MemoryType.HEAP) {
+			if (name.contains("Eden")) {
+				return EDEN;
+			}
+			if (name.contains("Survivor")) {
+				return SURVIVOR;
+			}
+			return OLD;
+		}
+		if (name.contains("Metaspace") || name.contains("Perm Gen")) {
+			return METASPACE;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the listener called by the memory pool watcher. The updates are
+	 *         coalesced : while an update is pending, no other one is posted
+	 */
+	private Runnable createMemoryListener() {
+		final Display display = getDisplay();
+		final Runnable update = new Runnable() {
+			@Override
+			public void run() {
+				HeapManager.this.updatePending.set(false);
+				if (!isDisposed()) {
+					updateContent();
+				}
+			}
+		};
+		return new Runnable() {
+			@Override
+			public void run() {
+				if (!HeapManager.this.updatePending.compareAndSet(false, true)) {
+					return;
+				}
+				try {
+					if (!display.isDisposed()) {
+						display.asyncExec(update);
+					}
+				} catch (final SWTException e) {
+					// The display has been disposed in the meantime
+				}
+			}
+		};
 	}
 
 	/**
@@ -117,17 +219,32 @@ public class HeapManager extends Composite {
 		gc.fillRectangle(clientArea);
 		gc.drawRectangle(clientArea.x, clientArea.y, clientArea.width - 1, clientArea.height - 1);
 
-		final float width = (clientArea.width - 2f) * this.heapSize / this.heapMaxSize;
+		final long heapUsed = this.poolUsed[OLD] + this.poolUsed[SURVIVOR] + this.poolUsed[EDEN];
+		final int heapSize = toMegabytes(heapUsed);
+		final float ratio = (clientArea.width - 2f) / (this.heapMaxSize * 1024f * 1024f);
+		final int width = Math.min(clientArea.width - 2, (int) (heapUsed * ratio));
 
 		gc.setForeground(this.barGradientColorTopStart);
 		gc.setBackground(this.barGradientColorTopEnd);
-		gc.fillGradientRectangle(clientArea.x + 1, clientArea.y + 1, (int) width, clientArea.height / 2, true);
+		gc.fillGradientRectangle(clientArea.x + 1, clientArea.y + 1, width, clientArea.height / 2, true);
 
 		gc.setForeground(this.barGradientColorMiddleStart);
 		gc.setBackground(this.barBorderColor);
-		gc.fillGradientRectangle(clientArea.x + 1, clientArea.height / 2, (int) width, clientArea.height / 2, true);
+		gc.fillGradientRectangle(clientArea.x + 1, clientArea.height / 2, width, clientArea.height / 2, true);
 
-		final String message = this.heapSize + " " + ResourceManager.getLabel(ResourceManager.MEGABYTES) + "/" + //
+		// Separators between the old generation, the survivor and the eden
+		// spaces
+		gc.setForeground(this.barBorderColor);
+		int x = clientArea.x + 1 + (int) (this.poolUsed[OLD] * ratio);
+		if (x > clientArea.x + 1 && x < clientArea.x + 1 + width) {
+			gc.drawLine(x, clientArea.y + 1, x, clientArea.y + clientArea.height - 2);
+		}
+		x += (int) (this.poolUsed[SURVIVOR] * ratio);
+		if (x > clientArea.x + 1 && x < clientArea.x + 1 + width) {
+			gc.drawLine(x, clientArea.y + 1, x, clientArea.y + clientArea.height - 2);
+		}
+
+		final String message = heapSize + " " + ResourceManager.getLabel(ResourceManager.MEGABYTES) + "/" + //
 				this.heapMaxSize + " " + ResourceManager.getLabel(ResourceManager.MEGABYTES);
 		final Point size = gc.stringExtent(message);
 
@@ -162,21 +279,42 @@ public class HeapManager extends Composite {
 	}
 
 	/**
-	 * Update the content of the bar
+	 * Read the usage of the memory pools, then update the bar and its tooltip
 	 */
 	private void updateContent() {
-		getDisplay().timerExec(500, new Runnable() {
-			@Override
-			public void run() {
-				HeapManager.this.heapSize = (int) (Runtime.getRuntime().totalMemory() / (1024 * 1024));
-				if (!isDisposed()) {
-					HeapManager.this.bar.redraw();
-					if (!getDisplay().isDisposed()) {
-						getDisplay().timerExec(500, this);
-					}
-				}
+		for (int i = 0; i < POOL_LABELS.length; i++) {
+			this.poolUsed[i] = 0;
+			this.poolMax[i] = 0;
+		}
+		for (int i = 0; i < this.pools.size(); i++) {
+			final MemoryUsage usage = this.pools.get(i).getUsage();
+			if (usage == null) {
+				continue;
 			}
-		});
+			final int kind = this.poolKinds.get(i);
+			this.poolUsed[kind] += usage.getUsed();
+			this.poolMax[kind] += usage.getMax() > 0 ? usage.getMax() : usage.getCommitted();
+		}
+
+		final StringBuilder toolTip = new StringBuilder();
+		for (int i = 0; i < POOL_LABELS.length; i++) {
+			if (toolTip.length() > 0) {
+				toolTip.append("\n");
+			}
+			toolTip.append(ResourceManager.getLabel(POOL_LABELS[i])).append(" : ");
+			toolTip.append(toMegabytes(this.poolUsed[i])).append(" ").append(ResourceManager.getLabel(ResourceManager.MEGABYTES)).append("/");
+			toolTip.append(toMegabytes(this.poolMax[i])).append(" ").append(ResourceManager.getLabel(ResourceManager.MEGABYTES));
+		}
+		this.bar.setToolTipText(toolTip.toString());
+		this.bar.redraw();
+	}
+
+	/**
+	 * @param bytes a number of bytes
+	 * @return the number of megabytes
+	 */
+	private static int toMegabytes(final long bytes) {
+		return (int) (bytes / (1024 * 1024));
 	}
 
 	/**
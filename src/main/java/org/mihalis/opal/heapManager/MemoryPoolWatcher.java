@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright (c) 2011 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - Initial implementation and API
+ *******************************************************************************/
+package org.mihalis.opal.heapManager;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+
+/**
+ * This class watches the memory pools of the JVM and calls its listeners when
+ * their usage changes. It does not poll: it relies on the notifications sent
+ * by the memory MXBean.
+ * <ul>
+ * <li>The collection usage threshold of each pool is set to 1 byte, so a
+ * notification is sent after each garbage collection</li>
+ * <li>The usage threshold of each pool that supports it is set one step above
+ * its current usage, and set again after each notification, so a notification
+ * is sent each time the usage grows by one step</li>
+ * </ul>
+ * Only thresholds that were not set (value 0) are used, and they are reset to
+ * 0 when the last listener is removed.
+ */
+class MemoryPoolWatcher implements NotificationListener {
+
+	/**
+	 * Number of steps of the usage thresholds between 0 and the maximum size
+	 * of a pool
+	 */
+	private static final int STEPS = 50;
+	private static final long MIN_STEP = 1024 * 1024;
+
+	private static MemoryPoolWatcher instance;
+
+	private final List<Runnable> listeners;
+	private final List<MemoryPoolMXBean> usagePools;
+	private final List<MemoryPoolMXBean> collectionPools;
+
+	/**
+	 * Constructor
+	 */
+	private MemoryPoolWatcher() {
+		this.listeners = new CopyOnWriteArrayList<Runnable>();
+		this.usagePools = new ArrayList<MemoryPoolMXBean>();
+		this.collectionPools = new ArrayList<MemoryPoolMXBean>();
+	}
+
+	/**
+	 * Add a listener called when the usage of the memory pools changes. The
+	 * listener is called by the thread that sends the notifications
+	 * 
+	 * @param listener listener to add
+	 */
+	static synchronized void addListener(final Runnable listener) {
+		if (instance == null) {
+			instance = new MemoryPoolWatcher();
+			instance.start();
+		}
+		instance.listeners.add(listener);
+	}
+
+	/**
+	 * Remove a listener. When the last listener is removed, the thresholds are
+	 * reset and the notifications are no longer received
+	 * 
+	 * @param listener listener to remove
+	 */
+	static synchronized void removeListener(final Runnable listener) {
+		if (instance == null) {
+			return;
+		}
+		instance.listeners.remove(listener);
+		if (instance.listeners.isEmpty()) {
+			instance.stop();
+			instance = null;
+		}
+	}
+
+	/**
+	 * Register this watcher and set the thresholds
+	 */
+	private synchronized void start() {
+		((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener(this, null, null);
+		for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.isCollectionUsageThresholdSupported() && pool.getCollectionUsageThreshold() == 0) {
+				pool.setCollectionUsageThreshold(1);
+				this.collectionPools.add(pool);
+			}
+			if (pool.isUsageThresholdSupported() && pool.getUsageThreshold() == 0) {
+				this.usagePools.add(pool);
+				setNextUsageThreshold(pool);
+			}
+		}
+	}
+
+	/**
+	 * Unregister this watcher and reset the thresholds
+	 */
+	private synchronized void stop() {
+		try {
+			((NotificationEmitter) ManagementFactory.getMemoryMXBean()).removeNotificationListener(this);
+		} catch (final ListenerNotFoundException e) {
+			// Nothing to remove
+		}
+		for (final MemoryPoolMXBean pool : this.collectionPools) {
+			pool.setCollectionUsageThreshold(0);
+		}
+		for (final MemoryPoolMXBean pool : this.usagePools) {
+			pool.setUsageThreshold(0);
+		}
+		this.collectionPools.clear();
+		this.usagePools.clear();
+	}
+
+	/**
+	 * Set the usage threshold of a pool one step above its current usage
+	 * 
+	 * @param pool pool
+	 */
+	private void setNextUsageThreshold(final MemoryPoolMXBean pool) {
+		final MemoryUsage usage = pool.getUsage();
+		if (usage == null) {
+			return;
+		}
+		final long max = usage.getMax() > 0 ? usage.getMax() : usage.getCommitted();
+		final long step = Math.max(MIN_STEP, max / STEPS);
+		long threshold = (usage.getUsed() / step + 1) * step;
+		if (usage.getMax() > 0) {
+			threshold = Math.min(threshold, usage.getMax());
+		}
+		try {
+			pool.setUsageThreshold(threshold);
+		} catch (final IllegalArgumentException e) {
+			// The pool has shrunk in the meantime, the next collection will
+			// set the threshold again
+		}
+	}
+
+	/**
+	 * @see javax.management.NotificationListener#handleNotification(javax.management.Notification,
+	 *      java.lang.Object)
+	 */
+	@Override
+	public void handleNotification(final Notification notification, final Object handback) {
+		final String type = notification.getType();
+		if (!MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED.equals(type) && !MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(type)) {
+			return;
+		}
+		synchronized (this) {
+			// After a collection, the usage may have decreased: all
+			// thresholds are set again
+			for (final MemoryPoolMXBean pool : this.usagePools) {
+				setNextUsageThreshold(pool);
+			}
+		}
+		for (final Runnable listener : this.listeners) {
+			listener.run();
+		}
+	}
+
+}
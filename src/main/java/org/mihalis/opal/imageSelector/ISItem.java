@@ -11,7 +11,6 @@
 package org.mihalis.opal.imageSelector;
 
 import org.eclipse.swt.graphics.Image;
-import org.eclipse.swt.graphics.Point;
 import org.mihalis.opal.OpalItem;
 import org.mihalis.opal.utils.SWTGraphicUtil;
 
@@ -22,8 +21,6 @@ import org.mihalis.opal.utils.SWTGraphicUtil;
 public class ISItem extends OpalItem implements Comparable<ISItem> {
 
 	private double zPosition;
-	private Point upperLeftCorner;
-	private Point lowerRightCorner;
 
 	/**
 	 * Constructor
@@ -71,42 +68,6 @@ public class ISItem extends OpalItem implements Comparable<ISItem> {
 		return this;
 	}
 
-	/**
-	 * @return the upperLeftCorner
-	 */
-	Point getUpperLeftCorner() {
-		return upperLeftCorner;
-	}
-
-	/**
-	 * @param x the upperLeftCorner.x to set
-	 * @param y the upperLeftCorner.y to set
-	 */
-	void setUpperLeftCorner(final int x, final int y) {
-		upperLeftCorner = new Point(x, y);
-	}
-
-	/**
-	 * @return the lowerRightCorner
-	 */
-	Point getLowerRightCorner() {
-		return lowerRightCorner;
-	}
-
-	/**
-	 * @param x the lowerRightCorner.x to set
-	 * @param y the lowerRightCorner.y to set
-	 */
-	void setLowerRightCorner(final int x, final int y) {
-		lowerRightCorner = new Point(x, y);
-	}
-
-	void resetCornerToNull() {
-		upperLeftCorner = null;
-		lowerRightCorner = null;
-
-	}
-
 	/**
 	 * @see java.lang.Object#toString()
 	 */
@@ -0,0 +1,47 @@
+/*******************************************************************************
+ * Copyright (c) 2011 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - Initial implementation and API
+ *******************************************************************************/
+package org.mihalis.opal.imageSelector;
+
+import org.eclipse.swt.graphics.ImageData;
+
+/**
+ * Classes which implement this interface provide the items of an
+ * ImageSelector on demand. The widget only asks for the items that are on
+ * screen, and the images are loaded in a background thread, so a provider can
+ * serve very large galleries.
+ *
+ * @see ImageSelector#setItemProvider(ISItemProvider)
+ */
+public interface ISItemProvider {
+
+	/**
+	 * @return the number of items
+	 */
+	int getItemCount();
+
+	/**
+	 * Called from the UI thread
+	 *
+	 * @param index index of an item
+	 * @return the title of the item (may be null)
+	 */
+	String getText(int index);
+
+	/**
+	 * Load the image of an item. This method is called from a background
+	 * thread, it must not access any widget
+	 *
+	 * @param index index of an item
+	 * @return the image data of the item, or null if it can not be loaded
+	 */
+	ImageData loadImageData(int index);
+
+}
@@ -10,8 +10,7 @@
  *******************************************************************************/
 package org.mihalis.opal.imageSelector;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 
 import org.eclipse.swt.SWT;
@@ -33,6 +32,9 @@ import org.eclipse.swt.widgets.Canvas;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Event;
 import org.eclipse.swt.widgets.Listener;
+import org.mihalis.opal.utils.Animation;
+import org.mihalis.opal.utils.AnimationScheduler;
+import org.mihalis.opal.utils.ImageCache;
 import org.mihalis.opal.utils.SWTGraphicUtil;
 
 /**
@@ -48,7 +50,8 @@ import org.mihalis.opal.utils.SWTGraphicUtil;
  */
 public class ImageSelector extends Canvas {
 	private List<ISItem> items;
-	private List<ISItem> originalItems;
+	private ISItemProvider itemProvider;
+	private final ThumbnailLoader thumbnailLoader;
 	private Font font;
 	private static final int DEFAULT_WIDTH = 148;
 	private int maxItemWidth = DEFAULT_WIDTH;
@@ -61,11 +64,33 @@ public class ImageSelector extends Canvas {
 	private Color gradientStart;
 	private Color gradientEnd;
 	private double animationStep = -1d;
-	private static final int TIMER_INTERVAL = 50;
+	private int animationDirection;
+	private static final int ANIMATION_DURATION = 300;
 	private int pageIncrement = 5;
 
 	private Image cachedImage;
 	private GC cachedGC;
+	private int clientWidth;
+	private int clientHeight;
+
+	// Size and alpha value of an item, indexed by its distance (in slots) to
+	// the selected item
+	private int[] slotSizes;
+	private int[] slotAlphas;
+
+	// Items drawn by the last paint, in drawing order
+	private int drawnCount;
+	private int[] drawnIndexes;
+	private int[] drawnX;
+	private int[] drawnY;
+	private int[] drawnSizes;
+
+	// Provided items of the visible window, indexed by their index modulo the
+	// capacity of the window
+	private ISItem[] windowItems;
+	private int[] windowIndexes;
+	private int windowFirst;
+	private int windowLast;
 
 	/**
 	 * Constructs a new instance of this class given its parent and a style
@@ -101,10 +126,9 @@ public class ImageSelector extends Canvas {
 		setSigma(0.5);
 		gradientStart = getDisplay().getSystemColor(SWT.COLOR_BLACK);
 		gradientEnd = SWTGraphicUtil.getDefaultColor(this, 110, 110, 110);
+		thumbnailLoader = new ThumbnailLoader(this);
 
 		addListeners();
-		SWTGraphicUtil.addDisposer(this, cachedGC);
-		SWTGraphicUtil.addDisposer(this, cachedImage);
 	}
 
 	private void addListeners() {
@@ -121,16 +145,30 @@ public class ImageSelector extends Canvas {
 		addListener(SWT.Resize, new Listener() {
 			@Override
 			public void handleEvent(final Event event) {
-				if (cachedGC == null) {
-					return;
-				}
-				cachedGC.dispose();
-				cachedImage.dispose();
-				cachedImage = new Image(getDisplay(), getClientArea());
-				cachedGC = new GC(cachedImage);
-				cachedGC.setAntialias(SWT.ON);
+				final Rectangle clientArea = getClientArea();
+				clientWidth = clientArea.width;
+				clientHeight = clientArea.height;
+				disposeCachedImage();
 			}
 		});
+
+		addListener(SWT.Dispose, new Listener() {
+			@Override
+			public void handleEvent(final Event event) {
+				thumbnailLoader.dispose();
+				disposeCachedImage();
+			}
+		});
+	}
+
+	/**
+	 * Dispose the offscreen buffer
+	 */
+	private void disposeCachedImage() {
+		SWTGraphicUtil.safeDispose(cachedGC);
+		SWTGraphicUtil.safeDispose(cachedImage);
+		cachedGC = null;
+		cachedImage = null;
 	}
 
 	/**
@@ -176,11 +214,9 @@ public class ImageSelector extends Canvas {
 		addMouseMoveListener(new MouseMoveListener() {
 			@Override
 			public void mouseMove(final MouseEvent e) {
-				for (final ISItem item : items) {
-					if (item.getUpperLeftCorner() != null && item.getLowerRightCorner() != null && e.x >= item.getUpperLeftCorner().x && e.x <= item.getLowerRightCorner().x && e.y >= item.getUpperLeftCorner().y && e.y <= item.getLowerRightCorner().y) {
-						setCursor(getDisplay().getSystemCursor(SWT.CURSOR_HAND));
-						return;
-					}
+				if (findItemAt(e.x, e.y) >= 0) {
+					setCursor(getDisplay().getSystemCursor(SWT.CURSOR_HAND));
+					return;
 				}
 				setCursor(getDisplay().getSystemCursor(SWT.CURSOR_ARROW));
 			}
@@ -192,11 +228,9 @@ public class ImageSelector extends Canvas {
 			 */
 			@Override
 			public void mouseUp(final MouseEvent e) {
-				for (final ISItem item : items) {
-					if (item.getUpperLeftCorner() != null && item.getLowerRightCorner() != null && e.x >= item.getUpperLeftCorner().x && e.x <= item.getLowerRightCorner().x && e.y >= item.getUpperLeftCorner().y && e.y <= item.getLowerRightCorner().y) {
-						scrollAndAnimateBy(originalItems.indexOf(item) - index);
-						return;
-					}
+				final int itemIndex = findItemAt(e.x, e.y);
+				if (itemIndex >= 0) {
+					scrollAndAnimateBy(itemIndex - index);
 				}
 			}
 		});
@@ -209,6 +243,23 @@ public class ImageSelector extends Canvas {
 		});
 	}
 
+	/**
+	 * Find the item displayed at a given location. The items in front are
+	 * tested first
+	 *
+	 * @param x horizontal position
+	 * @param y vertical position
+	 * @return the index of the item, or -1 if there is no item at this location
+	 */
+	private int findItemAt(final int x, final int y) {
+		for (int i = drawnCount - 1; i >= 0; i--) {
+			if (x >= drawnX[i] && x <= drawnX[i] + drawnSizes[i] && y >= drawnY[i] && y <= drawnY[i] + drawnSizes[i]) {
+				return drawnIndexes[i];
+			}
+		}
+		return -1;
+	}
+
 	/**
 	 * Set the sigma value for the gaussian curve
 	 *
@@ -220,6 +271,7 @@ public class ImageSelector extends Canvas {
 		computeEquationParts();
 		rho = computeModifierUnbounded(0.0);
 		computeEquationParts();
+		invalidateSlotTables();
 		redraw();
 	}
 
@@ -258,17 +310,67 @@ public class ImageSelector extends Canvas {
 	}
 
 	/**
-	 * Draw the widget
+	 * Compute the tables indexed by slot. A slot is the place of an item at a
+	 * given distance of the selected item. The tables are computed again when
+	 * the spacing, the sigma value or the maximum width change
+	 */
+	private void computeSlotTables() {
+		final int slots = (int) Math.ceil(1d / spacing) + 2;
+		slotSizes = new int[slots];
+		slotAlphas = new int[slots];
+		for (int d = 0; d < slots; d++) {
+			final double z = d * spacing;
+			slotSizes[d] = z > 1d ? 0 : Math.max(0, (int) (computeModifierBounded(z) * maxItemWidth));
+			slotAlphas[d] = Math.max(0, (int) (255 - 150 * z));
+		}
+
+		final int capacity = 2 * slots + 1;
+		drawnCount = 0;
+		drawnIndexes = new int[capacity];
+		drawnX = new int[capacity];
+		drawnY = new int[capacity];
+		drawnSizes = new int[capacity];
+		windowItems = new ISItem[capacity];
+		windowIndexes = new int[capacity];
+		Arrays.fill(windowIndexes, -1);
+		windowFirst = -1;
+		windowLast = -1;
+	}
+
+	/**
+	 * Invalidate the tables indexed by slot
+	 */
+	private void invalidateSlotTables() {
+		slotSizes = null;
+	}
+
+	/**
+	 * Draw the widget. Only the area of the paint event is drawn
 	 *
 	 * @param e the paintEvent
 	 */
 	private void paintControl(final PaintEvent e) {
-
+		if (clientWidth <= 0 || clientHeight <= 0) {
+			return;
+		}
 		if (cachedImage == null) {
-			cachedImage = new Image(getDisplay(), getClientArea());
+			cachedImage = new Image(getDisplay(), clientWidth, clientHeight);
 			cachedGC = new GC(cachedImage);
 			cachedGC.setAntialias(SWT.ON);
+			cachedGC.setInterpolation(SWT.HIGH);
+		}
+		if (slotSizes == null) {
+			computeSlotTables();
+		}
+
+		final int x = Math.max(0, e.x);
+		final int y = Math.max(0, e.y);
+		final int width = Math.min(clientWidth, e.x + e.width) - x;
+		final int height = Math.min(clientHeight, e.y + e.height) - y;
+		if (width <= 0 || height <= 0) {
+			return;
 		}
+		cachedGC.setClipping(x, y, width, height);
 
 		// Draw gradient
 		drawBackground();
@@ -282,139 +384,197 @@ public class ImageSelector extends Canvas {
 		}
 
 		// Draw the offscreen buffer to the screen
-		e.gc.drawImage(cachedImage, 0, 0);
+		e.gc.drawImage(cachedImage, x, y, width, height, x, y, width, height);
 	}
 
 	/**
 	 * Draw the background
-	 *
-	 * @param gc graphical context
 	 */
 	private void drawBackground() {
-		final Rectangle rect = getClientArea();
-
+		cachedGC.setAlpha(255);
 		cachedGC.setForeground(gradientStart);
 		cachedGC.setBackground(gradientEnd);
-		cachedGC.fillGradientRectangle(rect.x, rect.y, rect.width, rect.height / 2, true);
+		cachedGC.fillGradientRectangle(0, 0, clientWidth, clientHeight / 2, true);
 
 		cachedGC.setForeground(gradientEnd);
 		cachedGC.setBackground(gradientStart);
-		cachedGC.fillGradientRectangle(rect.x, rect.height / 2, rect.width, rect.height / 2, true);
+		cachedGC.fillGradientRectangle(0, clientHeight / 2, clientWidth, clientHeight / 2, true);
 	}
 
 	/**
-	 * Draw the items
-	 *
-	 * @param gc graphical context
+	 * Draw the items. Only the items of the visible window are drawn, from the
+	 * farthest to the nearest, so there is no need to sort them
 	 */
 	private void drawItems() {
-		if (animationStep < 0d) {
-			items.clear();
-			items.addAll(originalItems);
-			for (int i = 0; i < items.size(); i++) {
-				final ISItem item = items.get(i);
-				item.setzPosition((i - index) * spacing);
+		drawnCount = 0;
+		final int count = getItemCount();
+		if (count == 0) {
+			return;
+		}
+
+		// An item is visible if its z position is between -1 and 1
+		final double position = animationStep < 0d ? index : index + animationStep * animationDirection;
+		final double window = 1d / spacing;
+		final int first = Math.max(0, (int) Math.ceil(position - window));
+		final int last = Math.min(count - 1, (int) Math.floor(position + window));
+
+		if (itemProvider != null) {
+			thumbnailLoader.setProvider(itemProvider, maxItemWidth);
+			if (first != windowFirst || last != windowLast) {
+				windowFirst = first;
+				windowLast = last;
+				thumbnailLoader.setWindow(first, last, (int) Math.round(position));
 			}
-			Collections.sort(items);
 		}
 
-		for (final ISItem item : items) {
-			drawItem(item);
+		int left = first;
+		int right = last;
+		while (left <= right) {
+			final int i;
+			if (position - left >= right - position) {
+				i = left++;
+			} else {
+				i = right--;
+			}
+			drawItem(i, i - position);
 		}
 	}
 
 	/**
-	 * Draw a given item
-	 *
-	 * @param item item to draw
+	 * @return the number of items
 	 */
-	private void drawItem(final ISItem item) {
-
-		final int size = computeSize(item);
-		final int centerX = computeZPosition(item);
-		final int centerY = getClientArea().height / 2;
-
-		if (size <= 0 || centerX < 0 || centerX > getBounds().width) {
-			item.resetCornerToNull();
-			return;
+	private int getItemCount() {
+		if (itemProvider != null) {
+			return itemProvider.getItemCount();
 		}
-
-		final int alpha = computeAlpha(item);
-
-		final Image newImage = SWTGraphicUtil.createReflectedResizedImage(item.getImage(), size, size);
-		cachedGC.setAlpha(alpha);
-
-		final int x = centerX - newImage.getBounds().width / 2;
-		final int y = centerY - newImage.getBounds().height / 2;
-
-		cachedGC.drawImage(newImage, x, y);
-
-		item.setUpperLeftCorner(x, y);
-		item.setLowerRightCorner(x + newImage.getBounds().width, (int) (y + newImage.getBounds().height / 1.5));
-
-		newImage.dispose();
+		return items == null ? 0 : items.size();
 	}
 
 	/**
-	 * Compute the z position for a given item
-	 *
-	 * @param item item
-	 * @return the z position of the item
+	 * @param i index of an item
+	 * @return the item. With an item provider, the item is created when it
+	 *         enters the visible window, and kept while it stays in the window
 	 */
-	private int computeZPosition(final ISItem item) {
-		final int totalWidth = getClientArea().width / 2;
-		final int centerX = getClientArea().width / 2;
-		return (int) (centerX + item.getzPosition() * totalWidth);
+	private ISItem getItem(final int i) {
+		if (itemProvider == null) {
+			return items.get(i);
+		}
+		final int slot = i % windowItems.length;
+		ISItem item = windowItems[slot];
+		if (windowIndexes[slot] != i) {
+			item = new ISItem(itemProvider.getText(i), (Image) null);
+			windowItems[slot] = item;
+			windowIndexes[slot] = i;
+		}
+		if (item.getImage() == null || item.getImage().isDisposed()) {
+			item.setImage(thumbnailLoader.getThumbnail(i));
+		}
+		return item;
 	}
 
 	/**
-	 * Compute size for a given item
+	 * Draw a given item. The size and the alpha value are interpolated
+	 * between the values of the 2 nearest slots, and the image is the cached
+	 * image of the nearest slot, scaled down if the item is between 2 slots
 	 *
-	 * @param item item
-	 * @return the size of the item
+	 * @param i index of the item
+	 * @param distance distance (in slots) between the item and the selection
 	 */
-	private int computeSize(final ISItem item) {
-		return (int) (computeModifierBounded(item.getzPosition()) * maxItemWidth);
+	private void drawItem(final int i, final double distance) {
+		final double absoluteDistance = Math.abs(distance);
+		final int slot = (int) absoluteDistance;
+		if (slot + 1 >= slotSizes.length) {
+			return;
+		}
+		final double fraction = absoluteDistance - slot;
+		final int slotSize = slotSizes[slot];
+		final int size = slotSize - (int) ((slotSize - slotSizes[slot + 1]) * fraction);
+		final int centerX = (int) (clientWidth / 2 + distance * spacing * clientWidth / 2);
+		final int centerY = clientHeight / 2;
+
+		if (size <= 0 || centerX < 0 || centerX > clientWidth) {
+			return;
+		}
+
+		final int alpha = slotAlphas[slot] - (int) ((slotAlphas[slot] - slotAlphas[slot + 1]) * fraction);
+		final ISItem item = getItem(i);
+		item.setzPosition(distance * spacing);
+
+		// Same location as an image with its reflection (1.5 times its height)
+		final int height = (int) (size * 1.5);
+		final int x = centerX - size / 2;
+		final int y = centerY - height / 2;
+
+		if (item.getImage() == null) {
+			drawPlaceholder(size, x, y, alpha);
+		} else {
+			// The image belongs to the cache of the display, it is not disposed
+			final Image slotImage = ImageCache.getInstance(getDisplay()).getReflectedResizedImage(item.getImage(), slotSize, slotSize);
+			cachedGC.setAlpha(alpha);
+			if (size == slotSize) {
+				cachedGC.drawImage(slotImage, x, y);
+			} else {
+				cachedGC.drawImage(slotImage, 0, 0, slotSize, (int) (slotSize * 1.5), x, y, size, height);
+			}
+		}
+
+		drawnIndexes[drawnCount] = i;
+		drawnX[drawnCount] = x;
+		drawnY[drawnCount] = y;
+		drawnSizes[drawnCount] = size;
+		drawnCount++;
 	}
 
 	/**
-	 * Compute the alpha value of a given item
+	 * Draw the placeholder of an item which image is not loaded yet
 	 *
-	 * @param item item
-	 * @return the alpha value of the item
+	 * @param size size of the item
+	 * @param x horizontal position of the item
+	 * @param y vertical position of the item
+	 * @param alpha alpha value of the item
 	 */
-	private int computeAlpha(final ISItem item) {
-		return (int) (255 - 150 * Math.abs(item.getzPosition()));
+	private void drawPlaceholder(final int size, final int x, final int y, final int alpha) {
+		cachedGC.setAlpha(alpha / 2);
+		cachedGC.setBackground(gradientEnd);
+		cachedGC.fillRectangle(x, y, size, size);
+		cachedGC.setForeground(getDisplay().getSystemColor(SWT.COLOR_WHITE));
+		cachedGC.drawRectangle(x, y, size - 1, size - 1);
 	}
 
 	/**
 	 * Draw the title under the selected item
-	 *
-	 * @param gc graphical context
 	 */
 	private void drawTitle() {
-		if (index < 0 || index > (originalItems.size() - 1)) {
+		if (index < 0 || index > getItemCount() - 1) {
 			return;
 		}
 
-		final String title = originalItems.get(index).getText();
+		final String title = itemProvider == null ? items.get(index).getText() : itemProvider.getText(index);
 		if (title == null || title.trim().equals("")) {
 			return;
 		}
 		cachedGC.setFont(getFont());
 		final Point textSize = cachedGC.stringExtent(title);
 
-		cachedGC.setFont(getFont());
 		cachedGC.setForeground(getDisplay().getSystemColor(SWT.COLOR_WHITE));
 		cachedGC.setAlpha(255);
 
-		final int centerX = getClientArea().width / 2;
-		final int centerY = (getClientArea().height + maxItemWidth) / 2;
+		final int centerX = clientWidth / 2;
+		final int centerY = (clientHeight + maxItemWidth) / 2;
 
 		cachedGC.drawString(title, centerX - textSize.x / 2, centerY - textSize.y / 2, true);
 
 	}
 
+	/**
+	 * Redraw the horizontal band that contains the moving items (images and
+	 * reflections)
+	 */
+	private void redrawAnimatedBand() {
+		final int bandHeight = (int) (maxItemWidth * 1.5) + 2;
+		redraw(0, clientHeight / 2 - bandHeight / 2, clientWidth, bandHeight, false);
+	}
+
 	/**
 	 * Scroll the selected item
 	 *
@@ -426,8 +586,8 @@ public class ImageSelector extends Canvas {
 			index = 0;
 		}
 
-		if (index >= items.size()) {
-			index = items.size() - 1;
+		if (index >= getItemCount()) {
+			index = getItemCount() - 1;
 		}
 		redraw();
 	}
@@ -438,65 +598,101 @@ public class ImageSelector extends Canvas {
 	 * @param increment increment value
 	 */
 	private void scrollAndAnimateBy(final int increment) {
-		if (increment == 0 || index == 0 && increment < 0 || index == items.size() - 1 && increment > 0) {
+		if (increment == 0 || index == 0 && increment < 0 || index == getItemCount() - 1 && increment > 0) {
+			return;
+		}
+		if (animationStep >= 0d) {
+			// An animation is already running
 			return;
 		}
 
-		final double step = Math.abs(increment) / (300d / TIMER_INTERVAL);
-		ImageSelector.this.animationStep = step;
+		animationStep = 0d;
+		animationDirection = increment > 0 ? 1 : -1;
 		setCursor(getDisplay().getSystemCursor(SWT.CURSOR_WAIT));
+		// Erase the title, then only the band of the items is redrawn
+		redraw();
 
-		getDisplay().syncExec(new Runnable() {
+		AnimationScheduler.getInstance(getDisplay()).schedule(new Animation(this, ANIMATION_DURATION) {
 
 			@Override
-			public void run() {
-				startAnimation(increment, step);
+			protected void update(final float fraction) {
+				animationStep = fraction * Math.abs(increment);
+				redrawAnimatedBand();
 			}
 
-			private void startAnimation(final int increment, final double step) {
-				items.clear();
-				items.addAll(originalItems);
-				for (int i = 0; i < items.size(); i++) {
-					final ISItem item = items.get(i);
-					item.setzPosition((i - index + animationStep * (increment > 0 ? -1d : 1d)) * spacing);
-				}
-				Collections.sort(items);
-				if (!isDisposed()) {
-					redraw();
-				}
-
-				animationStep += step;
-				if (animationStep >= 1d) {
-					animationStep = -1d;
-					index += increment;
-					setCursor(getDisplay().getSystemCursor(SWT.CURSOR_ARROW));
-				} else {
-					if (!isDisposed()) {
-						getDisplay().timerExec(TIMER_INTERVAL, this);
-					}
-				}
+			@Override
+			protected void finished() {
+				animationStep = -1d;
+				index += increment;
+				setCursor(getDisplay().getSystemCursor(SWT.CURSOR_ARROW));
+				redraw();
 			}
 		});
 
 	}
 
 	/**
-	 * @return the items displayed by this widget
+	 * @return the items displayed by this widget, or null if the items are
+	 *         given by an item provider
 	 */
 	public List<ISItem> getItems() {
-		return originalItems;
+		return items;
 	}
 
 	/**
 	 * @param items the items that are displayed in this widget to set
 	 */
 	public void setItems(final List<ISItem> items) {
-		this.items = new ArrayList<ISItem>(items);
-		originalItems = items;
-		index = this.items.size() / 2;
+		this.items = items;
+		itemProvider = null;
+		invalidateSlotTables();
+		thumbnailLoader.setProvider(null, 0);
+		index = getItemCount() / 2;
+		redraw();
+	}
+
+	/**
+	 * @return the item provider, or null if the items are given as a list
+	 */
+	public ISItemProvider getItemProvider() {
+		return itemProvider;
+	}
+
+	/**
+	 * Give the items through a provider. Only the items of the visible window
+	 * are created, and their images are loaded in a background thread. A
+	 * placeholder is displayed until the image of an item is loaded. The
+	 * loaded images are kept within a memory budget
+	 *
+	 * @param itemProvider the item provider
+	 * @see #setMemoryBudget(long)
+	 */
+	public void setItemProvider(final ISItemProvider itemProvider) {
+		this.itemProvider = itemProvider;
+		items = null;
+		invalidateSlotTables();
+		thumbnailLoader.setProvider(itemProvider, maxItemWidth);
+		index = getItemCount() / 2;
 		redraw();
 	}
 
+	/**
+	 * @return the maximum memory used by the images loaded from the item
+	 *         provider, in bytes
+	 */
+	public long getMemoryBudget() {
+		return thumbnailLoader.getBudget();
+	}
+
+	/**
+	 * @param memoryBudget the maximum memory used by the images loaded from
+	 *            the item provider, in bytes (default 16 MB). The images of
+	 *            the visible items are always kept
+	 */
+	public void setMemoryBudget(final long memoryBudget) {
+		thumbnailLoader.setBudget(memoryBudget);
+	}
+
 	/**
 	 * @return the font used for the title
 	 */
@@ -541,6 +737,7 @@ public class ImageSelector extends Canvas {
 	 */
 	public void setMaxItemWidth(final int maxItemWidth) {
 		this.maxItemWidth = maxItemWidth;
+		invalidateSlotTables();
 		redraw();
 	}
 
@@ -563,6 +760,7 @@ public class ImageSelector extends Canvas {
 	 */
 	public void setSpacing(final float spacing) {
 		this.spacing = spacing;
+		invalidateSlotTables();
 		redraw();
 	}
 
@@ -0,0 +1,278 @@
+/*******************************************************************************
+ * Copyright (c) 2011 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - Initial implementation and API
+ *******************************************************************************/
+package org.mihalis.opal.imageSelector;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.eclipse.swt.SWTException;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.Rectangle;
+import org.eclipse.swt.widgets.Display;
+import org.mihalis.opal.utils.ImageCache;
+import org.mihalis.opal.utils.ImageFilterChain;
+import org.mihalis.opal.utils.Mipmap;
+
+/**
+ * Instances of this class load the thumbnails of the items of an
+ * ImageSelector that uses an item provider. The images are decoded and
+ * reduced in a background thread, only for the items of the visible window,
+ * nearest items first. The thumbnails are kept in a LRU cache bounded by a
+ * memory budget.
+ */
+class ThumbnailLoader {
+
+	/**
+	 * Default memory budget of the thumbnails, in bytes
+	 */
+	static final long DEFAULT_BUDGET = 16 * 1024 * 1024;
+
+	private final ImageSelector selector;
+	private final Display display;
+	private final Map<Integer, Image> thumbnails;
+	private final Set<Integer> pending;
+	private final Set<Integer> failed;
+	private ExecutorService executor;
+	private ISItemProvider provider;
+	private int thumbnailSize;
+	private long budget = DEFAULT_BUDGET;
+	private long size;
+	private volatile int generation;
+	private volatile int windowStart;
+	private volatile int windowEnd = -1;
+
+	/**
+	 * Constructor
+	 *
+	 * @param selector the widget that displays the thumbnails
+	 */
+	ThumbnailLoader(final ImageSelector selector) {
+		this.selector = selector;
+		display = selector.getDisplay();
+		thumbnails = new LinkedHashMap<Integer, Image>(16, 0.75f, true);
+		pending = Collections.synchronizedSet(new HashSet<Integer>());
+		failed = new HashSet<Integer>();
+	}
+
+	/**
+	 * Change the provider and the size of the thumbnails. All thumbnails are
+	 * discarded if one of them changes
+	 *
+	 * @param provider provider of the images
+	 * @param thumbnailSize size of the thumbnails
+	 */
+	void setProvider(final ISItemProvider provider, final int thumbnailSize) {
+		if (this.provider == provider && this.thumbnailSize == thumbnailSize) {
+			return;
+		}
+		clear();
+		this.provider = provider;
+		this.thumbnailSize = thumbnailSize;
+	}
+
+	/**
+	 * @param index index of an item
+	 * @return the thumbnail of this item, or null if it is not loaded yet
+	 */
+	Image getThumbnail(final int index) {
+		return thumbnails.get(index);
+	}
+
+	/**
+	 * Set the visible window. The missing thumbnails of the window are
+	 * requested, the nearest from the center first. Requests for items that
+	 * left the window are dropped before being decoded
+	 *
+	 * @param start index of the first visible item
+	 * @param end index of the last visible item
+	 * @param center index of the item in the center
+	 */
+	void setWindow(final int start, final int end, final int center) {
+		windowStart = start;
+		windowEnd = end;
+		if (provider == null) {
+			return;
+		}
+		for (int distance = 0; center - distance >= start || center + distance <= end; distance++) {
+			request(center - distance, start, end);
+			if (distance != 0) {
+				request(center + distance, start, end);
+			}
+		}
+	}
+
+	/**
+	 * Request the thumbnail of an item, if needed
+	 *
+	 * @param index index of the item
+	 * @param start index of the first visible item
+	 * @param end index of the last visible item
+	 */
+	private void request(final int index, final int start, final int end) {
+		if (index < start || index > end || thumbnails.containsKey(index) || failed.contains(index) || !pending.add(index)) {
+			return;
+		}
+
+		final int requestGeneration = generation;
+		final ISItemProvider requestProvider = provider;
+		final int requestSize = thumbnailSize;
+		getExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				if (requestGeneration != generation || index < windowStart || index > windowEnd) {
+					pending.remove(index);
+					return;
+				}
+
+				ImageData data = null;
+				try {
+					final ImageData source = requestProvider.loadImageData(index);
+					if (source != null) {
+						data = new ImageFilterChain().resize(requestSize, requestSize).apply(new Mipmap(source));
+					}
+				} catch (final RuntimeException e) {
+					data = null;
+				}
+				publish(index, requestGeneration, data);
+			}
+		});
+	}
+
+	/**
+	 * Give a decoded thumbnail to the UI thread
+	 *
+	 * @param index index of the item
+	 * @param requestGeneration generation of the request
+	 * @param data reduced image data, or null if the image could not be loaded
+	 */
+	private void publish(final int index, final int requestGeneration, final ImageData data) {
+		if (display.isDisposed()) {
+			return;
+		}
+		try {
+			display.asyncExec(new Runnable() {
+				@Override
+				public void run() {
+					if (selector.isDisposed() || requestGeneration != generation) {
+						return;
+					}
+					pending.remove(index);
+					if (data == null) {
+						failed.add(index);
+						return;
+					}
+					thumbnails.put(index, new Image(display, data));
+					size += 4L * data.width * data.height;
+					evict();
+					selector.redraw();
+				}
+			});
+		} catch (final SWTException e) {
+			// The display has been disposed
+		}
+	}
+
+	/**
+	 * Remove the least recently used thumbnails that are outside the visible
+	 * window, until the cache fits in its budget
+	 */
+	private void evict() {
+		final Iterator<Map.Entry<Integer, Image>> iterator = thumbnails.entrySet().iterator();
+		while (size > budget && iterator.hasNext()) {
+			final Map.Entry<Integer, Image> entry = iterator.next();
+			final int index = entry.getKey();
+			if (index >= windowStart && index <= windowEnd) {
+				continue;
+			}
+			iterator.remove();
+			dispose(entry.getValue());
+		}
+	}
+
+	/**
+	 * Dispose a thumbnail and the images derived from it
+	 *
+	 * @param image the thumbnail
+	 */
+	private void dispose(final Image image) {
+		final Rectangle bounds = image.getBounds();
+		size -= 4L * bounds.width * bounds.height;
+		ImageCache.getInstance(display).remove(image);
+		image.dispose();
+	}
+
+	/**
+	 * @return the executor that decodes the images, created on first use
+	 */
+	private ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(final Runnable runnable) {
+					final Thread thread = new Thread(runnable, "Opal ImageSelector Loader");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+
+	/**
+	 * @return the memory budget of the thumbnails, in bytes
+	 */
+	long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * @param budget the memory budget of the thumbnails, in bytes
+	 */
+	void setBudget(final long budget) {
+		this.budget = budget;
+		evict();
+	}
+
+	/**
+	 * Discard all thumbnails and the pending requests
+	 */
+	void clear() {
+		generation++;
+		for (final Image image : thumbnails.values()) {
+			dispose(image);
+		}
+		thumbnails.clear();
+		pending.clear();
+		failed.clear();
+		size = 0;
+	}
+
+	/**
+	 * Discard all thumbnails and stop the background thread
+	 */
+	void dispose() {
+		clear();
+		provider = null;
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+}
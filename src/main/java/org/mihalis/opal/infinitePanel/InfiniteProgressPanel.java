@@ -17,6 +17,7 @@ import org.eclipse.swt.events.PaintListener;
 import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.Font;
 import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.graphics.Point;
 import org.eclipse.swt.graphics.Rectangle;
 import org.eclipse.swt.layout.FillLayout;
@@ -25,6 +26,8 @@ import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Event;
 import org.eclipse.swt.widgets.Listener;
 import org.eclipse.swt.widgets.Shell;
+import org.mihalis.opal.utils.Animation;
+import org.mihalis.opal.utils.AnimationScheduler;
 import org.mihalis.opal.utils.SWTGraphicUtil;
 
 /**
@@ -37,6 +40,7 @@ public class InfiniteProgressPanel {
 
 	private static final String INFINITE_PANEL_KEY = "org.mihalis.opal.InfinitePanel.InfiniteProgressPanel";
 	private static final int NUMBER_OF_STEPS = 10;
+	private static final int FADE_OUT_DURATION = 200;
 
 	private final Composite parent;
 	private Shell shellHover;
@@ -50,11 +54,13 @@ public class InfiniteProgressPanel {
 	private Color defaultColor;
 	private Color selectionColor;
 	private int currentPosition;
-	private Thread animatorThread;
+	private Animation animation;
 	private Canvas canvas;
+	private Image frames;
+	private int frameSize;
 	private boolean fadeIn;
-	private boolean fadeOut;
-	private int fadeOutCounter;
+	private volatile boolean fadeOut;
+	private long fadeOutStart;
 
 	/**
 	 * Constructs a new instance of this class given its parent.
@@ -96,7 +102,7 @@ public class InfiniteProgressPanel {
 		alpha = 200;
 		fadeIn = false;
 		fadeOut = false;
-		fadeOutCounter = 0;
+		fadeOutStart = -1;
 		composite.setData(INFINITE_PANEL_KEY, this);
 
 		parent.addListener(SWT.Activate, new Listener() {
@@ -123,7 +129,7 @@ public class InfiniteProgressPanel {
 		currentPosition = 0;
 		fadeIn = true;
 		fadeOut = false;
-		fadeOutCounter = 0;
+		fadeOutStart = -1;
 
 		if (defaultColor == null) {
 			defaultColor = SWTGraphicUtil.getDefaultColor(parent, 200, 200, 200);
@@ -134,7 +140,7 @@ public class InfiniteProgressPanel {
 		}
 
 		createShell();
-		createAndRunAnimatorThread();
+		createAndRunAnimation();
 	}
 
 	private void createShell() {
@@ -167,40 +173,39 @@ public class InfiniteProgressPanel {
 				InfiniteProgressPanel.this.paintCanvas(e);
 			}
 		});
+		canvas.addListener(SWT.Dispose, new Listener() {
+
+			@Override
+			public void handleEvent(final Event event) {
+				// The scheduler drops the animation of a disposed control
+				animation = null;
+				SWTGraphicUtil.safeDispose(frames);
+				frames = null;
+			}
+		});
 
 		shellHover.open();
 	}
 
-	private void createAndRunAnimatorThread() {
-		animatorThread = new Thread() {
+	private void createAndRunAnimation() {
+		animation = new Animation(canvas, Animation.INFINITE) {
 
-			/**
-			 * @see java.lang.Thread#run()
-			 */
 			@Override
-			public void run() {
-				while (!Thread.interrupted()) {
-					currentPosition = (currentPosition + 1) % barsCount;
-					if (fadeOut) {
-						fadeOutCounter++;
-					}
-					shellHover.getDisplay().asyncExec(new Runnable() {
-
-						@Override
-						public void run() {
-							canvas.redraw();
-						}
-					});
-
-					try {
-						sleep(fadeOut ? 20 : (long) (1000 / fps));
-					} catch (final InterruptedException e) {
-						break;
-					}
+			protected void update(final float fraction) {
+				final long elapsedTime = getElapsedTime();
+				handleFadeIn(elapsedTime);
+				if (handleFadeOut(elapsedTime)) {
+					return;
+				}
+
+				final int position = (int) (elapsedTime * fps / 1000) % barsCount;
+				if (position != currentPosition) {
+					currentPosition = position;
+					redraw();
 				}
 			}
 		};
-		animatorThread.start();
+		AnimationScheduler.getInstance(canvas.getDisplay()).schedule(animation);
 	}
 
 	/**
@@ -213,8 +218,6 @@ public class InfiniteProgressPanel {
 		final Rectangle clientArea = ((Canvas) e.widget).getClientArea();
 		final GC gc = e.gc;
 
-		handleFadeIn();
-		handleFadeOut();
 		drawBackground(clientArea, gc);
 		drawTicker(clientArea, gc);
 		drawText(clientArea, gc);
@@ -222,42 +225,47 @@ public class InfiniteProgressPanel {
 	}
 
 	/**
-	 * Handle the fade in effect of the hover shell
+	 * Handle the fade in effect of the hover shell. The fade in lasts as long
+	 * as NUMBER_OF_STEPS frames of the ticker
+	 *
+	 * @param elapsedTime time elapsed since the start of the animation
 	 */
-	private void handleFadeIn() {
+	private void handleFadeIn(final long elapsedTime) {
 		if (fadeIn) {
-			if (currentPosition == NUMBER_OF_STEPS) {
+			final long duration = (long) (NUMBER_OF_STEPS * 1000 / fps);
+			if (elapsedTime >= duration) {
 				fadeIn = false;
 				shellHover.setAlpha(alpha);
 			} else {
-				shellHover.setAlpha(currentPosition * alpha / NUMBER_OF_STEPS);
+				shellHover.setAlpha((int) (elapsedTime * alpha / duration));
 			}
 		}
 	}
 
 	/**
 	 * Handle the fade out effect of the hover shell
+	 *
+	 * @param elapsedTime time elapsed since the start of the animation
+	 * @return <code>true</code> if the fade out is over and the panel has been
+	 *         disposed
 	 */
-	private void handleFadeOut() {
-		if (fadeOut) {
-			if (fadeOutCounter >= NUMBER_OF_STEPS) {
-				if (animatorThread != null) {
-					animatorThread.interrupt();
-					animatorThread = null;
-				}
-				if (!shellHover.isDisposed()) {
-					shellHover.getDisplay().asyncExec(new Runnable() {
-						@Override
-						public void run() {
-							if (!shellHover.isDisposed()) {
-								shellHover.dispose();
-							}
-						}
-					});
-				}
-			}
-			shellHover.setAlpha(255 - fadeOutCounter * alpha / NUMBER_OF_STEPS);
+	private boolean handleFadeOut(final long elapsedTime) {
+		if (!fadeOut) {
+			return false;
+		}
+		if (fadeOutStart < 0) {
+			fadeIn = false;
+			fadeOutStart = elapsedTime;
 		}
+		final long fadeOutTime = elapsedTime - fadeOutStart;
+		if (fadeOutTime >= FADE_OUT_DURATION) {
+			animation.cancel();
+			animation = null;
+			shellHover.dispose();
+			return true;
+		}
+		shellHover.setAlpha((int) (alpha * (FADE_OUT_DURATION - fadeOutTime) / FADE_OUT_DURATION));
+		return false;
 	}
 
 	/**
@@ -272,15 +280,59 @@ public class InfiniteProgressPanel {
 	}
 
 	/**
-	 * Draw the ticker
+	 * Draw the ticker. The current frame is copied from the strip of frames
 	 *
 	 * @param gc GC on with the ticker is drawn
 	 * @param clientArea client area of the canvas
 	 */
 	private void drawTicker(final Rectangle clientArea, final GC gc) {
-		final int centerX = clientArea.width / 2;
-		final int centerY = clientArea.height / 2;
 		final int maxRay = (int) (Math.min(clientArea.width, clientArea.height) * 0.6f) / 2;
+		if (maxRay <= 0) {
+			return;
+		}
+		final Image strip = getFrames(maxRay);
+		final int x = (clientArea.width - frameSize) / 2;
+		final int y = (clientArea.height - frameSize) / 2;
+		gc.drawImage(strip, currentPosition * frameSize, 0, frameSize, frameSize, x, y, frameSize, frameSize);
+	}
+
+	/**
+	 * Returns the strip of frames of the ticker: one square per position of
+	 * the highlighted bar. The strip is rendered once, and rendered again only
+	 * when the size of the ticker changes
+	 *
+	 * @param maxRay outer ray of the ticker
+	 * @return the strip of frames
+	 */
+	private Image getFrames(final int maxRay) {
+		final int size = 2 * maxRay + lineWidth + 2;
+		if (frames != null && frameSize == size) {
+			return frames;
+		}
+		SWTGraphicUtil.safeDispose(frames);
+		frameSize = size;
+		frames = new Image(canvas.getDisplay(), size * barsCount, size);
+
+		final GC gc = new GC(frames);
+		gc.setBackground(canvas.getDisplay().getSystemColor(SWT.COLOR_WHITE));
+		gc.fillRectangle(0, 0, size * barsCount, size);
+		for (int i = 0; i < barsCount; i++) {
+			drawFrame(gc, i * size + size / 2, size / 2, maxRay, i);
+		}
+		gc.dispose();
+		return frames;
+	}
+
+	/**
+	 * Draw a frame of the ticker
+	 *
+	 * @param gc GC on with the frame is drawn
+	 * @param centerX horizontal position of the center of the ticker
+	 * @param centerY vertical position of the center of the ticker
+	 * @param maxRay outer ray of the ticker
+	 * @param position index of the highlighted bar
+	 */
+	private void drawFrame(final GC gc, final int centerX, final int centerY, final int maxRay, final int position) {
 		final int minRay = (int) (maxRay * 0.5f);
 
 		double angle = Math.PI / 2;
@@ -291,7 +343,7 @@ public class InfiniteProgressPanel {
 
 		final double angleStep = 2 * Math.PI / barsCount;
 		for (int i = 0; i < barsCount; i++) {
-			if (i == currentPosition) {
+			if (i == position) {
 				gc.setForeground(selectionColor);
 			} else {
 				gc.setForeground(defaultColor);
@@ -432,7 +484,7 @@ public class InfiniteProgressPanel {
 	 * Check if the animation is running
 	 */
 	private void checkIfAnimationIsRunning() {
-		if (animatorThread != null) {
+		if (animation != null) {
 			SWT.error(SWT.ERROR_INVALID_ARGUMENT, null, "Can not change this value when an animation is running");
 		}
 	}
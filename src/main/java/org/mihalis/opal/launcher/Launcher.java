@@ -23,6 +23,8 @@ import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Control;
 import org.eclipse.swt.widgets.Event;
 import org.eclipse.swt.widgets.Listener;
+import org.mihalis.opal.utils.Animation;
+import org.mihalis.opal.utils.AnimationScheduler;
 import org.mihalis.opal.utils.SWTGraphicUtil;
 
 /**
@@ -37,6 +39,8 @@ import org.mihalis.opal.utils.SWTGraphicUtil;
  */
 public class Launcher extends Composite {
 
+	private static final int ANIMATION_DURATION = 220;
+
 	private final List<LauncherItem> items;
 	private final List<SelectionListener> selectionListeners;
 	private boolean needRedraw;
@@ -299,14 +303,24 @@ public class Launcher extends Composite {
 	 */
 	private void startAnimation(final int index, final Event event) {
 		final LauncherLabel label = this.items.get(index).label;
-		getDisplay().timerExec(0, new Runnable() {
+		AnimationScheduler.getInstance(getDisplay()).cancel(label);
+		AnimationScheduler.getInstance(getDisplay()).schedule(new Animation(label, ANIMATION_DURATION) {
 			@Override
-			public void run() {
-				if (label.incrementAnimation()) {
-					getDisplay().timerExec(20, this);
-				} else {
-					fireSelectionListeners(event);
-				}
+			protected void update(final float fraction) {
+				label.setAnimationProgress(fraction);
+				redraw();
+			}
+
+			@Override
+			protected void finished() {
+				label.setAnimationProgress(0f);
+				redraw();
+				fireSelectionListeners(event);
+			}
+
+			@Override
+			protected float ease(final float fraction) {
+				return fraction;
 			}
 		});
 
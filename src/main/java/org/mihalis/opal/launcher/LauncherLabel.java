@@ -42,8 +42,7 @@ class LauncherLabel extends Canvas {
 	private int bottomMargin = DEFAULT_MARGIN;
 	private Point textSize;
 
-	private static final int MAX_NUMBER_OF_STEPS = 10;
-	private int animationStep = 0;
+	private float animationProgress = 0f;
 
 	/**
 	 * Constructs a new instance of this class given its parent and a style
@@ -117,8 +116,8 @@ class LauncherLabel extends Canvas {
 		final int yText = yImage + this.image.getBounds().height + GAP - this.textSize.y / 2;
 		gc.drawString(this.text, xText, yText);
 
-		if (this.animationStep != 0) {
-			final float zoom = 1f + this.animationStep * (Math.max(extent.x, extent.y) - Math.max(this.image.getBounds().width, this.image.getBounds().height)) / MAX_NUMBER_OF_STEPS / 100f;
+		if (this.animationProgress != 0f) {
+			final float zoom = 1f + this.animationProgress * (Math.max(extent.x, extent.y) - Math.max(this.image.getBounds().width, this.image.getBounds().height)) / 100f;
 
 			final int newSizeX = (int) (this.image.getBounds().width * zoom);
 			final int newSizeY = (int) (this.image.getBounds().height * zoom);
@@ -126,7 +125,7 @@ class LauncherLabel extends Canvas {
 			gc.setAntialias(SWT.ON);
 			gc.setInterpolation(SWT.HIGH);
 
-			gc.setAlpha(255 - 255 / MAX_NUMBER_OF_STEPS * this.animationStep);
+			gc.setAlpha((int) (255 - 250 * this.animationProgress));
 
 			final Point extentZoomedImage = getTotalSize(newSizeX, newSizeY);
 			final int xZoomedImage = (rect.width - newSizeX) / 2;
@@ -238,21 +237,13 @@ class LauncherLabel extends Canvas {
 	}
 
 	/**
-	 * Increment the steps of the animation
+	 * Set the progress of the animation. The label is not redrawn
 	 * 
-	 * @return true if animation keeps running, false otherwise
+	 * @param animationProgress progress of the animation, between 0 and 1 (0
+	 *            means no animation)
 	 */
-	boolean incrementAnimation() {
-		this.animationStep++;
-		final boolean stopAnimation = this.animationStep > MAX_NUMBER_OF_STEPS;
-
-		if (stopAnimation) {
-			this.animationStep = 0;
-		}
-		if (!isDisposed()) {
-			redraw();
-		}
-		return !stopAnimation;
+	void setAnimationProgress(final float animationProgress) {
+		this.animationProgress = animationProgress;
 	}
 
 	/**
@@ -25,6 +25,8 @@ import org.eclipse.swt.widgets.Label;
 import org.eclipse.swt.widgets.Listener;
 import org.eclipse.swt.widgets.Shell;
 import org.mihalis.opal.notify.NotifierColorsFactory.NotifierTheme;
+import org.mihalis.opal.utils.Animation;
+import org.mihalis.opal.utils.AnimationScheduler;
 import org.mihalis.opal.utils.SWTGraphicUtil;
 
 /**
@@ -35,10 +37,8 @@ public class Notifier {
 	private static final int MAX_DURATION_FOR_OPENING = 500;
 	private static final int DISPLAY_TIME = 4500;
 
-	private static final int FADE_TIMER = 50;
-	private static final int FADE_OUT_STEP = 8;
-
-	private static final int STEP = 5;
+	private static final int FADE_OUT_DURATION = 1600;
+	private static final int FAST_FADE_OUT_DURATION = 200;
 
 	/**
 	 * Starts a notification. A window will appear in the bottom of the screen, then will disappear after 4.5 s
@@ -246,67 +246,64 @@ public class Notifier {
 		final Rectangle clientArea = Display.getDefault().getPrimaryMonitor().getClientArea();
 		final int startX = clientArea.x + clientArea.width - shell.getSize().x;
 
-		final int stepForPosition = MAX_DURATION_FOR_OPENING / shell.getSize().y * STEP;
-		final int stepForAlpha = STEP * 255 / shell.getSize().y;
-
+		final int firstPosition = clientArea.y + clientArea.height;
 		final int lastPosition = clientArea.y + clientArea.height - shell.getSize().y;
 
 		shell.setAlpha(0);
-		shell.setLocation(startX, clientArea.y + clientArea.height);
+		shell.setLocation(startX, firstPosition);
 		shell.open();
 
-		shell.getDisplay().timerExec(stepForPosition, new Runnable() {
+		AnimationScheduler.getInstance(shell.getDisplay()).schedule(new Animation(shell, MAX_DURATION_FOR_OPENING) {
 
 			@Override
-			public void run() {
-
-				if (shell == null || shell.isDisposed()) {
-					return;
-				}
+			protected void update(final float fraction) {
+				shell.setLocation(startX, (int) (firstPosition + fraction * (lastPosition - firstPosition)));
+				shell.setAlpha((int) (255 * fraction));
+			}
 
-				shell.setLocation(startX, shell.getLocation().y - STEP);
-				shell.setAlpha(shell.getAlpha() + stepForAlpha);
-				if (shell.getLocation().y >= lastPosition) {
-					shell.getDisplay().timerExec(stepForPosition, this);
-				} else {
-					shell.setAlpha(255);
-					Display.getDefault().timerExec(DISPLAY_TIME, fadeOut(shell, false));
-				}
+			@Override
+			protected void finished() {
+				fadeOut(shell, false, DISPLAY_TIME);
 			}
 		});
 
 	}
 
 	/**
+	 * Make a shell disappear, then dispose it
+	 * 
 	 * @param shell shell that will disappear
 	 * @param fast if true, the fading is much faster
-	 * @return a runnable
+	 * @param delay delay before the fading, in milliseconds
 	 */
-	private static Runnable fadeOut(final Shell shell, final boolean fast) {
-		return new Runnable() {
-
-			@Override
-			public void run() {
-				if (shell == null || shell.isDisposed()) {
-					return;
-				}
+	private static void fadeOut(final Shell shell, final boolean fast, final int delay) {
+		if (shell == null || shell.isDisposed()) {
+			return;
+		}
 
-				int currentAlpha = shell.getAlpha();
-				currentAlpha -= FADE_OUT_STEP * (fast ? 8 : 1);
+		final AnimationScheduler scheduler = AnimationScheduler.getInstance(shell.getDisplay());
+		scheduler.cancel(shell);
+		scheduler.schedule(new Animation(shell, fast ? FAST_FADE_OUT_DURATION : FADE_OUT_DURATION) {
+			private int initialAlpha = -1;
 
-				if (currentAlpha <= 0) {
-					shell.setAlpha(0);
-					shell.dispose();
-					return;
+			@Override
+			protected void update(final float fraction) {
+				if (this.initialAlpha < 0) {
+					this.initialAlpha = shell.getAlpha();
 				}
+				shell.setAlpha((int) (this.initialAlpha * (1f - fraction)));
+			}
 
-				shell.setAlpha(currentAlpha);
-
-				Display.getDefault().timerExec(FADE_TIMER, this);
-
+			@Override
+			protected void finished() {
+				shell.dispose();
 			}
 
-		};
+			@Override
+			protected float ease(final float fraction) {
+				return fraction;
+			}
+		}, delay);
 	}
 
 	/**
@@ -324,7 +321,7 @@ public class Notifier {
 				final int yUpperLeftCorner = 13;
 
 				if (event.x >= xUpperLeftCorner && event.x <= xUpperLeftCorner + 8 && event.y >= yUpperLeftCorner && event.y <= yUpperLeftCorner + 8) {
-					Display.getDefault().timerExec(0, fadeOut(shell, true));
+					fadeOut(shell, true, 0);
 				}
 
 			}
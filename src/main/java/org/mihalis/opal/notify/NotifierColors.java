@@ -11,7 +11,8 @@
 package org.mihalis.opal.notify;
 
 import org.eclipse.swt.graphics.Color;
-import org.mihalis.opal.utils.SWTGraphicUtil;
+import org.eclipse.swt.widgets.Display;
+import org.mihalis.opal.utils.ResourceRegistry;
 
 /**
  * This class is a simple POJO that holds colors used by the Notifier widget
@@ -24,11 +25,11 @@ class NotifierColors {
 	Color leftColor;
 	Color rightColor;
 
+	/**
+	 * Release the colors. They are disposed when they are no longer used by
+	 * any notification
+	 */
 	void dispose() {
-		SWTGraphicUtil.safeDispose(this.titleColor);
-		SWTGraphicUtil.safeDispose(this.borderColor);
-		SWTGraphicUtil.safeDispose(this.leftColor);
-		SWTGraphicUtil.safeDispose(this.rightColor);
-		SWTGraphicUtil.safeDispose(this.textColor);
+		ResourceRegistry.getInstance(Display.getDefault()).release(this.titleColor, this.textColor, this.borderColor, this.leftColor, this.rightColor);
 	}
 }
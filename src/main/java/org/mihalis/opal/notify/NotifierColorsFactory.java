@@ -10,11 +10,12 @@
 
 package org.mihalis.opal.notify;
 
-import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.widgets.Display;
+import org.mihalis.opal.utils.ResourceRegistry;
 
 /**
- * This class creates the colors associated to a given theme
+ * This class creates the colors associated to a given theme. The colors are
+ * shared by all notifications, see {@link ResourceRegistry}
  * 
  */
 public class NotifierColorsFactory {
@@ -36,28 +37,28 @@ public class NotifierColorsFactory {
 	 */
 	static NotifierColors getColorsForTheme(final NotifierTheme theme) {
 		final NotifierColors colors = new NotifierColors();
-		Display display = Display.getDefault();
+		final ResourceRegistry registry = ResourceRegistry.getInstance(Display.getDefault());
 		switch (theme) {
 			case BLUE_THEME:
-				colors.textColor = new Color(display, 4, 64, 140);
-				colors.titleColor = new Color(display, 0, 0, 0);
-				colors.borderColor = new Color(display, 153, 188, 232);
-				colors.leftColor = new Color(display, 210, 225, 244);
-				colors.rightColor = new Color(display, 182, 207, 238);
+				colors.textColor = registry.getColor(4, 64, 140);
+				colors.titleColor = registry.getColor(0, 0, 0);
+				colors.borderColor = registry.getColor(153, 188, 232);
+				colors.leftColor = registry.getColor(210, 225, 244);
+				colors.rightColor = registry.getColor(182, 207, 238);
 				break;
 			case GRAY_THEME:
-				colors.textColor = new Color(display, 0, 0, 0);
-				colors.titleColor = new Color(display, 255, 20, 20);
-				colors.borderColor = new Color(display, 208, 208, 208);
-				colors.leftColor = new Color(display, 255, 255, 255);
-				colors.rightColor = new Color(display, 208, 208, 208);
+				colors.textColor = registry.getColor(0, 0, 0);
+				colors.titleColor = registry.getColor(255, 20, 20);
+				colors.borderColor = registry.getColor(208, 208, 208);
+				colors.leftColor = registry.getColor(255, 255, 255);
+				colors.rightColor = registry.getColor(208, 208, 208);
 				break;
 			default:
-				colors.textColor = new Color(display, 0, 0, 0);
-				colors.titleColor = new Color(display, 0, 0, 0);
-				colors.borderColor = new Color(display, 218, 178, 85);
-				colors.leftColor = new Color(display, 220, 220, 160);
-				colors.rightColor = new Color(display, 255, 255, 191);
+				colors.textColor = registry.getColor(0, 0, 0);
+				colors.titleColor = registry.getColor(0, 0, 0);
+				colors.borderColor = registry.getColor(218, 178, 85);
+				colors.leftColor = registry.getColor(220, 220, 160);
+				colors.rightColor = registry.getColor(255, 255, 191);
 				break;
 		}
 		return colors;
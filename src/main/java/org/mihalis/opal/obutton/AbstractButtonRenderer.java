@@ -10,6 +10,9 @@
  *******************************************************************************/
 package org.mihalis.opal.obutton;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.GC;
@@ -20,6 +23,8 @@ import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Event;
 import org.eclipse.swt.widgets.Listener;
 import org.mihalis.opal.utils.AdvancedPath;
+import org.mihalis.opal.utils.ImageFilterChain;
+import org.mihalis.opal.utils.ResourceRegistry;
 import org.mihalis.opal.utils.SWTGraphicUtil;
 
 /**
@@ -46,6 +51,7 @@ public abstract class AbstractButtonRenderer implements ButtonRenderer {
 	private Image imageDown;
 	private Image imageLeft;
 	private Image imageRight;
+	private final List<OButton> buttonsWithArrows = new ArrayList<OButton>();
 	private Image disabledImage;
 	private static final int MARGIN = 5;
 	private static final int GAP_ON_CLIC = 2;
@@ -55,7 +61,6 @@ public abstract class AbstractButtonRenderer implements ButtonRenderer {
 	 */
 	protected AbstractButtonRenderer() {
 		initButtonConfiguration();
-		createArrows();
 		createDisabledImage();
 	}
 
@@ -136,21 +141,28 @@ public abstract class AbstractButtonRenderer implements ButtonRenderer {
 		return createHoverConfiguration();
 	}
 
-	private void createArrows() {
-		final ClassLoader loader = org.mihalis.opal.obutton.AbstractButtonRenderer.class.getClassLoader();
-		imageUp = new Image(Display.getCurrent(), loader.getResourceAsStream(ARROW_UP_IMAGE));
-		imageDown = new Image(Display.getCurrent(), loader.getResourceAsStream(ARROW_DOWN_IMAGE));
-		imageLeft = new Image(Display.getCurrent(), loader.getResourceAsStream(ARROW_LEFT_IMAGE));
-		imageRight = new Image(Display.getCurrent(), loader.getResourceAsStream(ARROW_RIGHT_IMAGE));
-
-		Display.getCurrent().addListener(SWT.Dispose, new Listener() {
-
+	/**
+	 * Get the arrows from the registry of the display. The renderer is shared
+	 * by several buttons, so each button drawn with an arrow holds its own
+	 * reference on the arrows, released when the button is disposed
+	 */
+	private void retainArrows() {
+		if (buttonsWithArrows.contains(parent)) {
+			return;
+		}
+		final OButton button = parent;
+		final ResourceRegistry registry = ResourceRegistry.getInstance(button.getDisplay());
+		imageUp = registry.getImage(ARROW_UP_IMAGE);
+		imageDown = registry.getImage(ARROW_DOWN_IMAGE);
+		imageLeft = registry.getImage(ARROW_LEFT_IMAGE);
+		imageRight = registry.getImage(ARROW_RIGHT_IMAGE);
+		final Image[] arrows = new Image[] { imageUp, imageDown, imageLeft, imageRight };
+		buttonsWithArrows.add(button);
+		button.addListener(SWT.Dispose, new Listener() {
 			@Override
-			public void handleEvent(final Event event) {
-				imageUp.dispose();
-				imageDown.dispose();
-				imageLeft.dispose();
-				imageRight.dispose();
+			public void handleEvent(final Event e) {
+				buttonsWithArrows.remove(button);
+				registry.release(arrows);
 			}
 		});
 	}
@@ -166,7 +178,7 @@ public abstract class AbstractButtonRenderer implements ButtonRenderer {
 		if (parent == null || parent.getImage() == null) {
 			disabledImage = null;
 		} else {
-			disabledImage = new Image(parent.getDisplay(), parent.getImage(), SWT.IMAGE_DISABLE);
+			disabledImage = new ImageFilterChain().disabled().createImage(parent.getImage());
 			parent.addListener(SWT.Dispose, new Listener() {
 				@Override
 				public void handleEvent(final Event e) {
@@ -254,6 +266,7 @@ public abstract class AbstractButtonRenderer implements ButtonRenderer {
 
 	private Image extractImage() {
 		if ((parent.getStyle() & SWT.ARROW) != 0) {
+			retainArrows();
 			if ((parent.getStyle() & SWT.DOWN) != 0) {
 				return imageDown;
 			}
@@ -10,29 +10,51 @@
  *******************************************************************************/
 package org.mihalis.opal.panels;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.SWTException;
+import org.eclipse.swt.events.DisposeEvent;
+import org.eclipse.swt.events.DisposeListener;
 import org.eclipse.swt.events.PaintEvent;
 import org.eclipse.swt.events.PaintListener;
 import org.eclipse.swt.graphics.GC;
 import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.Point;
 import org.eclipse.swt.layout.FillLayout;
 import org.eclipse.swt.widgets.Canvas;
+import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Event;
 import org.eclipse.swt.widgets.Listener;
 import org.eclipse.swt.widgets.Shell;
+import org.mihalis.opal.utils.ImageFilterChain;
 import org.mihalis.opal.utils.SWTGraphicUtil;
 
 /**
  * Instances of this class are controls located on the top of a shell. They
- * display a blurred version of the content of the shell
+ * display a blurred version of the content of the shell.<br/>
+ * The blurred image is kept until the shell is resized or the panel is
+ * invalidated, so it is computed once for several show/hide cycles. In
+ * progressive mode, the panel is displayed at once with a quick blur of a
+ * downscaled capture, and the full quality blur is computed by a worker thread
+ * shared by all panels, then displayed when it is ready.
  */
 public class BlurredPanel {
 	private final Shell parent;
 	private static final String BLURED_PANEL_KEY = "org.mihalis.opal.Panels.DarkPanel";
+	private static final int PREVIEW_SCALE = 4;
+	private static ExecutorService executor;
 	private int radius;
 	private Shell panel;
 	private Canvas canvas;
+	private boolean progressive;
+	private Image blurredImage;
+	private Point blurredSize;
+	private int blurredRadius;
+	private int generation;
 
 	/**
 	 * Constructs a new instance of this class given its parent.
@@ -64,6 +86,12 @@ public class BlurredPanel {
 		}
 		shell.setData(BLURED_PANEL_KEY, this);
 		this.radius = 2;
+		shell.addDisposeListener(new DisposeListener() {
+			@Override
+			public void widgetDisposed(final DisposeEvent e) {
+				disposeBlurredImage();
+			}
+		});
 	}
 
 	/**
@@ -74,6 +102,11 @@ public class BlurredPanel {
 			SWT.error(SWT.ERROR_WIDGET_DISPOSED);
 		}
 
+		// The shell is captured before the panel covers it
+		if (!isCacheValid()) {
+			createBlurredImage();
+		}
+
 		this.panel = new Shell(this.parent, SWT.APPLICATION_MODAL | SWT.NO_TRIM);
 		this.panel.setLayout(new FillLayout());
 
@@ -106,17 +139,137 @@ public class BlurredPanel {
 	 */
 	private void paintCanvas(final PaintEvent e) {
 		// Paint the panel
-		e.gc.drawImage(createBlurredImage(), 0, 0);
+		if (this.blurredImage != null && !this.blurredImage.isDisposed()) {
+			e.gc.drawImage(this.blurredImage, 0, 0);
+		}
 	}
 
-	private Image createBlurredImage() {
+	/**
+	 * @return <code>true</code> if the blurred image has been computed for
+	 *         the current size of the shell and the current radius
+	 */
+	private boolean isCacheValid() {
+		return this.blurredImage != null && this.parent.getSize().equals(this.blurredSize) && this.radius == this.blurredRadius;
+	}
+
+	/**
+	 * Capture the shell and blur the capture. In progressive mode, a preview
+	 * is created at once and the full quality blur is computed by a worker
+	 * thread
+	 */
+	private void createBlurredImage() {
+		disposeBlurredImage();
+		final Display display = this.parent.getDisplay();
+		final Point size = this.parent.getSize();
 		final GC gc = new GC(this.parent);
-		final Image image = new Image(this.parent.getDisplay(), this.parent.getSize().x, this.parent.getSize().y);
-		gc.copyArea(image, 0, 0);
+		final Image capture = new Image(display, size.x, size.y);
+		gc.copyArea(capture, 0, 0);
 		gc.dispose();
+		final ImageData captureData = capture.getImageData();
+		capture.dispose();
+
+		this.blurredSize = size;
+		this.blurredRadius = this.radius;
+		if (!this.progressive) {
+			this.blurredImage = new Image(display, SWTGraphicUtil.blur(captureData, this.radius));
+			return;
+		}
+
+		this.blurredImage = createPreview(captureData);
+		final int expectedGeneration = this.generation;
+		final int blurRadius = this.radius;
+		getExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				final ImageData blurred = SWTGraphicUtil.blur(captureData, blurRadius);
+				try {
+					display.asyncExec(new Runnable() {
+						@Override
+						public void run() {
+							replacePreview(blurred, expectedGeneration);
+						}
+					});
+				} catch (final SWTException e) {
+					// The display has been disposed in the meantime
+				}
+			}
+		});
+	}
 
-		return new Image(this.parent.getDisplay(), SWTGraphicUtil.blur(image.getImageData(), this.radius));
+	/**
+	 * @return the worker thread shared by all panels, created on first use
+	 */
+	private static synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(final Runnable runnable) {
+					final Thread thread = new Thread(runnable, "Opal BlurredPanel");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
 
+	/**
+	 * Create a quick blur: the capture is shrunk, blurred, then enlarged with
+	 * interpolation, in a single filter chain
+	 * 
+	 * @param captureData capture of the shell
+	 * @return the preview
+	 */
+	private Image createPreview(final ImageData captureData) {
+		final int width = Math.max(1, captureData.width / PREVIEW_SCALE);
+		final int height = Math.max(1, captureData.height / PREVIEW_SCALE);
+		final ImageFilterChain chain = new ImageFilterChain().resize(width, height).blur(Math.max(1, this.radius / PREVIEW_SCALE)).resize(captureData.width, captureData.height);
+		return chain.createImage(this.parent.getDisplay(), captureData);
+	}
+
+	/**
+	 * Replace the preview by the full quality blur, unless the blurred image
+	 * has been invalidated in the meantime. This method is called by the UI
+	 * thread
+	 * 
+	 * @param blurred full quality blur
+	 * @param expectedGeneration generation of the preview to replace
+	 */
+	private void replacePreview(final ImageData blurred, final int expectedGeneration) {
+		if (this.parent.isDisposed() || expectedGeneration != this.generation) {
+			return;
+		}
+		SWTGraphicUtil.safeDispose(this.blurredImage);
+		this.blurredImage = new Image(this.parent.getDisplay(), blurred);
+		if (this.canvas != null && !this.canvas.isDisposed()) {
+			this.canvas.redraw();
+		}
+	}
+
+	/**
+	 * Forget the blurred image, so the shell is captured again the next time
+	 * the panel is shown. The image is also forgotten when the shell is
+	 * resized
+	 */
+	public void invalidate() {
+		if (this.panel != null && !this.panel.isDisposed()) {
+			// The image is displayed, it is disposed when the panel is hidden
+			this.generation++;
+			this.blurredSize = null;
+			return;
+		}
+		disposeBlurredImage();
+	}
+
+	/**
+	 * Dispose the blurred image, and ignore the full quality blur being
+	 * computed if any
+	 */
+	private void disposeBlurredImage() {
+		this.generation++;
+		SWTGraphicUtil.safeDispose(this.blurredImage);
+		this.blurredImage = null;
+		this.blurredSize = null;
 	}
 
 	/**
@@ -132,6 +285,10 @@ public class BlurredPanel {
 		}
 
 		this.panel.dispose();
+		if (this.blurredSize == null) {
+			// The panel has been invalidated while it was displayed
+			disposeBlurredImage();
+		}
 	}
 
 	/**
@@ -148,4 +305,21 @@ public class BlurredPanel {
 		this.radius = radius;
 	}
 
+	/**
+	 * @return <code>true</code> if the panel is displayed at once with a quick
+	 *         blur, then with the full quality blur when it is ready
+	 */
+	public boolean isProgressive() {
+		return this.progressive;
+	}
+
+	/**
+	 * @param progressive if <code>true</code>, the panel is displayed at once
+	 *            with a quick blur of a downscaled capture, and the full
+	 *            quality blur is computed by a worker thread
+	 */
+	public void setProgressive(final boolean progressive) {
+		this.progressive = progressive;
+	}
+
 }
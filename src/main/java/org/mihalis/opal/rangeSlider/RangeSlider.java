@@ -13,7 +13,9 @@ package org.mihalis.opal.rangeSlider;
 
 import java.text.Format;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.SWTException;
@@ -23,6 +25,7 @@ import org.eclipse.swt.events.PaintEvent;
 import org.eclipse.swt.events.PaintListener;
 import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.events.SelectionListener;
+import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.GC;
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.graphics.Point;
@@ -32,6 +35,7 @@ import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Event;
 import org.eclipse.swt.widgets.Listener;
 import org.eclipse.swt.widgets.Widget;
+import org.mihalis.opal.utils.ResourceRegistry;
 import org.mihalis.opal.utils.SWTGraphicUtil;
 
 /**
@@ -72,6 +76,9 @@ public class RangeSlider extends Canvas {
 	private final List<SelectionListener> listeners;
 	private final Image slider, sliderHover, sliderDrag, sliderSelected;
 	private final Image vSlider, vSliderHover, vSliderDrag, vSliderSelected;
+	private final Map<Image, Image> disabledImages;
+	private Image cachedBackground;
+	private boolean cachedBackgroundEnabled;
 	private int orientation;
 	private int increment;
 	private int pageIncrement;
@@ -124,16 +131,17 @@ public class RangeSlider extends Canvas {
 		listeners = new ArrayList<SelectionListener>();
 		increment = 1;
 		pageIncrement = 10;
-		final ClassLoader loader = org.mihalis.opal.rangeSlider.RangeSlider.class.getClassLoader();
-		slider = new Image(getDisplay(), loader.getResourceAsStream("images/slider-normal.png"));
-		sliderHover = new Image(getDisplay(), loader.getResourceAsStream("images/slider-hover.png"));
-		sliderDrag = new Image(getDisplay(), loader.getResourceAsStream("images/slider-drag.png"));
-		sliderSelected = new Image(getDisplay(), loader.getResourceAsStream("images/slider-selected.png"));
-
-		vSlider = new Image(getDisplay(), loader.getResourceAsStream("images/h-slider-normal.png"));
-		vSliderHover = new Image(getDisplay(), loader.getResourceAsStream("images/h-slider-hover.png"));
-		vSliderDrag = new Image(getDisplay(), loader.getResourceAsStream("images/h-slider-drag.png"));
-		vSliderSelected = new Image(getDisplay(), loader.getResourceAsStream("images/h-slider-selected.png"));
+		final ResourceRegistry registry = ResourceRegistry.getInstance(getDisplay());
+		slider = registry.getImage("images/slider-normal.png");
+		sliderHover = registry.getImage("images/slider-hover.png");
+		sliderDrag = registry.getImage("images/slider-drag.png");
+		sliderSelected = registry.getImage("images/slider-selected.png");
+
+		vSlider = registry.getImage("images/h-slider-normal.png");
+		vSliderHover = registry.getImage("images/h-slider-hover.png");
+		vSliderDrag = registry.getImage("images/h-slider-drag.png");
+		vSliderSelected = registry.getImage("images/h-slider-selected.png");
+		disabledImages = new IdentityHashMap<Image, Image>();
 
 		if ((style & SWT.VERTICAL) == SWT.VERTICAL) {
 			orientation = SWT.VERTICAL;
@@ -149,15 +157,11 @@ public class RangeSlider extends Canvas {
 		addListener(SWT.Dispose, new Listener() {
 			@Override
 			public void handleEvent(final Event event) {
-				SWTGraphicUtil.safeDispose(slider);
-				SWTGraphicUtil.safeDispose(sliderHover);
-				SWTGraphicUtil.safeDispose(sliderDrag);
-				SWTGraphicUtil.safeDispose(sliderSelected);
-
-				SWTGraphicUtil.safeDispose(vSlider);
-				SWTGraphicUtil.safeDispose(vSliderHover);
-				SWTGraphicUtil.safeDispose(vSliderDrag);
-				SWTGraphicUtil.safeDispose(vSliderSelected);
+				registry.release(slider, sliderHover, sliderDrag, sliderSelected);
+				registry.release(vSlider, vSliderHover, vSliderDrag, vSliderSelected);
+				registry.release(disabledImages.values().toArray(new Image[disabledImages.size()]));
+				disabledImages.clear();
+				invalidateBackground();
 			}
 		});
 		addMouseListeners();
@@ -169,6 +173,7 @@ public class RangeSlider extends Canvas {
 				} else {
 					tickFactor = ((orientation == SWT.HORIZONTAL ? getClientArea().width : getClientArea().height) - 20f) / tickDivisions;
 				}
+				invalidateBackground();
 			}
 		});
 		addFocusListener(new FocusListener() {
@@ -249,6 +254,34 @@ public class RangeSlider extends Canvas {
 			if (range != fullRange) ++tickDivisions;
 		}
 	}
+	/**
+	 * @see org.eclipse.swt.widgets.Control#setEnabled(boolean)
+	 */
+	@Override
+	public void setEnabled(final boolean enabled) {
+		super.setEnabled(enabled);
+		invalidateBackground();
+		redraw();
+	}
+
+	/**
+	 * @see org.eclipse.swt.widgets.Control#setBackground(org.eclipse.swt.graphics.Color)
+	 */
+	@Override
+	public void setBackground(final Color color) {
+		super.setBackground(color);
+		invalidateBackground();
+	}
+
+	/**
+	 * @see org.eclipse.swt.widgets.Control#setForeground(org.eclipse.swt.graphics.Color)
+	 */
+	@Override
+	public void setForeground(final Color color) {
+		super.setForeground(color);
+		invalidateBackground();
+	}
+
 	@Override
 	public int getStyle() {
 		return super.getStyle() | orientation
@@ -713,7 +746,6 @@ public class RangeSlider extends Canvas {
 	 */
 	private void drawHorizontalRangeSlider(final GC gc) {
 		drawBackgroundHorizontal(gc);
-		drawBarsHorizontal(gc);
 		if (lowerHover || (selectedElement & LOWER) != 0) {
 				coordUpper = drawHorizontalKnob(gc, upperValue, true);
 				coordLower = drawHorizontalKnob(gc, lowerValue, false);
@@ -724,22 +756,14 @@ public class RangeSlider extends Canvas {
 	}
 
 	/**
-	 * Draw the background
+	 * Draw the background: the cached frame and tick marks, then the selected
+	 * range
 	 *
 	 * @param gc graphic context
 	 */
 	private void drawBackgroundHorizontal(final GC gc) {
 		final Rectangle clientArea = getClientArea();
-
-		gc.setBackground(getBackground());
-		gc.fillRectangle(clientArea);
-
-		if (isEnabled()) {
-			gc.setForeground(getForeground());
-		} else {
-			gc.setForeground(getDisplay().getSystemColor(SWT.COLOR_GRAY));
-		}
-		gc.drawRoundRectangle(9, 9, clientArea.width - 20, clientArea.height - 20, 3, 3);
+		gc.drawImage(getCachedBackground(), clientArea.x, clientArea.y);
 
 		final float pixelSize = computePixelSizeForHorizontalSlider();
 		final int startX = (int) (pixelSize * lowerValue);
@@ -812,9 +836,7 @@ public class RangeSlider extends Canvas {
 		if (isEnabled()) {
 			gc.drawImage(image, x + 5, getClientArea().height / 2 - slider.getBounds().height / 2);
 		} else {
-			final Image temp = new Image(getDisplay(), image, SWT.IMAGE_DISABLE);
-			gc.drawImage(temp, x + 5, getClientArea().height / 2 - slider.getBounds().height / 2);
-			temp.dispose();
+			gc.drawImage(getDisabledImage(image), x + 5, getClientArea().height / 2 - slider.getBounds().height / 2);
 		}
 		return new Point(x + 5, getClientArea().height / 2 - slider.getBounds().height / 2);
 	}
@@ -826,7 +848,6 @@ public class RangeSlider extends Canvas {
 	 */
 	private void drawVerticalRangeSlider(final GC gc) {
 		drawBackgroundVertical(gc);
-		drawBarsVertical(gc);
 		if (lowerHover || (selectedElement & LOWER) != 0) {
 				coordUpper = drawVerticalKnob(gc, upperValue, true);
 				coordLower = drawVerticalKnob(gc, lowerValue, false);
@@ -837,21 +858,14 @@ public class RangeSlider extends Canvas {
 	}
 
 	/**
-	 * Draws the background
+	 * Draws the background: the cached frame and tick marks, then the
+	 * selected range
 	 *
 	 * @param gc graphic context
 	 */
 	private void drawBackgroundVertical(final GC gc) {
 		final Rectangle clientArea = getClientArea();
-		gc.setBackground(getBackground());
-		gc.fillRectangle(clientArea);
-
-		if (isEnabled()) {
-			gc.setForeground(getForeground());
-		} else {
-			gc.setForeground(getDisplay().getSystemColor(SWT.COLOR_GRAY));
-		}
-		gc.drawRoundRectangle(9, 9, clientArea.width - 20, clientArea.height - 20, 3, 3);
+		gc.drawImage(getCachedBackground(), clientArea.x, clientArea.y);
 
 		final float pixelSize = computePixelSizeForVerticalSlider();
 		final int startY = (int) (pixelSize * lowerValue);
@@ -926,12 +940,70 @@ public class RangeSlider extends Canvas {
 		if (isEnabled()) {
 			gc.drawImage(image, getClientArea().width / 2 - 8, y + 4);
 		} else {
-			final Image temp = new Image(getDisplay(), image, SWT.IMAGE_DISABLE);
-			gc.drawImage(temp, getClientArea().width / 2 - 8, y + 4);
-			temp.dispose();
+			gc.drawImage(getDisabledImage(image), getClientArea().width / 2 - 8, y + 4);
 		}
 		return new Point(getClientArea().width / 2 - 8, y + 4);
 	}
+
+	/**
+	 * @param image image of a knob
+	 * @return the disabled version of the image, shared by all sliders of the
+	 *         display
+	 */
+	private Image getDisabledImage(final Image image) {
+		Image disabledImage = disabledImages.get(image);
+		if (disabledImage == null) {
+			disabledImage = ResourceRegistry.getInstance(getDisplay()).getDisabledImage(image);
+			disabledImages.put(image, disabledImage);
+		}
+		return disabledImage;
+	}
+
+	/**
+	 * @return the background of the slider (background color, frame and tick
+	 *         marks). It is drawn once, and drawn again only after a change of
+	 *         size, extrema, increments, colors or state. The state is checked
+	 *         at each paint, because the slider is also disabled when one of
+	 *         its parents is disabled
+	 */
+	private Image getCachedBackground() {
+		final boolean enabled = isEnabled();
+		if (cachedBackground != null && cachedBackgroundEnabled == enabled) {
+			return cachedBackground;
+		}
+		invalidateBackground();
+		final Rectangle clientArea = getClientArea();
+		cachedBackground = new Image(getDisplay(), Math.max(1, clientArea.width), Math.max(1, clientArea.height));
+		cachedBackgroundEnabled = enabled;
+		final GC gc = new GC(cachedBackground);
+		gc.setAdvanced(true);
+		gc.setAntialias(SWT.ON);
+		gc.setBackground(getBackground());
+		gc.fillRectangle(0, 0, clientArea.width, clientArea.height);
+
+		if (enabled) {
+			gc.setForeground(getForeground());
+		} else {
+			gc.setForeground(getDisplay().getSystemColor(SWT.COLOR_GRAY));
+		}
+		gc.drawRoundRectangle(9, 9, clientArea.width - 20, clientArea.height - 20, 3, 3);
+
+		if (orientation == SWT.HORIZONTAL) {
+			drawBarsHorizontal(gc);
+		} else {
+			drawBarsVertical(gc);
+		}
+		gc.dispose();
+		return cachedBackground;
+	}
+
+	/**
+	 * Forget the cached background, so it is drawn again at the next paint
+	 */
+	private void invalidateBackground() {
+		SWTGraphicUtil.safeDispose(cachedBackground);
+		cachedBackground = null;
+	}
 	/**
 	 * move the cursor location by the input delta values.
 	 * @param xDelta
@@ -1352,6 +1424,7 @@ public class RangeSlider extends Canvas {
 		this.increment = increment;
 		if (isHighQuality) {
 			setTickFactors();
+			invalidateBackground();
 		}
 		redraw();
 	}
@@ -1457,6 +1530,7 @@ public class RangeSlider extends Canvas {
 			if (isHighQuality) {
 				setTickFactors();
 			}
+			invalidateBackground();
 			redraw();
 		}
 	}
@@ -1481,6 +1555,7 @@ public class RangeSlider extends Canvas {
 		this.pageIncrement = pageIncrement;
 		if (isHighQuality) {
 			setTickFactors();
+			invalidateBackground();
 		}
 		redraw();
 	}
@@ -13,7 +13,7 @@ package org.mihalis.opal.starRating;
 import org.eclipse.swt.graphics.GC;
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.graphics.Rectangle;
-import org.eclipse.swt.widgets.Display;
+import org.mihalis.opal.utils.ResourceRegistry;
 
 /**
  * Instances of this class represent a star displayed by the StarRating
@@ -38,10 +38,7 @@ class Star {
 	private StarRating parent;
 
 	void dispose() {
-		defaultImage.dispose();
-		hoverImage.dispose();
-		selectedImage.dispose();
-		selectedHoverImage.dispose();
+		ResourceRegistry.getInstance(parent.getDisplay()).release(defaultImage, hoverImage, selectedImage, selectedHoverImage);
 	}
 
 	void draw(final GC gc, final int x, final int y) {
@@ -71,22 +68,22 @@ class Star {
 	static Star initBig(final StarRating parent) {
 		final Star star = new Star();
 		star.parent = parent;
-		final ClassLoader loader = org.mihalis.opal.starRating.Star.class.getClassLoader();
-		star.defaultImage = new Image(Display.getCurrent(), loader.getResourceAsStream("images/stars/" + BIG_STAR));
-		star.hoverImage = new Image(Display.getCurrent(), loader.getResourceAsStream("images/stars/" + BIG_STAR_FOCUS));
-		star.selectedImage = new Image(Display.getCurrent(), loader.getResourceAsStream("images/stars/" + BIG_STAR_MARKED));
-		star.selectedHoverImage = new Image(Display.getCurrent(), loader.getResourceAsStream("images/stars/" + BIG_STAR_MARKED_FOCUS));
+		final ResourceRegistry registry = ResourceRegistry.getInstance(parent.getDisplay());
+		star.defaultImage = registry.getImage("images/stars/" + BIG_STAR);
+		star.hoverImage = registry.getImage("images/stars/" + BIG_STAR_FOCUS);
+		star.selectedImage = registry.getImage("images/stars/" + BIG_STAR_MARKED);
+		star.selectedHoverImage = registry.getImage("images/stars/" + BIG_STAR_MARKED_FOCUS);
 		return star;
 	}
 
 	static Star initSmall(final StarRating parent) {
 		final Star star = new Star();
 		star.parent = parent;
-		final ClassLoader loader = org.mihalis.opal.starRating.Star.class.getClassLoader();
-		star.defaultImage = new Image(Display.getCurrent(), loader.getResourceAsStream("images/stars/" + SMALL_STAR));
-		star.hoverImage = new Image(Display.getCurrent(), loader.getResourceAsStream("images/stars/" + SMALL_STAR_FOCUS));
-		star.selectedImage = new Image(Display.getCurrent(), loader.getResourceAsStream("images/stars/" + SMALL_STAR_MARKED));
-		star.selectedHoverImage = new Image(Display.getCurrent(), loader.getResourceAsStream("images/stars/" + SMALL_STAR_MARKED_FOCUS));
+		final ResourceRegistry registry = ResourceRegistry.getInstance(parent.getDisplay());
+		star.defaultImage = registry.getImage("images/stars/" + SMALL_STAR);
+		star.hoverImage = registry.getImage("images/stars/" + SMALL_STAR_FOCUS);
+		star.selectedImage = registry.getImage("images/stars/" + SMALL_STAR_MARKED);
+		star.selectedHoverImage = registry.getImage("images/stars/" + SMALL_STAR_MARKED_FOCUS);
 		return star;
 	}
 }
@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - initial API and implementation
+ *******************************************************************************/
+package org.mihalis.opal.systemMonitor;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+
+/**
+ * Instances of this class represent a sample that contains the allocation
+ * rate (in megabytes per second) of the running application, computed from
+ * the bytes allocated by each live thread. The max value is the peak. If the
+ * JVM does not support the measurement of allocated bytes, the value is 0
+ */
+public class AllocationRateSample implements Sample {
+	private static final ObjectName OBJECT_NAME = MBeanAttributeReader.createObjectName("java.lang:type=Threading");
+	private static final String[] SIGNATURE = new String[] { long[].class.getName() };
+
+	/**
+	 * Reads the bytes allocated by all live threads, once per refresh of the
+	 * reader for all samples that use it. The ids are sorted
+	 */
+	private static final MBeanAttributeReader.Reading ALLOCATED_BYTES = new MBeanAttributeReader.Reading() {
+		@Override
+		public Object read(final MBeanServerConnection connection) throws Exception {
+			try {
+				if (!Boolean.TRUE.equals(connection.getAttribute(OBJECT_NAME, "ThreadAllocatedMemoryEnabled"))) {
+					return null;
+				}
+				final long[] ids = (long[]) connection.getAttribute(OBJECT_NAME, "AllThreadIds");
+				Arrays.sort(ids);
+				final long[] bytes = (long[]) connection.invoke(OBJECT_NAME, "getThreadAllocatedBytes", new Object[] { ids }, SIGNATURE);
+				return new AllocatedBytes(System.nanoTime(), ids, bytes);
+			} catch (final IOException e) {
+				throw e;
+			} catch (final Exception e) {
+				// The JVM does not support the measurement of allocated bytes
+				return null;
+			}
+		}
+	};
+
+	private final MBeanAttributeReader reader;
+	private AllocatedBytes previous;
+	private double value;
+	private double peak;
+
+	/**
+	 * Constructor
+	 */
+	public AllocationRateSample() {
+		this(MBeanAttributeReader.getPlatformReader());
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param reader reader used to get the attributes
+	 */
+	AllocationRateSample(final MBeanAttributeReader reader) {
+		this.reader = reader;
+		reader.register(ALLOCATED_BYTES);
+	}
+
+	/**
+	 * @see org.mihalis.opal.systemMonitor.Sample#getValue()
+	 */
+	@Override
+	public synchronized double getValue() {
+		final AllocatedBytes current = (AllocatedBytes) this.reader.getReading(ALLOCATED_BYTES);
+		if (current == null) {
+			return 0d;
+		}
+		if (current == this.previous) {
+			// No new reading, the value computed for the previous caller is
+			// shared
+			return this.value;
+		}
+
+		// Both readings are sorted by thread id: a thread that did not exist
+		// at the previous reading has allocated all its bytes since then
+		final long[] previousIds = this.previous == null ? null : this.previous.ids;
+		final long[] previousBytes = this.previous == null ? null : this.previous.bytes;
+		final int previousLength = previousIds == null ? 0 : previousIds.length;
+		long allocated = 0;
+		int index = 0;
+		for (int i = 0; i < current.ids.length; i++) {
+			if (current.bytes[i] < 0) {
+				// The thread has died in the meantime
+				continue;
+			}
+			while (index < previousLength && previousIds[index] < current.ids[i]) {
+				index++;
+			}
+			if (index < previousLength && previousIds[index] == current.ids[i]) {
+				allocated += Math.max(0, current.bytes[i] - previousBytes[index]);
+			} else {
+				allocated += current.bytes[i];
+			}
+		}
+
+		this.value = this.previous == null ? 0d : allocated / 1024.0D / 1024.0D / ((current.time - this.previous.time) / 1000000000.0D);
+		this.peak = Math.max(this.peak, this.value);
+		this.previous = current;
+		return this.value;
+	}
+
+	/**
+	 * @see org.mihalis.opal.systemMonitor.Sample#getMaxValue()
+	 */
+	@Override
+	public synchronized double getMaxValue() {
+		return Math.max(1d, this.peak);
+	}
+
+	/**
+	 * Bytes allocated by the live threads at a given time. The arrays are
+	 * shared by the samples and must not be modified
+	 */
+	private static class AllocatedBytes {
+		private final long time;
+		private final long[] ids;
+		private final long[] bytes;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param time time of the reading (as given by
+		 *            <code>System.nanoTime()</code>)
+		 * @param ids ids of the live threads, sorted
+		 * @param bytes bytes allocated by these threads
+		 */
+		AllocatedBytes(final long time, final long[] ids, final long[] bytes) {
+			this.time = time;
+			this.ids = ids;
+			this.bytes = bytes;
+		}
+	}
+
+}
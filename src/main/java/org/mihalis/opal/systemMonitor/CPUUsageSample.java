@@ -10,9 +10,6 @@
  *******************************************************************************/
 package org.mihalis.opal.systemMonitor;
 
-import java.lang.management.ManagementFactory;
-
-import javax.management.MBeanServerConnection;
 import javax.management.ObjectName;
 
 /**
@@ -22,36 +19,49 @@ public class CPUUsageSample implements Sample {
 
 	private static final String PROCESS_CPU_TIME = "ProcessCpuTime";
 	private static final String OBJECT_NAME_ATTRIBUTE = "java.lang:type=OperatingSystem";
-	private final MBeanServerConnection mBeanServerConnection = ManagementFactory.getPlatformMBeanServer();
-	private ObjectName objectName;
+	private final MBeanAttributeReader reader;
+	private final ObjectName[] objectNames;
+	private final long[] processTimes;
 	private long time;
 	private long processTime;
+	private double value;
 
 	/**
 	 * Constructor
 	 */
 	public CPUUsageSample() {
-		try {
-			this.objectName = new ObjectName(OBJECT_NAME_ATTRIBUTE);
-		} catch (final Exception e) {
-			throw new RuntimeException(e);
-		}
+		this(MBeanAttributeReader.getPlatformReader());
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param reader reader used to get the attributes
+	 */
+	CPUUsageSample(final MBeanAttributeReader reader) {
+		this.reader = reader;
+		this.objectNames = new ObjectName[] { MBeanAttributeReader.createObjectName(OBJECT_NAME_ATTRIBUTE) };
+		this.processTimes = new long[1];
+		reader.register(this.objectNames[0], PROCESS_CPU_TIME);
 	}
 
 	/**
 	 * @see org.mihalis.opal.systemMonitor.Sample#getValue()
 	 */
 	@Override
-	public double getValue() {
-		try {
-			float f = ((Long) this.mBeanServerConnection.getAttribute(this.objectName, PROCESS_CPU_TIME)).longValue() - this.processTime;
-			f /= System.nanoTime() - this.time;
-			this.time = System.nanoTime();
-			this.processTime = ((Long) this.mBeanServerConnection.getAttribute(this.objectName, PROCESS_CPU_TIME)).longValue();
-			return f;
-		} catch (final Exception localException) {
-			throw new RuntimeException(localException);
+	public synchronized double getValue() {
+		// The process time and the time of the reading come from the same
+		// reading
+		final long currentTime = this.reader.getLongs(this.objectNames, PROCESS_CPU_TIME, this.processTimes);
+		final long currentProcessTime = this.processTimes[0];
+		if (currentTime != this.time) {
+			// A new reading is available, otherwise the value computed for
+			// the previous caller is shared
+			this.value = this.time == 0 ? 0d : (double) (currentProcessTime - this.processTime) / (currentTime - this.time);
+			this.time = currentTime;
+			this.processTime = currentProcessTime;
 		}
+		return this.value;
 	}
 
 	/**
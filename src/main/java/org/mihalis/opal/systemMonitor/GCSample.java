@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - initial API and implementation
+ *******************************************************************************/
+package org.mihalis.opal.systemMonitor;
+
+import javax.management.ObjectName;
+
+/**
+ * This class is the base of the samples computed from the garbage collectors.
+ * The value is the increase of an attribute, summed over all collectors,
+ * since the previous reading
+ */
+abstract class GCSample implements Sample {
+
+	private static final String OBJECT_NAME_PATTERN = "java.lang:type=GarbageCollector,name=*";
+	private final MBeanAttributeReader reader;
+	private ObjectName[] collectors;
+	private long[] values;
+	private final String attribute;
+	private long time;
+	private long total;
+	private double value;
+	private double elapsed;
+	private double peak;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param reader reader used to get the attributes
+	 * @param attribute attribute of the GarbageCollectorMXBean
+	 */
+	GCSample(final MBeanAttributeReader reader, final String attribute) {
+		this.reader = reader;
+		this.attribute = attribute;
+	}
+
+	/**
+	 * Find the collectors at the first reading, so that a remote JVM does not
+	 * need to be reachable when the sample is created
+	 */
+	private void findCollectors() {
+		if (this.collectors != null) {
+			return;
+		}
+		final ObjectName[] names = this.reader.queryNames(MBeanAttributeReader.createObjectName(OBJECT_NAME_PATTERN));
+		for (final ObjectName collector : names) {
+			this.reader.register(collector, this.attribute);
+		}
+		this.values = new long[names.length];
+		this.collectors = names;
+	}
+
+	/**
+	 * @see org.mihalis.opal.systemMonitor.Sample#getValue()
+	 */
+	@Override
+	public synchronized double getValue() {
+		findCollectors();
+		// All values and the time come from the same reading
+		final long currentTime = this.reader.getLongs(this.collectors, this.attribute, this.values);
+		long currentTotal = 0;
+		for (final long collectorValue : this.values) {
+			// -1 if the collector does not support this attribute
+			currentTotal += Math.max(0, collectorValue);
+		}
+		if (currentTime != this.time) {
+			this.value = this.time == 0 ? 0d : currentTotal - this.total;
+			this.elapsed = this.time == 0 ? 0d : (currentTime - this.time) / 1000000d;
+			this.peak = Math.max(this.peak, this.value);
+			this.time = currentTime;
+			this.total = currentTotal;
+		}
+		return this.value;
+	}
+
+	/**
+	 * @return the time elapsed in milliseconds between the last two readings
+	 */
+	synchronized double getElapsed() {
+		return this.elapsed;
+	}
+
+	/**
+	 * @return the highest value computed so far
+	 */
+	synchronized double getPeak() {
+		return this.peak;
+	}
+
+}
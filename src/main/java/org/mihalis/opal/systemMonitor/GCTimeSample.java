@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - initial API and implementation
+ *******************************************************************************/
+package org.mihalis.opal.systemMonitor;
+
+/**
+ * Instances of this class represent a sample that contains the time (in
+ * milliseconds) spent in garbage collections since the previous reading. The
+ * max value is the time elapsed since the previous reading
+ */
+public class GCTimeSample extends GCSample {
+	private static final String COLLECTION_TIME = "CollectionTime";
+
+	/**
+	 * Constructor
+	 */
+	public GCTimeSample() {
+		this(MBeanAttributeReader.getPlatformReader());
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param reader reader used to get the attributes
+	 */
+	GCTimeSample(final MBeanAttributeReader reader) {
+		super(reader, COLLECTION_TIME);
+	}
+
+	/**
+	 * @see org.mihalis.opal.systemMonitor.Sample#getMaxValue()
+	 */
+	@Override
+	public double getMaxValue() {
+		return Math.max(1d, getElapsed());
+	}
+
+}
@@ -10,11 +10,8 @@
  *******************************************************************************/
 package org.mihalis.opal.systemMonitor;
 
-import java.lang.management.ManagementFactory;
-
-import javax.management.MBeanServerConnection;
 import javax.management.ObjectName;
-import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeData;
 
 /**
  * Instances of this class represent a sample that contains the Thread Usage of
@@ -25,18 +22,25 @@ public class HeapMemorySample implements Sample {
 	private static final String USED = "used";
 	private static final String HEAP_MEMORY_USAGE = "HeapMemoryUsage";
 	private static final String OBJECT_NAME_ATTRIBUTE = "java.lang:type=Memory";
-	private final MBeanServerConnection mBeanServerConnection = ManagementFactory.getPlatformMBeanServer();
+	private final MBeanAttributeReader reader;
 	private final ObjectName objectName;
 
 	/**
 	 * Constructor
 	 */
 	HeapMemorySample() {
-		try {
-			this.objectName = new ObjectName(OBJECT_NAME_ATTRIBUTE);
-		} catch (final Exception e) {
-			throw new RuntimeException(e);
-		}
+		this(MBeanAttributeReader.getPlatformReader());
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param reader reader used to get the attributes
+	 */
+	HeapMemorySample(final MBeanAttributeReader reader) {
+		this.reader = reader;
+		this.objectName = MBeanAttributeReader.createObjectName(OBJECT_NAME_ATTRIBUTE);
+		reader.register(this.objectName, HEAP_MEMORY_USAGE);
 	}
 
 	/**
@@ -44,12 +48,7 @@ public class HeapMemorySample implements Sample {
 	 */
 	@Override
 	public double getValue() {
-		try {
-			return ((Long) ((CompositeDataSupport) this.mBeanServerConnection.getAttribute(this.objectName, HEAP_MEMORY_USAGE)).get(USED)).longValue() / 1024.0D / 1024.0D;
-		} catch (final Exception e) {
-			throw new RuntimeException(e);
-		}
-
+		return getUsage(USED) / 1024.0D / 1024.0D;
 	}
 
 	/**
@@ -57,11 +56,19 @@ public class HeapMemorySample implements Sample {
 	 */
 	@Override
 	public double getMaxValue() {
-		try {
-			return ((Long) ((CompositeDataSupport) this.mBeanServerConnection.getAttribute(this.objectName, HEAP_MEMORY_USAGE)).get(COMMITTED)).longValue() / 1024.0D / 1024.0D;
-		} catch (final Exception e) {
-			throw new RuntimeException(e);
+		return getUsage(COMMITTED) / 1024.0D / 1024.0D;
+	}
+
+	/**
+	 * @param key key in the memory usage composite data
+	 * @return the associated value
+	 */
+	private long getUsage(final String key) {
+		final Object usage = this.reader.getAttribute(this.objectName, HEAP_MEMORY_USAGE);
+		if (!(usage instanceof CompositeData)) {
+			throw new RuntimeException("Attribute " + HEAP_MEMORY_USAGE + " is not available");
 		}
+		return ((Number) ((CompositeData) usage).get(key)).longValue();
 	}
 
 }
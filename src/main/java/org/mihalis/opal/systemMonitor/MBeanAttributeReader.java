@@ -0,0 +1,553 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - initial API and implementation
+ *******************************************************************************/
+package org.mihalis.opal.systemMonitor;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+import javax.management.remote.JMXServiceURL;
+
+/**
+ * Instances of this class read MBean attributes on behalf of the samples.<br/>
+ * Attributes are registered by the samples, then read in a batch: one
+ * <code>getAttributes()</code> call per object name. Calls that are not
+ * attributes (like operations) are registered as readings and run with the
+ * batch, so a sample never calls the MBean server itself. The values are
+ * cached for a short time, so all samples (and all monitors) that ask for a
+ * value during the same tick share the same reading.
+ * <p>
+ * Readers are shared: there is one reader per connection, and one reader per
+ * remote JVM, which owns a pooled connection that is opened again with a
+ * backoff when it is lost. The shared readers are counted: each call to
+ * <code>getReader()</code> must be balanced by a call to
+ * {@link #release(MBeanAttributeReader)}, and the reader is forgotten (and its
+ * remote connection closed) when the last user releases it.
+ * </p>
+ */
+public class MBeanAttributeReader {
+
+	private static final long DEFAULT_MAX_AGE = 50;
+	private static MBeanAttributeReader platformReader;
+	private static final Map<MBeanServerConnection, MBeanAttributeReader> READERS = new HashMap<MBeanServerConnection, MBeanAttributeReader>();
+	private static final Map<JMXServiceURL, RemoteMBeanAttributeReader> REMOTE_READERS = new HashMap<JMXServiceURL, RemoteMBeanAttributeReader>();
+
+	private final MBeanServerConnection connection;
+	private final long maxAge;
+	private final Map<ObjectName, AttributeGroup> groups;
+	private final Map<Reading, Object> readings;
+	private long refreshTime;
+	private boolean refreshed;
+	private int version;
+	private int references;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param connection connection to the MBean server
+	 */
+	public MBeanAttributeReader(final MBeanServerConnection connection) {
+		this(connection, DEFAULT_MAX_AGE);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param connection connection to the MBean server
+	 * @param maxAge duration in milliseconds during which a reading is reused
+	 */
+	public MBeanAttributeReader(final MBeanServerConnection connection, final long maxAge) {
+		this.connection = connection;
+		this.maxAge = maxAge * 1000000L;
+		this.groups = new LinkedHashMap<ObjectName, AttributeGroup>();
+		this.readings = new LinkedHashMap<Reading, Object>();
+	}
+
+	/**
+	 * @return the reader associated to the platform MBean server
+	 */
+	public static synchronized MBeanAttributeReader getPlatformReader() {
+		if (platformReader == null) {
+			platformReader = new MBeanAttributeReader(ManagementFactory.getPlatformMBeanServer());
+		}
+		return platformReader;
+	}
+
+	/**
+	 * @param connection connection to a MBean server, owned by the caller
+	 * @return the reader shared by all samples that use this connection. The
+	 *         platform reader is returned for the platform MBean server
+	 */
+	public static synchronized MBeanAttributeReader getReader(final MBeanServerConnection connection) {
+		if (connection == ManagementFactory.getPlatformMBeanServer()) {
+			return getPlatformReader();
+		}
+		MBeanAttributeReader reader = READERS.get(connection);
+		if (reader == null) {
+			reader = new MBeanAttributeReader(connection);
+			READERS.put(connection, reader);
+		}
+		return retain(reader);
+	}
+
+	/**
+	 * @param url address of the JMX connector server of a remote JVM
+	 * @return the reader shared by all samples that monitor this JVM. The
+	 *         connection is opened on the first reading
+	 */
+	public static synchronized MBeanAttributeReader getReader(final JMXServiceURL url) {
+		RemoteMBeanAttributeReader reader = REMOTE_READERS.get(url);
+		if (reader == null) {
+			reader = new RemoteMBeanAttributeReader(url);
+			REMOTE_READERS.put(url, reader);
+		}
+		return retain(reader);
+	}
+
+	/**
+	 * Count a new reference to a shared reader. The caller must hold the lock
+	 * of this class
+	 * 
+	 * @param reader the reader
+	 * @return the reader
+	 */
+	private static MBeanAttributeReader retain(final MBeanAttributeReader reader) {
+		reader.references++;
+		return reader;
+	}
+
+	/**
+	 * Release a reader given by one of the <code>getReader()</code> methods.
+	 * When a reader is not used anymore, it is forgotten and its remote
+	 * connection is closed. The platform reader is never released
+	 * 
+	 * @param reader reader to release
+	 */
+	public static synchronized void release(final MBeanAttributeReader reader) {
+		if (reader == null || reader == platformReader || --reader.references > 0) {
+			return;
+		}
+		if (READERS.get(reader.connection) == reader) {
+			READERS.remove(reader.connection);
+		}
+		if (reader instanceof RemoteMBeanAttributeReader) {
+			REMOTE_READERS.values().remove(reader);
+			((RemoteMBeanAttributeReader) reader).close();
+		}
+	}
+
+	/**
+	 * Close all connections opened to remote JVMs. The samples of these JVMs
+	 * that are shared by the monitors are dropped: the monitors that display
+	 * them stop updating them, and the next samples created for these JVMs
+	 * open new connections
+	 */
+	public static void closeRemoteConnections() {
+		final List<RemoteMBeanAttributeReader> readers;
+		synchronized (MBeanAttributeReader.class) {
+			readers = new ArrayList<RemoteMBeanAttributeReader>(REMOTE_READERS.values());
+			REMOTE_READERS.clear();
+		}
+		// The factory is called without holding the lock of this class, it
+		// calls release() while holding its own lock
+		for (final RemoteMBeanAttributeReader reader : readers) {
+			SampleFactory.getInstance().removeSharedSamples(reader);
+			reader.close();
+		}
+	}
+
+	/**
+	 * Create an object name, wrapping the checked exception
+	 * 
+	 * @param name name of the MBean
+	 * @return the object name
+	 */
+	static ObjectName createObjectName(final String name) {
+		try {
+			return new ObjectName(name);
+		} catch (final Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * @return the connection to the MBean server
+	 * @throws IOException if the connection is not available
+	 */
+	MBeanServerConnection getConnection() throws IOException {
+		return this.connection;
+	}
+
+	/**
+	 * Called when a reading has failed
+	 * 
+	 * @param e exception thrown during the reading
+	 */
+	void readingFailed(final Exception e) {
+	}
+
+	/**
+	 * Find the MBeans that match a pattern
+	 * 
+	 * @param pattern pattern of object names
+	 * @return the names of the matching MBeans
+	 */
+	public ObjectName[] queryNames(final ObjectName pattern) {
+		return readNames(pattern);
+	}
+
+	/**
+	 * Query the MBean server. The call is made without holding the lock of
+	 * this reader
+	 * 
+	 * @param pattern pattern of object names
+	 * @return the names of the matching MBeans
+	 */
+	ObjectName[] readNames(final ObjectName pattern) {
+		try {
+			final Set<ObjectName> names = getConnection().queryNames(pattern, null);
+			return names.toArray(new ObjectName[names.size()]);
+		} catch (final IOException e) {
+			readingFailed(e);
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Register an attribute that will be read at each refresh
+	 * 
+	 * @param objectName name of the MBean
+	 * @param attribute name of the attribute
+	 */
+	public synchronized void register(final ObjectName objectName, final String attribute) {
+		AttributeGroup group = this.groups.get(objectName);
+		if (group == null) {
+			group = new AttributeGroup();
+			this.groups.put(objectName, group);
+		}
+		group.add(attribute);
+		this.refreshed = false;
+		this.version++;
+	}
+
+	/**
+	 * Register a reading that will be run at each refresh, after the
+	 * attributes. A reading registered several times is run once
+	 * 
+	 * @param reading the reading
+	 */
+	synchronized void register(final Reading reading) {
+		if (this.readings.containsKey(reading)) {
+			return;
+		}
+		this.readings.put(reading, null);
+		this.refreshed = false;
+		this.version++;
+	}
+
+	/**
+	 * Give the result of a reading. If the last reading is too old, all
+	 * registered attributes and readings are read again
+	 * 
+	 * @param reading a registered reading
+	 * @return the last result of the reading
+	 */
+	Object getReading(final Reading reading) {
+		refreshIfNeeded();
+		synchronized (this) {
+			if (!this.readings.containsKey(reading)) {
+				throw new IllegalArgumentException("Reading " + reading + " is not registered");
+			}
+			return this.readings.get(reading);
+		}
+	}
+
+	/**
+	 * Give the value of an attribute. If the last reading is too old, all
+	 * registered attributes are read again
+	 * 
+	 * @param objectName name of the MBean
+	 * @param attribute name of the attribute, that must have been registered
+	 * @return the value of the attribute
+	 */
+	public Object getAttribute(final ObjectName objectName, final String attribute) {
+		refreshIfNeeded();
+		synchronized (this) {
+			return getLastValue(objectName, attribute);
+		}
+	}
+
+	/**
+	 * Give the value of a numeric attribute
+	 * 
+	 * @param objectName name of the MBean
+	 * @param attribute name of the attribute, that must have been registered
+	 * @return the value of the attribute as a long
+	 */
+	public long getLong(final ObjectName objectName, final String attribute) {
+		return toLong(objectName, attribute, getAttribute(objectName, attribute));
+	}
+
+	/**
+	 * Give the values of a numeric attribute of several MBeans, and the time
+	 * of the reading they come from. All values are taken from the same
+	 * reading, so they can be compared with the values of another reading
+	 * 
+	 * @param objectNames names of the MBeans
+	 * @param attribute name of the attribute, that must have been registered
+	 *            for all MBeans
+	 * @param values array that receives the values of the attribute, in the
+	 *            same order as the names
+	 * @return the time (as given by <code>System.nanoTime()</code>) of the
+	 *         reading
+	 */
+	long getLongs(final ObjectName[] objectNames, final String attribute, final long[] values) {
+		refreshIfNeeded();
+		synchronized (this) {
+			for (int i = 0; i < objectNames.length; i++) {
+				values[i] = toLong(objectNames[i], attribute, getLastValue(objectNames[i], attribute));
+			}
+			return this.refreshTime;
+		}
+	}
+
+	/**
+	 * Give the value of an attribute read by the last reading. The caller must
+	 * hold the lock of this reader
+	 * 
+	 * @param objectName name of the MBean
+	 * @param attribute name of the attribute, that must have been registered
+	 * @return the value of the attribute
+	 */
+	private Object getLastValue(final ObjectName objectName, final String attribute) {
+		final AttributeGroup group = this.groups.get(objectName);
+		if (group == null) {
+			throw new IllegalArgumentException("Attribute " + attribute + " of " + objectName + " is not registered");
+		}
+		return group.get(attribute);
+	}
+
+	/**
+	 * @param objectName name of the MBean
+	 * @param attribute name of the attribute
+	 * @param value value of the attribute
+	 * @return the value as a long
+	 */
+	private static long toLong(final ObjectName objectName, final String attribute, final Object value) {
+		if (!(value instanceof Number)) {
+			throw new RuntimeException("Attribute " + attribute + " of " + objectName + " is not available");
+		}
+		return ((Number) value).longValue();
+	}
+
+	/**
+	 * @return the time (as given by <code>System.nanoTime()</code>) of the last
+	 *         reading
+	 */
+	public long getRefreshTime() {
+		refreshIfNeeded();
+		synchronized (this) {
+			return this.refreshTime;
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the last reading is recent enough to be
+	 *         reused
+	 */
+	synchronized boolean isFresh() {
+		return this.refreshed && System.nanoTime() - this.refreshTime < this.maxAge;
+	}
+
+	/**
+	 * @return <code>true</code> if the attributes have been read at least once
+	 */
+	synchronized boolean hasBeenRead() {
+		return this.refreshTime != 0;
+	}
+
+	/**
+	 * Read all registered attributes if the last reading is too old
+	 */
+	void refreshIfNeeded() {
+		if (!isFresh()) {
+			refresh();
+		}
+	}
+
+	/**
+	 * Read all registered attributes. The lock of this reader is only held to
+	 * copy the names of the attributes and to publish the values, so a slow
+	 * MBean server never blocks the threads that read the last values
+	 */
+	void refresh() {
+		final long now = System.nanoTime();
+		final ObjectName[] objectNames;
+		final String[][] attributes;
+		final Reading[] registeredReadings;
+		final int readVersion;
+		synchronized (this) {
+			objectNames = this.groups.keySet().toArray(new ObjectName[this.groups.size()]);
+			attributes = new String[objectNames.length][];
+			for (int i = 0; i < objectNames.length; i++) {
+				attributes[i] = this.groups.get(objectNames[i]).getNames();
+			}
+			registeredReadings = this.readings.keySet().toArray(new Reading[this.readings.size()]);
+			readVersion = this.version;
+		}
+
+		final Object[][] values = new Object[objectNames.length][];
+		final Object[] results = new Object[registeredReadings.length];
+		try {
+			final MBeanServerConnection currentConnection = getConnection();
+			for (int i = 0; i < objectNames.length; i++) {
+				values[i] = AttributeGroup.read(currentConnection, objectNames[i], attributes[i]);
+			}
+			for (int i = 0; i < registeredReadings.length; i++) {
+				results[i] = registeredReadings[i].read(currentConnection);
+			}
+		} catch (final Exception e) {
+			synchronized (this) {
+				this.refreshed = false;
+			}
+			readingFailed(e);
+			throw new RuntimeException(e);
+		}
+
+		synchronized (this) {
+			for (int i = 0; i < objectNames.length; i++) {
+				this.groups.get(objectNames[i]).set(attributes[i], values[i]);
+			}
+			for (int i = 0; i < registeredReadings.length; i++) {
+				this.readings.put(registeredReadings[i], results[i]);
+			}
+			this.refreshTime = now;
+			// An attribute registered during the reading has not been read
+			this.refreshed = readVersion == this.version;
+		}
+	}
+
+	/**
+	 * Reading that can not be expressed as a list of attributes, like the
+	 * call of an operation. It is run by the thread that refreshes the reader,
+	 * so the samples never call the MBean server themselves
+	 */
+	interface Reading {
+		/**
+		 * @param connection connection to the MBean server
+		 * @return the result of the reading
+		 * @throws Exception if the MBean server can not be read
+		 */
+		Object read(MBeanServerConnection connection) throws Exception;
+	}
+
+	/**
+	 * Attributes of a same MBean, read together
+	 */
+	private static class AttributeGroup {
+		private String[] names = new String[0];
+		private Object[] values = new Object[0];
+
+		/**
+		 * @param attribute attribute to add to this group
+		 */
+		void add(final String attribute) {
+			if (indexOf(attribute) >= 0) {
+				return;
+			}
+			this.names = Arrays.copyOf(this.names, this.names.length + 1);
+			this.names[this.names.length - 1] = attribute;
+			this.values = new Object[this.names.length];
+		}
+
+		/**
+		 * @param attribute name of an attribute
+		 * @return the last value read for this attribute
+		 */
+		Object get(final String attribute) {
+			final int index = indexOf(attribute);
+			if (index < 0) {
+				throw new IllegalArgumentException("Attribute " + attribute + " is not registered");
+			}
+			return this.values[index];
+		}
+
+		/**
+		 * @return the names of the attributes of this group
+		 */
+		String[] getNames() {
+			return this.names;
+		}
+
+		/**
+		 * Store the values of a reading
+		 * 
+		 * @param readNames names of the attributes that have been read
+		 * @param readValues values of these attributes
+		 */
+		void set(final String[] readNames, final Object[] readValues) {
+			Arrays.fill(this.values, null);
+			for (int i = 0; i < readNames.length; i++) {
+				final int index = indexOf(readNames[i]);
+				if (index >= 0) {
+					this.values[index] = readValues[i];
+				}
+			}
+		}
+
+		/**
+		 * Read attributes of a MBean in a single call
+		 * 
+		 * @param connection connection to the MBean server
+		 * @param objectName name of the MBean
+		 * @param names names of the attributes
+		 * @return the values of the attributes, in the same order as the names
+		 * @throws Exception if the MBean can not be read
+		 */
+		static Object[] read(final MBeanServerConnection connection, final ObjectName objectName, final String[] names) throws Exception {
+			final Object[] result = new Object[names.length];
+			final AttributeList list = connection.getAttributes(objectName, names);
+			for (final Object element : list) {
+				final Attribute attribute = (Attribute) element;
+				for (int i = 0; i < names.length; i++) {
+					if (names[i].equals(attribute.getName())) {
+						result[i] = attribute.getValue();
+					}
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * @param attribute name of an attribute
+		 * @return the index of the attribute, or -1 if it is not registered
+		 */
+		private int indexOf(final String attribute) {
+			for (int i = 0; i < this.names.length; i++) {
+				if (this.names[i].equals(attribute)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+	}
+
+}
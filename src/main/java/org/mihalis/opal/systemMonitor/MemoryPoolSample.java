@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - initial API and implementation
+ *******************************************************************************/
+package org.mihalis.opal.systemMonitor;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Instances of this class represent a sample that contains the occupancy (in
+ * megabytes) of a memory pool, for instance the eden space or the old
+ * generation
+ */
+public class MemoryPoolSample implements Sample {
+	private static final String COMMITTED = "committed";
+	private static final String MAX = "max";
+	private static final String USED = "used";
+	private static final String USAGE = "Usage";
+	private static final String OBJECT_NAME_ATTRIBUTE = "java.lang:type=MemoryPool,name=";
+	private final MBeanAttributeReader reader;
+	private final ObjectName pattern;
+	private ObjectName objectName;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param poolName name of the memory pool, as given by
+	 *            <code>MemoryPoolMXBean.getName()</code>
+	 */
+	public MemoryPoolSample(final String poolName) {
+		this(MBeanAttributeReader.getPlatformReader(), MBeanAttributeReader.createObjectName(OBJECT_NAME_ATTRIBUTE + poolName));
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param reader reader used to get the attributes
+	 * @param objectName name of the MemoryPoolMXBean
+	 */
+	MemoryPoolSample(final MBeanAttributeReader reader, final ObjectName objectName) {
+		this.reader = reader;
+		this.pattern = null;
+		this.objectName = objectName;
+		reader.register(objectName, USAGE);
+	}
+
+	/**
+	 * Constructor for a pool found at the first reading, so that a remote JVM
+	 * does not need to be reachable when the sample is created
+	 * 
+	 * @param reader reader used to get the attributes
+	 */
+	private MemoryPoolSample(final MBeanAttributeReader reader) {
+		this.reader = reader;
+		this.pattern = MBeanAttributeReader.createObjectName(OBJECT_NAME_ATTRIBUTE + "*");
+	}
+
+	/**
+	 * @param reader reader used to get the attributes
+	 * @return a sample for the pool that holds the old generation
+	 */
+	static MemoryPoolSample createOldGenerationSample(final MBeanAttributeReader reader) {
+		return new MemoryPoolSample(reader);
+	}
+
+	/**
+	 * @return the name of the pool, looking for the old generation if needed
+	 */
+	private synchronized ObjectName getObjectName() {
+		if (this.objectName == null) {
+			for (final ObjectName pool : this.reader.queryNames(this.pattern)) {
+				final String name = pool.getKeyProperty("name");
+				if (name.contains("Old") || name.contains("Tenured")) {
+					this.reader.register(pool, USAGE);
+					this.objectName = pool;
+					break;
+				}
+			}
+			if (this.objectName == null) {
+				throw new IllegalStateException("No old generation memory pool");
+			}
+		}
+		return this.objectName;
+	}
+
+	/**
+	 * @see org.mihalis.opal.systemMonitor.Sample#getValue()
+	 */
+	@Override
+	public double getValue() {
+		return getUsage(USED) / 1024.0D / 1024.0D;
+	}
+
+	/**
+	 * @see org.mihalis.opal.systemMonitor.Sample#getMaxValue()
+	 */
+	@Override
+	public double getMaxValue() {
+		final long max = getUsage(MAX);
+		// -1 if the pool has no maximum size
+		return (max < 0 ? getUsage(COMMITTED) : max) / 1024.0D / 1024.0D;
+	}
+
+	/**
+	 * @param key key in the memory usage composite data
+	 * @return the associated value
+	 */
+	private long getUsage(final String key) {
+		final ObjectName pool = getObjectName();
+		final Object usage = this.reader.getAttribute(pool, USAGE);
+		if (!(usage instanceof CompositeData)) {
+			throw new RuntimeException("Attribute " + USAGE + " of " + pool + " is not available");
+		}
+		return ((Number) ((CompositeData) usage).get(key)).longValue();
+	}
+
+}
@@ -10,9 +10,6 @@
  *******************************************************************************/
 package org.mihalis.opal.systemMonitor;
 
-import java.lang.management.ManagementFactory;
-
-import javax.management.MBeanServerConnection;
 import javax.management.ObjectName;
 
 /**
@@ -22,18 +19,26 @@ public class PhysicalMemorySample implements Sample {
 	private static final String TOTAL_PHYSICAL_MEMORY_SIZE = "TotalPhysicalMemorySize";
 	private static final String FREE_PHYSICAL_MEMORY_SIZE = "FreePhysicalMemorySize";
 	private static final String OBJECT_NAME_ATTRIBUTE = "java.lang:type=OperatingSystem";
-	private final MBeanServerConnection mBeanServerConnection = ManagementFactory.getPlatformMBeanServer();
-	private ObjectName objectName;
+	private final MBeanAttributeReader reader;
+	private final ObjectName objectName;
 
 	/**
 	 * Constructor
 	 */
 	PhysicalMemorySample() {
-		try {
-			this.objectName = new ObjectName(OBJECT_NAME_ATTRIBUTE);
-		} catch (final Exception e) {
-			throw new RuntimeException(e);
-		}
+		this(MBeanAttributeReader.getPlatformReader());
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param reader reader used to get the attributes
+	 */
+	PhysicalMemorySample(final MBeanAttributeReader reader) {
+		this.reader = reader;
+		this.objectName = MBeanAttributeReader.createObjectName(OBJECT_NAME_ATTRIBUTE);
+		reader.register(this.objectName, FREE_PHYSICAL_MEMORY_SIZE);
+		reader.register(this.objectName, TOTAL_PHYSICAL_MEMORY_SIZE);
 	}
 
 	/**
@@ -41,12 +46,8 @@ public class PhysicalMemorySample implements Sample {
 	 */
 	@Override
 	public double getValue() {
-		try {
-			final double memSize = ((Long) this.mBeanServerConnection.getAttribute(this.objectName, FREE_PHYSICAL_MEMORY_SIZE)).longValue() / 1024.0d / 1024.0d;
-			return getMaxValue() - memSize;
-		} catch (final Exception e) {
-			throw new RuntimeException(e);
-		}
+		final double memSize = this.reader.getLong(this.objectName, FREE_PHYSICAL_MEMORY_SIZE) / 1024.0d / 1024.0d;
+		return getMaxValue() - memSize;
 	}
 
 	/**
@@ -54,11 +55,7 @@ public class PhysicalMemorySample implements Sample {
 	 */
 	@Override
 	public double getMaxValue() {
-		try {
-			return ((Long) this.mBeanServerConnection.getAttribute(this.objectName, TOTAL_PHYSICAL_MEMORY_SIZE)).longValue() / 1024.0d / 1024.0d;
-		} catch (final Exception e) {
-			throw new RuntimeException(e);
-		}
+		return this.reader.getLong(this.objectName, TOTAL_PHYSICAL_MEMORY_SIZE) / 1024.0d / 1024.0d;
 	}
 
 }
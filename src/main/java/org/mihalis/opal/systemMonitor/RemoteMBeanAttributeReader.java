@@ -0,0 +1,351 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - initial API and implementation
+ *******************************************************************************/
+package org.mihalis.opal.systemMonitor;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
+
+/**
+ * Instances of this class read the attributes of a remote JVM. The connection
+ * is opened on the first reading and kept for all samples that monitor this
+ * JVM. When it is lost, it is opened again at a later reading, waiting longer
+ * after each failed attempt.
+ * <p>
+ * The network calls never run on the sampler threads: a reading that is too
+ * old starts a refresh on the remote executor, and the samples get the values
+ * of the last successful reading. The connection attempts are bounded by a
+ * timeout.
+ * </p>
+ */
+class RemoteMBeanAttributeReader extends MBeanAttributeReader {
+
+	private static final long INITIAL_BACKOFF = 1000;
+	private static final long MAX_BACKOFF = 60000;
+	private static final long CONNECT_TIMEOUT = 10000;
+
+	private final JMXServiceURL url;
+	private final Map<ObjectName, ObjectName[]> queries;
+	private final Set<ObjectName> pendingQueries;
+	private JMXConnector connector;
+	private MBeanServerConnection connection;
+	private long backoff;
+	private long nextAttempt;
+	private boolean refreshing;
+	private boolean closed;
+	private Exception lastError;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param url address of the JMX connector server
+	 */
+	RemoteMBeanAttributeReader(final JMXServiceURL url) {
+		super(null);
+		this.url = url;
+		this.backoff = INITIAL_BACKOFF;
+		this.queries = new HashMap<ObjectName, ObjectName[]>();
+		this.pendingQueries = new LinkedHashSet<ObjectName>();
+	}
+
+	/**
+	 * Start a refresh in the background if the last reading is too old, then
+	 * let the caller use the last values
+	 * 
+	 * @see org.mihalis.opal.systemMonitor.MBeanAttributeReader#refreshIfNeeded()
+	 */
+	@Override
+	void refreshIfNeeded() {
+		if (isFresh()) {
+			return;
+		}
+		synchronized (this) {
+			startRefresh();
+			checkAvailable();
+		}
+		if (!hasBeenRead()) {
+			throw new RuntimeException("Not connected to " + this.url);
+		}
+	}
+
+	/**
+	 * The names are queried in the background. Until the answer is known, this
+	 * method throws an exception, and the sample tries again at the next tick
+	 * 
+	 * @see org.mihalis.opal.systemMonitor.MBeanAttributeReader#queryNames(javax.management.ObjectName)
+	 */
+	@Override
+	public synchronized ObjectName[] queryNames(final ObjectName pattern) {
+		final ObjectName[] names = this.queries.get(pattern);
+		if (names != null) {
+			return names;
+		}
+		this.pendingQueries.add(pattern);
+		startRefresh();
+		checkAvailable();
+		throw new RuntimeException("MBeans " + pattern + " of " + this.url + " are not known yet");
+	}
+
+	/**
+	 * Throw an exception if the reader is closed or if the last attempt has
+	 * failed. The caller must hold the lock of this reader
+	 */
+	private void checkAvailable() {
+		if (this.closed) {
+			throw new IllegalStateException("Connection to " + this.url + " is closed");
+		}
+		if (this.lastError != null) {
+			throw new RuntimeException(this.lastError);
+		}
+	}
+
+	/**
+	 * Start a refresh on the remote executor, unless one is already running or
+	 * the next connection attempt is not due yet. The caller must hold the lock
+	 * of this reader
+	 */
+	private void startRefresh() {
+		if (this.refreshing || this.closed || this.connection == null && System.currentTimeMillis() < this.nextAttempt) {
+			return;
+		}
+		this.refreshing = true;
+		SampleScheduler.getRemoteExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				runRefresh();
+			}
+		});
+	}
+
+	/**
+	 * Query the pending patterns, then read all registered attributes. Called
+	 * on the remote executor
+	 */
+	private void runRefresh() {
+		Exception error = null;
+		try {
+			final ObjectName[] patterns;
+			synchronized (this) {
+				patterns = this.pendingQueries.toArray(new ObjectName[this.pendingQueries.size()]);
+			}
+			for (final ObjectName pattern : patterns) {
+				final ObjectName[] names = readNames(pattern);
+				synchronized (this) {
+					this.queries.put(pattern, names);
+					this.pendingQueries.remove(pattern);
+				}
+			}
+			refresh();
+		} catch (final RuntimeException e) {
+			error = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+		} finally {
+			synchronized (this) {
+				this.refreshing = false;
+				this.lastError = error;
+			}
+		}
+	}
+
+	/**
+	 * @see org.mihalis.opal.systemMonitor.MBeanAttributeReader#getConnection()
+	 */
+	@Override
+	MBeanServerConnection getConnection() throws IOException {
+		synchronized (this) {
+			if (this.closed) {
+				throw new IOException("Connection to " + this.url + " is closed");
+			}
+			if (this.connection != null) {
+				return this.connection;
+			}
+		}
+
+		// The connection is opened without holding the lock
+		final JMXConnector newConnector;
+		final MBeanServerConnection newConnection;
+		try {
+			newConnector = connect();
+			try {
+				newConnection = newConnector.getMBeanServerConnection();
+			} catch (final IOException e) {
+				closeQuietly(newConnector);
+				throw e;
+			}
+		} catch (final IOException e) {
+			synchronized (this) {
+				disconnect();
+			}
+			throw e;
+		}
+
+		synchronized (this) {
+			if (this.closed) {
+				closeQuietly(newConnector);
+				throw new IOException("Connection to " + this.url + " is closed");
+			}
+			this.connector = newConnector;
+			this.connection = newConnection;
+			this.backoff = INITIAL_BACKOFF;
+			return this.connection;
+		}
+	}
+
+	/**
+	 * Open a connection, waiting at most {@link #CONNECT_TIMEOUT} milliseconds.
+	 * If the connection is opened after the timeout, it is closed at once
+	 * 
+	 * @return the connector
+	 * @throws IOException if the connection can not be opened in time
+	 */
+	private JMXConnector connect() throws IOException {
+		// Set by the first of the connecting task and the caller that ends
+		final AtomicBoolean claimed = new AtomicBoolean();
+		final Future<JMXConnector> future = SampleScheduler.getRemoteExecutor().submit(new Callable<JMXConnector>() {
+			@Override
+			public JMXConnector call() throws Exception {
+				final JMXConnector newConnector = JMXConnectorFactory.connect(RemoteMBeanAttributeReader.this.url);
+				if (!claimed.compareAndSet(false, true)) {
+					// The caller has given up
+					closeQuietly(newConnector);
+					return null;
+				}
+				return newConnector;
+			}
+		});
+
+		try {
+			return future.get(CONNECT_TIMEOUT, TimeUnit.MILLISECONDS);
+		} catch (final TimeoutException e) {
+			if (claimed.compareAndSet(false, true)) {
+				future.cancel(true);
+				throw new IOException("Connection to " + this.url + " timed out");
+			}
+			// The connection has been opened in the meantime
+			return getConnector(future);
+		} catch (final InterruptedException e) {
+			claimed.set(true);
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new IOException("Connection to " + this.url + " interrupted");
+		} catch (final ExecutionException e) {
+			throw toIOException(e);
+		}
+	}
+
+	/**
+	 * @param future future of a connecting task that has claimed its result
+	 * @return the connector opened by the task
+	 * @throws IOException if the task has failed
+	 */
+	private JMXConnector getConnector(final Future<JMXConnector> future) throws IOException {
+		try {
+			return future.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Connection to " + this.url + " interrupted");
+		} catch (final ExecutionException e) {
+			throw toIOException(e);
+		}
+	}
+
+	/**
+	 * @param e exception thrown by a connecting task
+	 * @return the cause as an IOException
+	 */
+	private static IOException toIOException(final ExecutionException e) {
+		if (e.getCause() instanceof IOException) {
+			return (IOException) e.getCause();
+		}
+		final IOException exception = new IOException(String.valueOf(e.getCause()));
+		exception.initCause(e.getCause());
+		return exception;
+	}
+
+	/**
+	 * @see org.mihalis.opal.systemMonitor.MBeanAttributeReader#readingFailed(java.lang.Exception)
+	 */
+	@Override
+	synchronized void readingFailed(final Exception e) {
+		if (e instanceof IOException && this.connection != null) {
+			disconnect();
+		}
+	}
+
+	/**
+	 * Forget the connection and compute the time of the next attempt. The
+	 * caller must hold the lock of this reader
+	 */
+	private void disconnect() {
+		final JMXConnector oldConnector = this.connector;
+		this.connector = null;
+		this.connection = null;
+		this.nextAttempt = System.currentTimeMillis() + this.backoff;
+		this.backoff = Math.min(MAX_BACKOFF, this.backoff * 2);
+		closeInBackground(oldConnector);
+	}
+
+	/**
+	 * Close the connection. The reader can not be used anymore
+	 */
+	synchronized void close() {
+		this.closed = true;
+		final JMXConnector oldConnector = this.connector;
+		this.connector = null;
+		this.connection = null;
+		closeInBackground(oldConnector);
+	}
+
+	/**
+	 * Close a connector on the remote executor: closing a lost connection may
+	 * block as long as opening it
+	 * 
+	 * @param oldConnector connector to close, may be null
+	 */
+	private static void closeInBackground(final JMXConnector oldConnector) {
+		if (oldConnector == null) {
+			return;
+		}
+		SampleScheduler.getRemoteExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				closeQuietly(oldConnector);
+			}
+		});
+	}
+
+	/**
+	 * Close a connector, ignoring errors: the connection may already be lost
+	 * 
+	 * @param oldConnector connector to close
+	 */
+	private static void closeQuietly(final JMXConnector oldConnector) {
+		try {
+			oldConnector.close();
+		} catch (final IOException e) {
+			// Already closed
+		}
+	}
+
+}
@@ -0,0 +1,321 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - initial API and implementation
+ *******************************************************************************/
+package org.mihalis.opal.systemMonitor;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * Instances of this class write the values collected by a system monitor to a
+ * channel. Values are encoded in a reusable buffer and flushed when it is
+ * full: no list of values is built. Each call to {@link #export()} writes the
+ * values collected since the previous call, so an exporter can be used once
+ * to export a snapshot, or periodically to tail the monitor.
+ * <p>
+ * Two formats are available:
+ * <ul>
+ * <li>{@link Format#CSV}: a header line <code>timestamp,sample,value</code>
+ * followed by one line per value</li>
+ * <li>{@link Format#BINARY}: a header (magic number, version) followed by
+ * records in big-endian order. Each record starts with its type: a series
+ * record (type 1, index of the series on a short, length of the identifier on
+ * a short, identifier in UTF-8) is written the first time a sample is
+ * exported, then each value is written as a value record (type 2, index of the
+ * series on a short, timestamp in milliseconds on a long, value on a double)</li>
+ * </ul>
+ * </p>
+ * The channel is not closed by the exporter. It should be a blocking channel.
+ */
+public class SampleExporter {
+
+	/**
+	 * Formats of export
+	 */
+	public enum Format {
+		CSV, BINARY
+	}
+
+	private static final int MAGIC = 0x4F505345;
+	private static final int VERSION = 1;
+	private static final byte SERIES_RECORD = 1;
+	private static final byte VALUE_RECORD = 2;
+	private static final int VALUE_RECORD_SIZE = 19;
+	private static final int MAX_NUMBER_LENGTH = 32;
+	private static final int BUFFER_SIZE = 8192;
+
+	private final SystemMonitor monitor;
+	private final WritableByteChannel channel;
+	private final Format format;
+	private final Map<SampleWrapper, Series> series;
+	private final StringBuilder text;
+	private ByteBuffer buffer;
+	private boolean headerWritten;
+	private ScheduledFuture<?> tailTask;
+	private volatile IOException error;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param monitor monitor that holds the samples
+	 * @param channel channel to write to
+	 * @param format format of the export
+	 */
+	SampleExporter(final SystemMonitor monitor, final WritableByteChannel channel, final Format format) {
+		if (channel == null || format == null) {
+			throw new IllegalArgumentException("Channel and format can not be null");
+		}
+		this.monitor = monitor;
+		this.channel = channel;
+		this.format = format;
+		this.series = new IdentityHashMap<SampleWrapper, Series>();
+		this.text = new StringBuilder(MAX_NUMBER_LENGTH);
+		this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+	}
+
+	/**
+	 * Write all values collected since the previous call. The first call
+	 * writes the header and all values kept by the monitor
+	 * 
+	 * @throws IOException if the channel can not be written
+	 */
+	public synchronized void export() throws IOException {
+		if (!this.headerWritten) {
+			writeHeader();
+			this.headerWritten = true;
+		}
+		for (final SampleWrapper wrapper : this.monitor.getCollectedSamples()) {
+			exportSeries(getSeries(wrapper));
+		}
+		flush();
+	}
+
+	/**
+	 * Export the values periodically, until {@link #stop()} is called or an
+	 * error occurs. The exports run on a thread shared by the exporters, not
+	 * on the threads that collect the samples
+	 * 
+	 * @param period period in milliseconds between two exports
+	 */
+	synchronized void startTail(final int period) {
+		this.tailTask = SampleScheduler.scheduleExport(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					export();
+				} catch (final IOException e) {
+					SampleExporter.this.error = e;
+					stop();
+				}
+			}
+		}, period);
+	}
+
+	/**
+	 * Stop exporting the values periodically. The channel is not closed
+	 */
+	public synchronized void stop() {
+		if (this.tailTask != null) {
+			this.tailTask.cancel(false);
+			this.tailTask = null;
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the values are exported periodically,
+	 *         <code>false</code> if the exporter has been stopped or has never
+	 *         been started
+	 */
+	synchronized boolean isTailing() {
+		return this.tailTask != null;
+	}
+
+	/**
+	 * @return the exception that has stopped the periodic export, or
+	 *         <code>null</code> if no error occured
+	 */
+	public IOException getError() {
+		return this.error;
+	}
+
+	/**
+	 * @param wrapper a sample
+	 * @return the series associated to this sample, created on first use
+	 * @throws IOException if the series record can not be written
+	 */
+	private Series getSeries(final SampleWrapper wrapper) throws IOException {
+		Series current = this.series.get(wrapper);
+		if (current == null) {
+			current = new Series(this.series.size(), wrapper);
+			this.series.put(wrapper, current);
+			if (this.format == Format.BINARY) {
+				ensureRemaining(5 + current.id.length);
+				this.buffer.put(SERIES_RECORD).putShort((short) current.index).putShort((short) current.id.length).put(current.id);
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * Write the header of the export
+	 * 
+	 * @throws IOException if the channel can not be written
+	 */
+	private void writeHeader() throws IOException {
+		if (this.format == Format.BINARY) {
+			this.buffer.putInt(MAGIC).putInt(VERSION);
+		} else {
+			this.text.setLength(0);
+			this.text.append("timestamp,sample,value\n");
+			putText();
+		}
+	}
+
+	/**
+	 * Write the values of a series collected since its last export. The values
+	 * are encoded while holding the lock of the sample, and the lock is
+	 * released each time the buffer is flushed
+	 * 
+	 * @param current series to export
+	 * @throws IOException if the channel can not be written
+	 */
+	private void exportSeries(final Series current) throws IOException {
+		final SampleWrapper wrapper = current.wrapper;
+		final int recordSize = this.format == Format.BINARY ? VALUE_RECORD_SIZE : current.id.length + 2 * MAX_NUMBER_LENGTH;
+		if (this.buffer.capacity() < recordSize) {
+			flush();
+			this.buffer = ByteBuffer.allocate(recordSize);
+		}
+		boolean done = false;
+		while (!done) {
+			synchronized (wrapper) {
+				final SampleHistory history = wrapper.getHistory();
+				final int size = history.getRaw().getSize();
+				final long first = history.getCount() - size;
+				// Values overwritten since the last export are lost
+				current.next = Math.max(current.next, first);
+				while (current.next < history.getCount() && this.buffer.remaining() >= recordSize) {
+					final int index = (int) (current.next - first);
+					putValue(current, history.getTimestamp(index), history.getRaw().get(index));
+					current.next++;
+				}
+				done = current.next == history.getCount();
+			}
+			if (!done) {
+				flush();
+			}
+		}
+	}
+
+	/**
+	 * Encode a value in the buffer
+	 * 
+	 * @param current series of the value
+	 * @param timestamp time of the value
+	 * @param value value
+	 */
+	private void putValue(final Series current, final long timestamp, final double value) {
+		if (this.format == Format.BINARY) {
+			this.buffer.put(VALUE_RECORD).putShort((short) current.index).putLong(timestamp).putDouble(value);
+			return;
+		}
+		this.text.setLength(0);
+		this.text.append(timestamp).append(',');
+		putText();
+		this.buffer.put(current.id);
+		this.text.setLength(0);
+		this.text.append(',').append(value).append('\n');
+		putText();
+	}
+
+	/**
+	 * Copy the content of the text builder, which contains only ASCII
+	 * characters, in the buffer
+	 */
+	private void putText() {
+		for (int i = 0; i < this.text.length(); i++) {
+			this.buffer.put((byte) this.text.charAt(i));
+		}
+	}
+
+	/**
+	 * Make sure that the buffer can hold a given number of bytes
+	 * 
+	 * @param length number of bytes
+	 * @throws IOException if the channel can not be written
+	 */
+	private void ensureRemaining(final int length) throws IOException {
+		if (this.buffer.remaining() >= length) {
+			return;
+		}
+		flush();
+		if (this.buffer.capacity() < length) {
+			this.buffer = ByteBuffer.allocate(length);
+		}
+	}
+
+	/**
+	 * Write the content of the buffer to the channel
+	 * 
+	 * @throws IOException if the channel can not be written
+	 */
+	private void flush() throws IOException {
+		this.buffer.flip();
+		while (this.buffer.hasRemaining()) {
+			this.channel.write(this.buffer);
+		}
+		this.buffer.clear();
+	}
+
+	/**
+	 * A sample being exported
+	 */
+	private class Series {
+		private final int index;
+		private final SampleWrapper wrapper;
+		private final byte[] id;
+		private long next;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param index index of the series in the export
+		 * @param wrapper sample
+		 */
+		Series(final int index, final SampleWrapper wrapper) {
+			this.index = index;
+			this.wrapper = wrapper;
+			this.id = encodeId(wrapper.getId());
+		}
+
+		/**
+		 * @param name identifier of the sample
+		 * @return the identifier encoded in UTF-8, quoted for the CSV format
+		 *         if needed
+		 */
+		private byte[] encodeId(final String name) {
+			String encoded = name == null ? "" : name;
+			if (SampleExporter.this.format == Format.CSV && (encoded.indexOf(',') >= 0 || encoded.indexOf('"') >= 0 || encoded.indexOf('\n') >= 0)) {
+				encoded = "\"" + encoded.replace("\"", "\"\"") + "\"";
+			}
+			try {
+				return encoded.getBytes("UTF-8");
+			} catch (final UnsupportedEncodingException e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+}
@@ -10,6 +10,14 @@
  *******************************************************************************/
 package org.mihalis.opal.systemMonitor;
 
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import javax.management.MBeanServerConnection;
+import javax.management.remote.JMXServiceURL;
+
 import org.eclipse.swt.graphics.RGB;
 import org.mihalis.opal.utils.ResourceManager;
 
@@ -23,16 +31,29 @@ public class SampleFactory {
 	 */
 	private static SampleFactory instance;
 
+	/**
+	 * Samples shared by all wrappers, so that several monitors that display
+	 * the same identifier of the same JVM share the same reading
+	 */
+	private final Map<MBeanAttributeReader, Map<SampleIdentifier, SharedSample>> sharedSamples;
+
+	/**
+	 * Shared samples, by sample, used to release them
+	 */
+	private final Map<Sample, SharedSample> sharedSamplesBySample;
+
 	/**
 	 * Constructor
 	 */
 	private SampleFactory() {
+		this.sharedSamples = new HashMap<MBeanAttributeReader, Map<SampleIdentifier, SharedSample>>();
+		this.sharedSamplesBySample = new IdentityHashMap<Sample, SharedSample>();
 	}
 
 	/**
 	 * @return the instance of the factory
 	 */
-	public static SampleFactory getInstance() {
+	public static synchronized SampleFactory getInstance() {
 		if (instance == null) {
 			instance = new SampleFactory();
 		}
@@ -46,30 +67,92 @@ public class SampleFactory {
 	 * @return the sample that corresponds to the identifier
 	 */
 	public SampleWrapper getSample(final SampleIdentifier identifier) {
+		return getSample(identifier, MBeanAttributeReader.getPlatformReader());
+	}
+
+	/**
+	 * Give a built-in sample of the JVM behind a connection
+	 * 
+	 * @param identifier Identifier
+	 * @param connection connection to the MBean server of the JVM
+	 * @return the sample that corresponds to the identifier
+	 */
+	public SampleWrapper getSample(final SampleIdentifier identifier, final MBeanServerConnection connection) {
+		return getSample(identifier, MBeanAttributeReader.getReader(connection));
+	}
+
+	/**
+	 * Give a built-in sample of a remote JVM. The connection is pooled: all
+	 * samples of the same JVM share it, and it is opened again if it is lost
+	 * 
+	 * @param identifier Identifier
+	 * @param url address of the JMX connector server of the JVM
+	 * @return the sample that corresponds to the identifier
+	 */
+	public SampleWrapper getSample(final SampleIdentifier identifier, final JMXServiceURL url) {
+		return getSample(identifier, MBeanAttributeReader.getReader(url));
+	}
+
+	/**
+	 * Give a built-in sample
+	 * 
+	 * @param identifier Identifier
+	 * @param reader reader used by the sample to get its attributes
+	 * @return the sample that corresponds to the identifier
+	 */
+	private synchronized SampleWrapper getSample(final SampleIdentifier identifier, final MBeanAttributeReader reader) {
 		switch (identifier) {
 			case CPU_USAGE: {
-				final SampleWrapper sr = new SampleWrapper(new CPUUsageSample());
+				final SampleWrapper sr = new SampleWrapper(getSharedSample(reader, SampleIdentifier.CPU_USAGE));
 				sr.setColor(new RGB(128, 25, 0));
 				sr.setCaption(ResourceManager.CPU_USAGE + ":");
 				sr.setFormatPattern("%{percentValue}.0f%%");
 				return sr;
 			}
 			case HEAP_MEMORY: {
-				final SampleWrapper sr = new SampleWrapper(new HeapMemorySample());
+				final SampleWrapper sr = new SampleWrapper(getSharedSample(reader, SampleIdentifier.HEAP_MEMORY));
 				sr.setColor(new RGB(111, 83, 0));
 				sr.setCaption(ResourceManager.HEAP_MEMORY + ":");
 				sr.setFormatPattern("%{value},.2fMB / %{maxValue},.2fMB");
 				return sr;
 			}
 			case PHYSICAL_MEMORY: {
-				final SampleWrapper sr = new SampleWrapper(new PhysicalMemorySample());
+				final SampleWrapper sr = new SampleWrapper(getSharedSample(reader, SampleIdentifier.PHYSICAL_MEMORY));
 				sr.setColor(new RGB(15, 75, 0));
 				sr.setCaption(ResourceManager.PHYSICAL_MEMORY + ":");
 				sr.setFormatPattern("%{value},.0fMB / %{maxValue},.0fMB");
 				return sr;
 			}
+			case GC_TIME: {
+				final SampleWrapper sr = new SampleWrapper(getSharedSample(reader, SampleIdentifier.GC_TIME));
+				sr.setColor(new RGB(120, 40, 90));
+				sr.setCaption(ResourceManager.GC_TIME + ":");
+				sr.setFormatPattern("%{value},.0fms / %{maxValue},.0fms (%{percentValue}.1f%%)");
+				return sr;
+			}
+			case GC_COUNT: {
+				final SampleWrapper sr = new SampleWrapper(getSharedSample(reader, SampleIdentifier.GC_COUNT));
+				sr.setColor(new RGB(90, 60, 120));
+				sr.setCaption(ResourceManager.GC_COUNT + ":");
+				sr.setFormatPattern("%{value},.0f / %{maxValue},.0f (Peak)");
+				return sr;
+			}
+			case ALLOCATION_RATE: {
+				final SampleWrapper sr = new SampleWrapper(getSharedSample(reader, SampleIdentifier.ALLOCATION_RATE));
+				sr.setColor(new RGB(100, 100, 0));
+				sr.setCaption(ResourceManager.ALLOCATION_RATE + ":");
+				sr.setFormatPattern("%{value},.2fMB/s / %{maxValue},.2fMB/s (Peak)");
+				return sr;
+			}
+			case OLD_GEN_MEMORY: {
+				final SampleWrapper sr = new SampleWrapper(getSharedSample(reader, SampleIdentifier.OLD_GEN_MEMORY));
+				sr.setColor(new RGB(111, 50, 0));
+				sr.setCaption(ResourceManager.OLD_GEN_MEMORY + ":");
+				sr.setFormatPattern("%{value},.2fMB / %{maxValue},.2fMB");
+				return sr;
+			}
 			default: {
-				final SampleWrapper sr = new SampleWrapper(new ThreadsUsageSample());
+				final SampleWrapper sr = new SampleWrapper(getSharedSample(reader, SampleIdentifier.THREADS));
 				sr.setColor(new RGB(0, 77, 88));
 				sr.setCaption(ResourceManager.THREADS + ":");
 				sr.setFormatPattern("%{value},.0f / %{maxValue},.0f (Peak)");
@@ -78,4 +161,126 @@ public class SampleFactory {
 		}
 	}
 
+	/**
+	 * Give a sample that displays the occupancy of a memory pool
+	 * 
+	 * @param poolName name of the memory pool, as given by
+	 *            <code>MemoryPoolMXBean.getName()</code>
+	 * @return the sample
+	 */
+	public SampleWrapper getMemoryPoolSample(final String poolName) {
+		final SampleWrapper sr = new SampleWrapper(new MemoryPoolSample(poolName));
+		sr.setColor(new RGB(111, 83, 0));
+		sr.setCaption(poolName + ":");
+		sr.setFormatPattern("%{value},.2fMB / %{maxValue},.2fMB");
+		return sr;
+	}
+
+	/**
+	 * Give a shared sample, and count a new reference to it. The reference to
+	 * the reader given by the caller is kept by a new shared sample, and
+	 * released if the sample already exists
+	 * 
+	 * @param reader reader used by the sample to get its attributes
+	 * @param identifier Identifier
+	 * @return the sample shared by all wrappers of this identifier
+	 */
+	private Sample getSharedSample(final MBeanAttributeReader reader, final SampleIdentifier identifier) {
+		Map<SampleIdentifier, SharedSample> samples = this.sharedSamples.get(reader);
+		if (samples == null) {
+			samples = new EnumMap<SampleIdentifier, SharedSample>(SampleIdentifier.class);
+			this.sharedSamples.put(reader, samples);
+		}
+		SharedSample shared = samples.get(identifier);
+		if (shared == null) {
+			shared = new SharedSample(reader, identifier, createSample(identifier, reader));
+			samples.put(identifier, shared);
+			this.sharedSamplesBySample.put(shared.sample, shared);
+		} else {
+			MBeanAttributeReader.release(reader);
+		}
+		shared.references++;
+		return shared.sample;
+	}
+
+	/**
+	 * Release the sample of a wrapper given by this factory. When a shared
+	 * sample is not displayed by any monitor anymore, it is forgotten and its
+	 * reader is released. Other samples are ignored
+	 * 
+	 * @param wrapper wrapper of the sample
+	 */
+	synchronized void release(final SampleWrapper wrapper) {
+		final SharedSample shared = this.sharedSamplesBySample.get(wrapper.getSample());
+		if (shared == null || --shared.references > 0) {
+			return;
+		}
+		this.sharedSamplesBySample.remove(shared.sample);
+		final Map<SampleIdentifier, SharedSample> samples = this.sharedSamples.get(shared.reader);
+		samples.remove(shared.identifier);
+		if (samples.isEmpty()) {
+			this.sharedSamples.remove(shared.reader);
+		}
+		MBeanAttributeReader.release(shared.reader);
+	}
+
+	/**
+	 * Forget the shared samples of a reader, whatever the number of monitors
+	 * that display them. The reader is not released
+	 * 
+	 * @param reader the reader
+	 */
+	synchronized void removeSharedSamples(final MBeanAttributeReader reader) {
+		final Map<SampleIdentifier, SharedSample> samples = this.sharedSamples.remove(reader);
+		if (samples == null) {
+			return;
+		}
+		for (final SharedSample shared : samples.values()) {
+			this.sharedSamplesBySample.remove(shared.sample);
+		}
+	}
+
+	/**
+	 * A sample shared by several wrappers, with the number of wrappers that
+	 * use it
+	 */
+	private static class SharedSample {
+		private final MBeanAttributeReader reader;
+		private final SampleIdentifier identifier;
+		private final Sample sample;
+		private int references;
+
+		SharedSample(final MBeanAttributeReader reader, final SampleIdentifier identifier, final Sample sample) {
+			this.reader = reader;
+			this.identifier = identifier;
+			this.sample = sample;
+		}
+	}
+
+	/**
+	 * @param identifier Identifier
+	 * @param reader reader used by the sample to get its attributes
+	 * @return a new sample that corresponds to the identifier
+	 */
+	private Sample createSample(final SampleIdentifier identifier, final MBeanAttributeReader reader) {
+		switch (identifier) {
+			case CPU_USAGE:
+				return new CPUUsageSample(reader);
+			case HEAP_MEMORY:
+				return new HeapMemorySample(reader);
+			case PHYSICAL_MEMORY:
+				return new PhysicalMemorySample(reader);
+			case GC_TIME:
+				return new GCTimeSample(reader);
+			case GC_COUNT:
+				return new GCCountSample(reader);
+			case ALLOCATION_RATE:
+				return new AllocationRateSample(reader);
+			case OLD_GEN_MEMORY:
+				return MemoryPoolSample.createOldGenerationSample(reader);
+			default:
+				return new ThreadsUsageSample(reader);
+		}
+	}
+
 }
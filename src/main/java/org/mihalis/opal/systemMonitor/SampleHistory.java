@@ -0,0 +1,216 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - initial API and implementation
+ *******************************************************************************/
+package org.mihalis.opal.systemMonitor;
+
+import org.mihalis.opal.utils.DoubleRingBuffer;
+
+/**
+ * Instances of this class store the history of a sample. The most recent
+ * values are kept as they were collected, and older values are rolled up into
+ * tiers of coarser resolution, where each point contains the min, max and
+ * average of a bucket of raw values.<br/>
+ * The time of each raw value is kept as well, and values are numbered in the
+ * order they are stored, so a reader can resume where it stopped.
+ */
+class SampleHistory {
+
+	/**
+	 * Number of raw values per bucket, for each tier
+	 */
+	private static final int[] TIER_FACTORS = new int[] { 10, 60, 360 };
+
+	/**
+	 * Number of buckets kept by each tier
+	 */
+	private static final int TIER_CAPACITY = 1440;
+
+	private final DoubleRingBuffer raw;
+	private final Tier[] tiers;
+	private long[] timestamps;
+	private long count;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param rawCapacity number of raw values kept
+	 */
+	SampleHistory(final int rawCapacity) {
+		this.raw = new DoubleRingBuffer(rawCapacity);
+		this.timestamps = new long[this.raw.getCapacity()];
+		this.tiers = new Tier[TIER_FACTORS.length];
+		for (int i = 0; i < TIER_FACTORS.length; i++) {
+			this.tiers[i] = new Tier(TIER_FACTORS[i], TIER_CAPACITY);
+		}
+	}
+
+	/**
+	 * Store a value in the raw buffer and in all tiers
+	 * 
+	 * @param value value to store
+	 * @param timestamp time of the value, in milliseconds
+	 */
+	void put(final double value, final long timestamp) {
+		this.raw.put(value);
+		this.timestamps[(int) (this.count % this.timestamps.length)] = timestamp;
+		this.count++;
+		for (final Tier tier : this.tiers) {
+			tier.put(value);
+		}
+	}
+
+	/**
+	 * @return the buffer that contains the raw values
+	 */
+	DoubleRingBuffer getRaw() {
+		return this.raw;
+	}
+
+	/**
+	 * @param index index of a raw value, 0 being the oldest stored value
+	 * @return the time of this value, in milliseconds
+	 */
+	long getTimestamp(final int index) {
+		final long sequence = this.count - this.raw.getSize() + index;
+		return this.timestamps[(int) (sequence % this.timestamps.length)];
+	}
+
+	/**
+	 * @return the number of values stored since the creation of this history.
+	 *         The raw value at index <code>i</code> is the value number
+	 *         <code>getCount() - getRaw().getSize() + i</code>
+	 */
+	long getCount() {
+		return this.count;
+	}
+
+	/**
+	 * @param newSize new capacity of the raw buffer. The newest values and
+	 *            their timestamps are kept
+	 */
+	void resize(final int newSize) {
+		this.raw.resizeTo(newSize);
+		final int capacity = this.raw.getCapacity();
+		if (capacity == this.timestamps.length) {
+			return;
+		}
+		final long[] resized = new long[capacity];
+		for (long sequence = this.count - this.raw.getSize(); sequence < this.count; sequence++) {
+			resized[(int) (sequence % capacity)] = this.timestamps[(int) (sequence % this.timestamps.length)];
+		}
+		this.timestamps = resized;
+	}
+
+	/**
+	 * Find the finest tier able to display a given number of raw values on a
+	 * given number of points
+	 * 
+	 * @param numberOfValues number of raw values to display
+	 * @param numberOfPoints number of points available
+	 * @return the tier to use, or <code>null</code> if the raw values fit
+	 */
+	Tier selectTier(final int numberOfValues, final int numberOfPoints) {
+		if (numberOfValues <= numberOfPoints) {
+			return null;
+		}
+		for (final Tier tier : this.tiers) {
+			if (numberOfValues / tier.factor <= numberOfPoints) {
+				return tier;
+			}
+		}
+		return this.tiers[this.tiers.length - 1];
+	}
+
+	/**
+	 * A tier of rolled-up values
+	 */
+	static class Tier {
+		private final int factor;
+		private final DoubleRingBuffer min;
+		private final DoubleRingBuffer max;
+		private final DoubleRingBuffer average;
+		private int count;
+		private double currentMin;
+		private double currentMax;
+		private double currentSum;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param factor number of raw values per bucket
+		 * @param capacity number of buckets
+		 */
+		Tier(final int factor, final int capacity) {
+			this.factor = factor;
+			this.min = new DoubleRingBuffer(capacity);
+			this.max = new DoubleRingBuffer(capacity);
+			this.average = new DoubleRingBuffer(capacity);
+		}
+
+		/**
+		 * Accumulate a raw value. When the bucket is complete, it is stored
+		 * 
+		 * @param value raw value
+		 */
+		void put(final double value) {
+			if (this.count == 0) {
+				this.currentMin = value;
+				this.currentMax = value;
+				this.currentSum = 0d;
+			} else {
+				this.currentMin = Math.min(this.currentMin, value);
+				this.currentMax = Math.max(this.currentMax, value);
+			}
+			this.currentSum += value;
+			this.count++;
+			if (this.count == this.factor) {
+				this.min.put(this.currentMin);
+				this.max.put(this.currentMax);
+				this.average.put(this.currentSum / this.factor);
+				this.count = 0;
+			}
+		}
+
+		/**
+		 * @return number of raw values per bucket
+		 */
+		int getFactor() {
+			return this.factor;
+		}
+
+		/**
+		 * @return number of buckets stored
+		 */
+		int getSize() {
+			return this.average.getSize();
+		}
+
+		/**
+		 * @return the min value of each bucket
+		 */
+		DoubleRingBuffer getMin() {
+			return this.min;
+		}
+
+		/**
+		 * @return the max value of each bucket
+		 */
+		DoubleRingBuffer getMax() {
+			return this.max;
+		}
+
+		/**
+		 * @return the average value of each bucket
+		 */
+		DoubleRingBuffer getAverage() {
+			return this.average;
+		}
+	}
+}
@@ -14,5 +14,5 @@ package org.mihalis.opal.systemMonitor;
  * This enumeration lists all built-in samples
  */
 public enum SampleIdentifier {
-	PHYSICAL_MEMORY, HEAP_MEMORY, THREADS, CPU_USAGE
+	PHYSICAL_MEMORY, HEAP_MEMORY, THREADS, CPU_USAGE, GC_TIME, GC_COUNT, ALLOCATION_RATE, OLD_GEN_MEMORY
 }
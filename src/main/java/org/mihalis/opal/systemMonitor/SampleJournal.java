@@ -0,0 +1,253 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - initial API and implementation
+ *******************************************************************************/
+package org.mihalis.opal.systemMonitor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Instances of this class are journals of the values collected for a sample.
+ * The journal is a file of fixed size, memory-mapped and used as a ring: when
+ * it is full, the oldest records are overwritten.<br/>
+ * Appending a record writes into the mapped memory: it does not allocate and
+ * does not wait for the disk.
+ * <p>
+ * Layout of the file: a header (magic number, version, capacity, number of
+ * records written since the creation of the file) followed by
+ * <code>capacity</code> records of 16 bytes (timestamp in milliseconds,
+ * value).
+ * </p>
+ */
+public class SampleJournal {
+
+	private static final int MAGIC = 0x4F50534A;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 32;
+	private static final int RECORD_SIZE = 16;
+	private static final int CAPACITY_OFFSET = 8;
+	private static final int COUNT_OFFSET = 16;
+
+	/**
+	 * Default capacity: one day of values collected every 300 ms
+	 */
+	public static final int DEFAULT_CAPACITY = 288000;
+
+	/**
+	 * Maximum capacity: the file must fit in a single mapped buffer
+	 */
+	public static final int MAX_CAPACITY = (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE;
+
+	private final RandomAccessFile file;
+	private final MappedByteBuffer buffer;
+	private final int capacity;
+	private final boolean readOnly;
+	private long count;
+
+	/**
+	 * Open a journal for writing. If the file is an existing journal, its
+	 * records are kept and its capacity is used. Otherwise the file is
+	 * (re)initialized
+	 * 
+	 * @param file file of the journal
+	 * @param capacity maximum number of records kept, between 1 and
+	 *            {@link #MAX_CAPACITY}
+	 * @throws IOException if the file can not be opened or mapped
+	 * @throws IllegalArgumentException if the capacity is out of range
+	 */
+	public SampleJournal(final File file, final int capacity) throws IOException {
+		this(file, checkCapacity(capacity), false);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param file file of the journal
+	 * @param capacity maximum number of records kept, for a new journal
+	 * @param readOnly if true, the journal is opened for reading only
+	 * @throws IOException if the file can not be opened or mapped
+	 */
+	private SampleJournal(final File file, final int capacity, final boolean readOnly) throws IOException {
+		this.readOnly = readOnly;
+		this.file = new RandomAccessFile(file, readOnly ? "r" : "rw");
+		try {
+			final int existingCapacity = readExistingCapacity();
+			if (readOnly && existingCapacity <= 0) {
+				throw new IOException(file + " is not a sample journal");
+			}
+			this.capacity = existingCapacity > 0 ? existingCapacity : capacity;
+			final long size = HEADER_SIZE + (long) this.capacity * RECORD_SIZE;
+			if (!readOnly && this.file.length() != size) {
+				this.file.setLength(size);
+			}
+			this.buffer = this.file.getChannel().map(readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE, 0, size);
+			if (existingCapacity > 0) {
+				this.count = this.buffer.getLong(COUNT_OFFSET);
+			} else {
+				this.buffer.putInt(0, MAGIC);
+				this.buffer.putInt(4, VERSION);
+				this.buffer.putInt(CAPACITY_OFFSET, this.capacity);
+				this.buffer.putLong(COUNT_OFFSET, 0L);
+				this.count = 0;
+			}
+		} catch (final IOException e) {
+			this.file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Open an existing journal for reading, for instance to replay it in
+	 * another process
+	 * 
+	 * @param file file of the journal
+	 * @return the journal
+	 * @throws IOException if the file is not a journal or can not be read
+	 */
+	public static SampleJournal openForReading(final File file) throws IOException {
+		return new SampleJournal(file, 0, true);
+	}
+
+	/**
+	 * @param capacity capacity of a new journal
+	 * @return the capacity
+	 * @throws IllegalArgumentException if the capacity is out of range
+	 */
+	private static int checkCapacity(final int capacity) {
+		if (capacity <= 0 || capacity > MAX_CAPACITY) {
+			throw new IllegalArgumentException("Capacity must be between 1 and " + MAX_CAPACITY + ": " + capacity);
+		}
+		return capacity;
+	}
+
+	/**
+	 * @return the capacity stored in the header of the file, or 0 if the file
+	 *         is not a valid journal
+	 * @throws IOException if the file can not be read
+	 */
+	private int readExistingCapacity() throws IOException {
+		if (this.file.length() < HEADER_SIZE) {
+			return 0;
+		}
+		this.file.seek(0);
+		if (this.file.readInt() != MAGIC || this.file.readInt() != VERSION) {
+			return 0;
+		}
+		final int existingCapacity = this.file.readInt();
+		if (existingCapacity <= 0 || existingCapacity > MAX_CAPACITY || this.file.length() != HEADER_SIZE + (long) existingCapacity * RECORD_SIZE) {
+			return 0;
+		}
+		return existingCapacity;
+	}
+
+	/**
+	 * Append a record. This method does not allocate anything
+	 * 
+	 * @param timestamp time of the value, in milliseconds
+	 * @param value value
+	 */
+	public void append(final long timestamp, final double value) {
+		if (this.readOnly) {
+			throw new IllegalStateException("The journal is opened for reading only");
+		}
+		final int position = (int) (HEADER_SIZE + this.count % this.capacity * RECORD_SIZE);
+		this.buffer.putLong(position, timestamp);
+		this.buffer.putDouble(position + 8, value);
+		this.count++;
+		this.buffer.putLong(COUNT_OFFSET, this.count);
+	}
+
+	/**
+	 * @return the number of records available
+	 */
+	public int getSize() {
+		return (int) Math.min(this.count, this.capacity);
+	}
+
+	/**
+	 * Read again the number of records from the header, to see the records
+	 * appended by the writer of the journal since it has been opened
+	 */
+	public void refresh() {
+		this.count = this.buffer.getLong(COUNT_OFFSET);
+	}
+
+	/**
+	 * @return the maximum number of records kept
+	 */
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * @param index index of the record, 0 being the oldest available record
+	 * @return the timestamp of this record
+	 */
+	public long getTimestamp(final int index) {
+		return this.buffer.getLong(getPosition(index));
+	}
+
+	/**
+	 * @param index index of the record, 0 being the oldest available record
+	 * @return the value of this record
+	 */
+	public double getValue(final int index) {
+		return this.buffer.getDouble(getPosition(index) + 8);
+	}
+
+	/**
+	 * @param index index of a record
+	 * @return its position in the file
+	 */
+	private int getPosition(final int index) {
+		final int size = getSize();
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		return (int) (HEADER_SIZE + (this.count - size + index) % this.capacity * RECORD_SIZE);
+	}
+
+	/**
+	 * Close the journal. The mapped memory is released by the garbage
+	 * collector
+	 */
+	public void close() {
+		try {
+			this.file.close();
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Replay a journal on the standard output
+	 * 
+	 * @param args name of the journal file
+	 * @throws IOException if the journal can not be read
+	 */
+	public static void main(final String[] args) throws IOException {
+		if (args.length != 1) {
+			System.out.println("Usage: SampleJournal <journal file>");
+			return;
+		}
+		final SampleJournal journal = SampleJournal.openForReading(new File(args[0]));
+		try {
+			for (int i = 0; i < journal.getSize(); i++) {
+				System.out.println(journal.getTimestamp(i) + ";" + journal.getValue(i));
+			}
+		} finally {
+			journal.close();
+		}
+	}
+
+}
@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - initial API and implementation
+ *******************************************************************************/
+package org.mihalis.opal.systemMonitor;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class holds the executors shared by all system monitors. Samples are
+ * collected by the worker threads of the sampler executor, so that slow MBean
+ * calls never run on the UI thread. The network calls to remote JVMs run on a
+ * separate executor, so that an unreachable JVM never delays the samplers.
+ * The exports to channels run on a third executor, so that a slow channel
+ * never delays them either.
+ */
+class SampleScheduler {
+
+	private static final int MAX_THREADS = 2;
+	private static ScheduledExecutorService executor;
+	private static ExecutorService remoteExecutor;
+	private static ScheduledExecutorService exportExecutor;
+
+	/**
+	 * Constructor
+	 */
+	private SampleScheduler() {
+	}
+
+	/**
+	 * @return the shared executor, created on first use
+	 */
+	private static synchronized ScheduledExecutorService getExecutor() {
+		if (executor == null) {
+			final int threads = Math.max(1, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors()));
+			executor = new ScheduledThreadPoolExecutor(threads, new ThreadFactory() {
+				private final AtomicInteger counter = new AtomicInteger();
+
+				@Override
+				public Thread newThread(final Runnable runnable) {
+					final Thread thread = new Thread(runnable, "Opal SystemMonitor Sampler-" + this.counter.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+
+	/**
+	 * @return the executor that connects to and reads the remote JVMs, created
+	 *         on first use. Its threads are created on demand, so a hung
+	 *         connection only blocks its own thread
+	 */
+	static synchronized ExecutorService getRemoteExecutor() {
+		if (remoteExecutor == null) {
+			remoteExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+				private final AtomicInteger counter = new AtomicInteger();
+
+				@Override
+				public Thread newThread(final Runnable runnable) {
+					final Thread thread = new Thread(runnable, "Opal SystemMonitor Remote-" + this.counter.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return remoteExecutor;
+	}
+
+	/**
+	 * @return the executor that writes the exports, created on first use
+	 */
+	private static synchronized ScheduledExecutorService getExportExecutor() {
+		if (exportExecutor == null) {
+			exportExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(final Runnable runnable) {
+					final Thread thread = new Thread(runnable, "Opal SystemMonitor Export");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return exportExecutor;
+	}
+
+	/**
+	 * Run a task periodically on the shared executor. The first run is aligned
+	 * on a multiple of the period, so that all monitors with the same refresh
+	 * time collect their samples together and share the same MBean reading
+	 * 
+	 * @param task task to run
+	 * @param period period in milliseconds between two runs
+	 * @return the future used to cancel the task
+	 */
+	static ScheduledFuture<?> schedule(final Runnable task, final int period) {
+		final long delay = Math.max(1, period);
+		final long initialDelay = delay - System.currentTimeMillis() % delay;
+		return getExecutor().scheduleAtFixedRate(task, initialDelay, delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Run an export periodically on the export executor. A channel that
+	 * blocks only delays the other exports, never the collect of the samples
+	 * 
+	 * @param task task to run
+	 * @param period period in milliseconds between two runs
+	 * @return the future used to cancel the task
+	 */
+	static ScheduledFuture<?> scheduleExport(final Runnable task, final int period) {
+		final long delay = Math.max(1, period);
+		return getExportExecutor().scheduleAtFixedRate(task, delay, delay, TimeUnit.MILLISECONDS);
+	}
+
+}
@@ -12,8 +12,10 @@ package org.mihalis.opal.systemMonitor;
 
 import java.util.List;
 
+import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.RGB;
-import org.mihalis.opal.utils.FixedSizeQueue;
+import org.eclipse.swt.widgets.Display;
+import org.mihalis.opal.utils.DoubleRingBuffer;
 
 /**
  * Instances of this class are wrapper that contains a sample, its data, color,
@@ -22,13 +24,17 @@ import org.mihalis.opal.utils.FixedSizeQueue;
 public class SampleWrapper {
 	private RGB color;
 	private RGB borderColor;
+	private Color borderColorResource;
 	private String caption;
 	private String formatPattern;
 	private final Sample sample;
-	private final FixedSizeQueue<Double> data;
-	private Double lastValue;
-	private Double lastMaxValue;
-	private Double maxValue;
+	private final SampleHistory history;
+	private double lastValue;
+	private double lastMaxValue;
+	private double maxValue;
+	private long collectCount;
+	private SampleJournal journal;
+	private String id;
 
 	/**
 	 * Constructor
@@ -41,7 +47,7 @@ public class SampleWrapper {
 		this.color = new RGB(255, 255, 216);
 		this.caption = "";
 		this.formatPattern = "";
-		this.data = new FixedSizeQueue<Double>(1000);
+		this.history = new SampleHistory(1000);
 		this.lastValue = 0d;
 		this.lastMaxValue = 0d;
 		this.maxValue = 0d;
@@ -56,13 +62,99 @@ public class SampleWrapper {
 	}
 
 	/**
-	 * Collect a sample
+	 * Collect a sample. This method is called by a sampler thread, the values
+	 * are read outside of the lock and published under the lock
 	 */
 	void collect() {
-		this.lastValue = this.sample.getValue();
-		this.maxValue = Math.max(this.lastMaxValue, this.sample.getMaxValue());
-		this.lastMaxValue = this.sample.getMaxValue();
-		this.data.put(this.lastValue);
+		final double value = this.sample.getValue();
+		final double max = this.sample.getMaxValue();
+		final long timestamp = System.currentTimeMillis();
+		synchronized (this) {
+			this.lastValue = value;
+			this.maxValue = Math.max(this.lastMaxValue, max);
+			this.lastMaxValue = max;
+			this.history.put(value, timestamp);
+			this.collectCount++;
+			if (this.journal != null) {
+				this.journal.append(timestamp, value);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of values collected since the creation of this
+	 *         wrapper. Callers must synchronize on this wrapper
+	 */
+	long getCollectCount() {
+		return this.collectCount;
+	}
+
+	/**
+	 * @param display display
+	 * @return the border color, created once and kept until the color changes
+	 *         or the resources are disposed
+	 */
+	Color getBorderColorResource(final Display display) {
+		if (this.borderColorResource == null) {
+			this.borderColorResource = new Color(display, this.borderColor);
+		}
+		return this.borderColorResource;
+	}
+
+	/**
+	 * Attach a journal to this wrapper. The values stored in the journal are
+	 * loaded in the history, then each collected value is appended to the
+	 * journal
+	 * 
+	 * @param journal journal, or <code>null</code> to detach the current one
+	 */
+	synchronized void setJournal(final SampleJournal journal) {
+		closeJournal();
+		this.journal = journal;
+		if (journal == null) {
+			return;
+		}
+		final int size = journal.getSize();
+		for (int i = 0; i < size; i++) {
+			this.history.put(journal.getValue(i), journal.getTimestamp(i));
+		}
+		if (size > 0) {
+			this.lastValue = journal.getValue(size - 1);
+		}
+	}
+
+	/**
+	 * Close the journal attached to this wrapper, if any
+	 */
+	synchronized void closeJournal() {
+		if (this.journal != null) {
+			this.journal.close();
+			this.journal = null;
+		}
+	}
+
+	/**
+	 * Dispose the resources created by this wrapper
+	 */
+	void disposeResources() {
+		if (this.borderColorResource != null) {
+			this.borderColorResource.dispose();
+			this.borderColorResource = null;
+		}
+	}
+
+	/**
+	 * @return the identifier of this sample in its monitor
+	 */
+	String getId() {
+		return this.id;
+	}
+
+	/**
+	 * @param id the identifier of this sample in its monitor
+	 */
+	void setId(final String id) {
+		this.id = id;
 	}
 
 	/**
@@ -87,10 +179,27 @@ public class SampleWrapper {
 	}
 
 	/**
-	 * @return all data
+	 * @return a copy of all data
+	 */
+	public synchronized List<Double> getData() {
+		return this.history.getRaw().getValues();
+	}
+
+	/**
+	 * @return the buffer that holds the collected data. This is a live view,
+	 *         it is not copied: callers must synchronize on this wrapper while
+	 *         reading it
+	 */
+	DoubleRingBuffer getBuffer() {
+		return this.history.getRaw();
+	}
+
+	/**
+	 * @return the history of the collected data, with its rolled-up tiers.
+	 *         Callers must synchronize on this wrapper while reading it
 	 */
-	public List<Double> getData() {
-		return this.data.getValues();
+	SampleHistory getHistory() {
+		return this.history;
 	}
 
 	/**
@@ -103,29 +212,29 @@ public class SampleWrapper {
 	/**
 	 * @return the last max value collected
 	 */
-	public Double getLastMaxValue() {
+	public synchronized Double getLastMaxValue() {
 		return this.lastMaxValue;
 	}
 
 	/**
 	 * @return the last collected value
 	 */
-	public Double getLastValue() {
+	public synchronized Double getLastValue() {
 		return this.lastValue;
 	}
 
 	/**
 	 * @return the max value
 	 */
-	public double getMaxValue() {
+	public synchronized double getMaxValue() {
 		return this.maxValue;
 	}
 
 	/**
 	 * @return the number of collected elements
 	 */
-	public int getNumberOfCollectedElements() {
-		return this.data.getSize();
+	public synchronized int getNumberOfCollectedElements() {
+		return this.history.getRaw().getSize();
 	}
 
 	/**
@@ -138,8 +247,8 @@ public class SampleWrapper {
 	/**
 	 * @param newSize new size of the data collector array
 	 */
-	public void resize(final int newSize) {
-		this.data.resizeTo(newSize);
+	public synchronized void resize(final int newSize) {
+		this.history.resize(newSize);
 	}
 
 	/**
@@ -156,6 +265,7 @@ public class SampleWrapper {
 	SampleWrapper setColor(final RGB color) {
 		this.color = color;
 		createBorderColor();
+		disposeResources();
 		return this;
 	}
 
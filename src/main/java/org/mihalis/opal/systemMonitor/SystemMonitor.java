@@ -10,9 +10,18 @@
  *******************************************************************************/
 package org.mihalis.opal.systemMonitor;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.management.remote.JMXServiceURL;
 
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.SWTException;
@@ -23,14 +32,15 @@ import org.eclipse.swt.events.DisposeListener;
 import org.eclipse.swt.events.PaintEvent;
 import org.eclipse.swt.events.PaintListener;
 import org.eclipse.swt.graphics.Color;
-import org.eclipse.swt.graphics.Font;
-import org.eclipse.swt.graphics.FontData;
 import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.graphics.RGB;
 import org.eclipse.swt.graphics.Rectangle;
 import org.eclipse.swt.graphics.Region;
 import org.eclipse.swt.widgets.Canvas;
 import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
+import org.mihalis.opal.utils.DoubleRingBuffer;
 
 /**
  * Instances of this class are system monitors.
@@ -43,6 +53,11 @@ import org.eclipse.swt.widgets.Composite;
  */
 public class SystemMonitor extends Canvas {
 
+	private static final int HISTORY_STEP = 2;
+	private static final int FRAME_UP_TO_DATE = 0;
+	private static final int FRAME_SCROLL = 1;
+	private static final int FRAME_FULL = 2;
+
 	private final Map<String, SampleWrapper> samples;
 	private boolean captionVisible;
 	private GC gc;
@@ -51,7 +66,21 @@ public class SystemMonitor extends Canvas {
 	private final Color gridColor;
 	private final int gridSize;
 	private final int refreshTime;
-	private boolean keepRunning;
+	private long historyDuration;
+	private volatile SampleWrapper[] collectedSamples;
+	private final AtomicBoolean redrawPending;
+	private final Runnable redrawTask;
+	private ScheduledFuture<?> collectingTask;
+	private final List<SampleExporter> tails;
+	private Image staticLayer;
+	private Image frame;
+	private boolean frameValid;
+	private long[] paintedCounts;
+	private double[] paintedMaxValues;
+	private double[] paintedMaxDisplayedValues;
+	private Region clippingRegion;
+	private int[] pointArray;
+	private int[] lineArray;
 
 	/**
 	 * Constructs a new instance of this class given its parent and a style
@@ -88,7 +117,10 @@ public class SystemMonitor extends Canvas {
 		this.gridColorBackground = new Color(getDisplay(), 50, 50, 50);
 		this.gridSize = 12;
 		this.refreshTime = 300;
-		this.keepRunning = true;
+		this.collectedSamples = new SampleWrapper[0];
+		this.tails = new ArrayList<SampleExporter>();
+		this.redrawPending = new AtomicBoolean(false);
+		this.redrawTask = createRedrawTask();
 
 		createListeners();
 		launchDataCollecting();
@@ -130,7 +162,10 @@ public class SystemMonitor extends Canvas {
 		this.gridColorBackground = new Color(getDisplay(), 50, 50, 50);
 		this.gridSize = gridSize;
 		this.refreshTime = refeshTime;
-		this.keepRunning = true;
+		this.collectedSamples = new SampleWrapper[0];
+		this.tails = new ArrayList<SampleExporter>();
+		this.redrawPending = new AtomicBoolean(false);
+		this.redrawTask = createRedrawTask();
 
 		createListeners();
 		launchDataCollecting();
@@ -150,9 +185,17 @@ public class SystemMonitor extends Canvas {
 
 			@Override
 			public void widgetDisposed(final DisposeEvent e) {
+				stop();
 				SystemMonitor.this.borderColor.dispose();
 				SystemMonitor.this.gridColor.dispose();
 				SystemMonitor.this.gridColorBackground.dispose();
+				disposeLayers();
+				if (SystemMonitor.this.clippingRegion != null) {
+					SystemMonitor.this.clippingRegion.dispose();
+				}
+				for (final SampleWrapper sample : SystemMonitor.this.samples.values()) {
+					releaseSample(sample);
+				}
 			}
 		});
 		addControlListener(new ControlAdapter() {
@@ -162,33 +205,198 @@ public class SystemMonitor extends Canvas {
 			 */
 			@Override
 			public void controlResized(final ControlEvent e) {
+				final int width = getClientArea().width;
+				// Keep enough raw values for the history mode as well
+				final int size = Math.max(width / SystemMonitor.this.gridSize - 1, width / HISTORY_STEP);
 				for (final SampleWrapper sample : SystemMonitor.this.samples.values()) {
-					sample.resize(getClientArea().width / SystemMonitor.this.gridSize - 1);
+					sample.resize(size);
 				}
+				disposeLayers();
 			}
 		});
 	}
 
 	/**
-	 * Draws the widget
+	 * Draws the widget. The background and the grid are rendered once per size
+	 * in an off-screen image. The data are rendered in a second image: when
+	 * exactly one value has been collected since the last paint, this image is
+	 * shifted by one grid step and only its edges are rendered again
 	 * 
 	 * @param e paint event
 	 */
 	private void paintControl(final PaintEvent e) {
-		this.gc = e.gc;
-		e.gc.setAdvanced(true);
-		e.gc.setAntialias(SWT.ON);
+		final Rectangle clientArea = getClientArea();
+		if (clientArea.width <= 0 || clientArea.height <= 0) {
+			return;
+		}
+		if (this.staticLayer == null) {
+			createLayers(clientArea);
+		}
+		updateFrame(this.collectedSamples, 0);
+		e.gc.drawImage(this.frame, 0, 0);
+
+		if (this.captionVisible && this.samples.size() == 1) {
+			this.gc = e.gc;
+			drawCaption();
+		}
+	}
+
+	/**
+	 * Create the static layer (background and grid) and the frame
+	 * 
+	 * @param clientArea client area of the widget
+	 */
+	private void createLayers(final Rectangle clientArea) {
+		this.staticLayer = new Image(getDisplay(), clientArea.width, clientArea.height);
+		this.frame = new Image(getDisplay(), clientArea.width, clientArea.height);
+		this.frameValid = false;
+
+		this.gc = new GC(this.staticLayer);
+		this.gc.setAdvanced(true);
+		this.gc.setAntialias(SWT.ON);
+		this.gc.setBackground(getBackground());
+		this.gc.fillRectangle(clientArea);
 		drawBackground();
 		drawGrid();
+		this.gc.dispose();
+		this.gc = null;
+	}
 
-		for (final SampleWrapper sample : this.samples.values()) {
-			drawData(sample);
+	/**
+	 * Dispose the off-screen images. They will be created again at the next
+	 * paint
+	 */
+	private void disposeLayers() {
+		if (this.staticLayer != null) {
+			this.staticLayer.dispose();
+			this.staticLayer = null;
 		}
+		if (this.frame != null) {
+			this.frame.dispose();
+			this.frame = null;
+		}
+	}
 
-		if (this.captionVisible && this.samples.size() == 1) {
-			drawCaption();
+	/**
+	 * Update the frame while holding the lock of all samples, so that the
+	 * sampler threads can not publish a value in the meantime. Locks are always
+	 * taken in the same order and a sampler thread holds only one lock at a
+	 * time
+	 * 
+	 * @param wrappers samples
+	 * @param index index of the next sample to lock
+	 */
+	private void updateFrame(final SampleWrapper[] wrappers, final int index) {
+		if (index < wrappers.length) {
+			synchronized (wrappers[index]) {
+				updateFrame(wrappers, index + 1);
+			}
+			return;
+		}
+
+		final int update = getFrameUpdate(wrappers);
+		if (update == FRAME_UP_TO_DATE) {
+			return;
+		}
+
+		final Rectangle clientArea = getClientArea();
+		this.gc = new GC(this.frame);
+		this.gc.setAdvanced(true);
+		this.gc.setAntialias(SWT.ON);
+		// The background is periodic (one grid step) between the left margin
+		// and the right border, the edges are rendered again after a scroll
+		final int left = 10 + 4 * this.gridSize;
+		final int right = clientArea.width - 3;
+		final int newSegment = right - 2 * this.gridSize - 2;
+		if (update == FRAME_SCROLL && newSegment > left + this.gridSize) {
+			this.gc.copyArea(left + this.gridSize, 0, right - left - this.gridSize, clientArea.height, left, 0);
+			renderArea(new Rectangle(0, 0, left, clientArea.height));
+			renderArea(new Rectangle(newSegment, 0, clientArea.width - newSegment, clientArea.height));
+		} else {
+			renderArea(clientArea);
+		}
+		this.gc.dispose();
+		this.gc = null;
+
+		for (int i = 0; i < wrappers.length; i++) {
+			this.paintedCounts[i] = wrappers[i].getCollectCount();
+			this.paintedMaxValues[i] = wrappers[i].getMaxValue();
+			this.paintedMaxDisplayedValues[i] = getMaxDisplayedValue(wrappers[i]);
+		}
+		this.frameValid = true;
+	}
+
+	/**
+	 * Compare the samples with the ones used to render the frame. The caller
+	 * must hold the lock of all samples
+	 * 
+	 * @param wrappers samples
+	 * @return FRAME_UP_TO_DATE if nothing has changed, FRAME_SCROLL if the
+	 *         frame can be shifted by one grid step, FRAME_FULL if the frame
+	 *         must be rendered again
+	 */
+	private int getFrameUpdate(final SampleWrapper[] wrappers) {
+		if (!this.frameValid || this.paintedCounts == null || this.paintedCounts.length != wrappers.length) {
+			this.paintedCounts = new long[wrappers.length];
+			this.paintedMaxValues = new double[wrappers.length];
+			this.paintedMaxDisplayedValues = new double[wrappers.length];
+			return FRAME_FULL;
+		}
+
+		boolean upToDate = true;
+		boolean scrollable = this.historyDuration <= 0;
+		for (int i = 0; i < wrappers.length; i++) {
+			final long delta = wrappers[i].getCollectCount() - this.paintedCounts[i];
+			upToDate &= delta == 0;
+			scrollable &= delta == 1 && //
+					wrappers[i].getMaxValue() == this.paintedMaxValues[i] && //
+					getMaxDisplayedValue(wrappers[i]) == this.paintedMaxDisplayedValues[i];
+		}
+		if (upToDate) {
+			return FRAME_UP_TO_DATE;
+		}
+		return scrollable ? FRAME_SCROLL : FRAME_FULL;
+	}
+
+	/**
+	 * Render an area of the frame: the static layer first, then the data
+	 * 
+	 * @param area area to render
+	 */
+	private void renderArea(final Rectangle area) {
+		this.gc.setClipping(area);
+		this.gc.drawImage(this.staticLayer, area.x, area.y, area.width, area.height, area.x, area.y, area.width, area.height);
+		for (final SampleWrapper sample : this.collectedSamples) {
+			if (this.historyDuration > 0) {
+				drawHistory(sample, area);
+			} else {
+				drawData(sample, area);
+			}
+		}
+	}
+
+	/**
+	 * @return the region used to clip the gradients, emptied
+	 */
+	private Region getClippingRegion() {
+		if (this.clippingRegion == null) {
+			this.clippingRegion = new Region(getDisplay());
+		} else {
+			this.clippingRegion.subtract(this.clippingRegion.getBounds());
 		}
+		return this.clippingRegion;
+	}
 
+	/**
+	 * @param array array to reuse, may be null
+	 * @param size number of ints needed
+	 * @return the array if its size matches, a new array otherwise
+	 */
+	private static int[] reuse(final int[] array, final int size) {
+		if (array != null && array.length == size) {
+			return array;
+		}
+		return new int[size];
 	}
 
 	/**
@@ -227,28 +435,43 @@ public class SystemMonitor extends Canvas {
 	}
 
 	/**
-	 * Draw the data
+	 * @param sample sample that contains data. The caller must hold its lock
+	 * @return the highest value displayed in grid mode
+	 */
+	private double getMaxDisplayedValue(final SampleWrapper sample) {
+		final DoubleRingBuffer data = sample.getBuffer();
+		final int size = Math.min(data.getSize(), getClientArea().width / this.gridSize - 1);
+		double maxDisplayedValue = -1d;
+		for (int i = data.getSize() - size; i < data.getSize(); i++) {
+			maxDisplayedValue = Math.max(maxDisplayedValue, data.get(i));
+		}
+		return maxDisplayedValue;
+	}
+
+	/**
+	 * Draw the data. The caller must hold the lock on the sample
 	 * 
 	 * @param sample sample that contains data
+	 * @param area area to render
 	 */
-	private void drawData(final SampleWrapper sample) {
-		final List<Double> data = sample.getData();
+	private void drawData(final SampleWrapper sample, final Rectangle area) {
+		final Rectangle clientArea = getClientArea();
+		final DoubleRingBuffer data = sample.getBuffer();
+		final int size = Math.min(data.getSize(), clientArea.width / this.gridSize - 1);
+		final int offset = data.getSize() - size;
 
-		if (data == null || data.size() < 2) {
+		if (size < 2) {
 			return;
 		}
 
-		final Rectangle clientArea = getClientArea();
 		final double maxValue = sample.getMaxValue();
-		this.gc.setClipping(clientArea);
-		final Color borderColor = new Color(getDisplay(), sample.getBorderColor());
-		final Color color = new Color(getDisplay(), sample.getColor());
-		final int[] pointArray = new int[2 * (data.size() + 2)];
+		final Color borderColor = sample.getBorderColorResource(getDisplay());
+		final int[] pointArray = this.pointArray = reuse(this.pointArray, 2 * (size + 2));
 
 		final int availableWidth = clientArea.width - this.gridSize;
 		final int availableHeight = (int) ((clientArea.height - this.gridSize) * 0.98f);
 
-		int x = this.gridSize / 2 + availableWidth - (data.size() - 1) * this.gridSize;
+		int x = this.gridSize / 2 + availableWidth - (size - 1) * this.gridSize;
 
 		// First point
 		pointArray[0] = x;
@@ -257,7 +480,8 @@ public class SystemMonitor extends Canvas {
 		// Following points
 		int index = 2;
 		double maxDisplayedValue = -1d;
-		for (final Double datum : data) {
+		for (int i = 0; i < size; i++) {
+			final double datum = data.get(offset + i);
 			pointArray[index++] = x;
 			pointArray[index++] = clientArea.height - (int) (this.gridSize / 2 + availableHeight * datum / maxValue);
 			x += this.gridSize;
@@ -270,25 +494,96 @@ public class SystemMonitor extends Canvas {
 
 		// Draw a gradient rectangle
 		this.gc.setAlpha(this.samples.size() == 1 ? 210 : 150);
-		final Region region = new Region(getDisplay());
+		final Region region = getClippingRegion();
 		region.add(pointArray);
+		region.intersect(area);
 		this.gc.setClipping(region);
 		this.gc.setForeground(borderColor);
 		this.gc.setBackground(getDisplay().getSystemColor(SWT.COLOR_BLACK));
 		this.gc.fillGradientRectangle(this.gridSize / 2, clientArea.height - (int) (this.gridSize / 2 + availableHeight * maxDisplayedValue / maxValue), availableWidth, (int) (availableHeight * maxDisplayedValue / maxValue), true);
 
 		// Draw the polyline
-		this.gc.setClipping(clientArea);
+		this.gc.setClipping(area);
 		this.gc.setForeground(borderColor);
 		this.gc.drawPolygon(pointArray);
 
-		region.dispose();
-		borderColor.dispose();
-		color.dispose();
 		this.gc.setAlpha(255);
 
 	}
 
+	/**
+	 * Draw the history of a sample over the history duration. The tier is
+	 * chosen so that the number of points depends on the width of the widget,
+	 * not on the duration. The caller must hold the lock on the sample
+	 * 
+	 * @param sample sample that contains data
+	 * @param area area to render
+	 */
+	private void drawHistory(final SampleWrapper sample, final Rectangle area) {
+		final Rectangle clientArea = getClientArea();
+		final int availableWidth = clientArea.width - this.gridSize;
+		final int availableHeight = (int) ((clientArea.height - this.gridSize) * 0.98f);
+		final int numberOfPoints = Math.max(2, availableWidth / HISTORY_STEP);
+		final int numberOfValues = (int) Math.max(1, this.historyDuration / Math.max(1, this.refreshTime));
+
+		final SampleHistory.Tier tier = sample.getHistory().selectTier(numberOfValues, numberOfPoints);
+		final DoubleRingBuffer min, max, average;
+		final int slots;
+		if (tier == null) {
+			min = max = average = sample.getBuffer();
+			slots = numberOfValues;
+		} else {
+			min = tier.getMin();
+			max = tier.getMax();
+			average = tier.getAverage();
+			slots = Math.max(1, numberOfValues / tier.getFactor());
+		}
+
+		final int count = Math.min(average.getSize(), slots);
+		if (count < 2) {
+			return;
+		}
+
+		final double maxValue = sample.getMaxValue();
+		final double step = availableWidth / (double) Math.max(1, slots - 1);
+		final int right = this.gridSize / 2 + availableWidth;
+		final int offset = average.getSize() - count;
+
+		// Max values from left to right, then min values from right to left
+		final int[] band = this.pointArray = reuse(this.pointArray, 4 * count);
+		final int[] line = this.lineArray = reuse(this.lineArray, 2 * count);
+		double maxDisplayedValue = -1d;
+		for (int i = 0; i < count; i++) {
+			final int x = right - (int) ((count - 1 - i) * step);
+			final double high = max.get(offset + i);
+			band[2 * i] = x;
+			band[2 * i + 1] = clientArea.height - (int) (this.gridSize / 2 + availableHeight * high / maxValue);
+			band[4 * count - 2 * i - 2] = x;
+			band[4 * count - 2 * i - 1] = clientArea.height - (int) (this.gridSize / 2 + availableHeight * min.get(offset + i) / maxValue);
+			line[2 * i] = x;
+			line[2 * i + 1] = clientArea.height - (int) (this.gridSize / 2 + availableHeight * average.get(offset + i) / maxValue);
+			maxDisplayedValue = Math.max(maxDisplayedValue, high);
+		}
+
+		final Color borderColor = sample.getBorderColorResource(getDisplay());
+
+		// Draw a gradient rectangle in the min/max band
+		this.gc.setAlpha(this.samples.size() == 1 ? 210 : 150);
+		final Region region = getClippingRegion();
+		region.add(band);
+		region.intersect(area);
+		this.gc.setClipping(region);
+		this.gc.setForeground(borderColor);
+		this.gc.setBackground(getDisplay().getSystemColor(SWT.COLOR_BLACK));
+		this.gc.fillGradientRectangle(this.gridSize / 2, clientArea.height - (int) (this.gridSize / 2 + availableHeight * maxDisplayedValue / maxValue), availableWidth, (int) (availableHeight * maxDisplayedValue / maxValue), true);
+
+		// Draw the average
+		this.gc.setClipping(area);
+		this.gc.drawPolyline(line);
+
+		this.gc.setAlpha(255);
+	}
+
 	private void drawCaption() {
 		for (final SampleWrapper sample : this.samples.values()) {
 			if (sample.getCaption() != null && !sample.getCaption().equals("")) {
@@ -309,13 +604,7 @@ public class SystemMonitor extends Canvas {
 		this.gc.setBackground(getDisplay().getSystemColor(SWT.COLOR_BLACK));
 		this.gc.fillRectangle(clientArea.x, clientArea.y + clientArea.height - 19, clientArea.width, 19);
 
-		final Color color = new Color(getDisplay(), sample.getBorderColor());
-		this.gc.setForeground(color);
-		final FontData[] fontData = getFont().getFontData();
-		for (final FontData f : fontData) {
-			f.setHeight(9);
-		}
-		final Font font = new Font(getDisplay(), fontData);
+		this.gc.setForeground(sample.getBorderColorResource(getDisplay()));
 		this.gc.setFont(getFont());
 
 		final String format = sample.getFormatPattern().replace("{value}", "1$").replace("{maxValue}", "2$").replace("{percentValue}", "3$");
@@ -326,47 +615,87 @@ public class SystemMonitor extends Canvas {
 
 		this.gc.drawString(sample.getCaption() + " : " + formattedCaption, clientArea.x + this.gridSize, clientArea.y + clientArea.height - 19);
 
-		font.dispose();
-		color.dispose();
-
 	}
 
 	/**
-	 * Launch the data collecting process
+	 * Launch the data collecting process. Samples are collected by the shared
+	 * sampler threads, the UI thread only paints
 	 */
 	private void launchDataCollecting() {
-		getDisplay().timerExec(this.refreshTime, new Runnable() {
+		this.collectingTask = SampleScheduler.schedule(new Runnable() {
 
 			@Override
 			public void run() {
 				collect();
-				if (!SystemMonitor.this.isDisposed() && SystemMonitor.this.keepRunning && !getDisplay().isDisposed()) {
-					getDisplay().timerExec(SystemMonitor.this.refreshTime, this);
-				}
 			}
-		});
+		}, this.refreshTime);
 	}
 
 	/**
-	 * Collect data
+	 * Collect data. This method is called by a sampler thread
 	 */
 	private void collect() {
-		for (final SampleWrapper sample : this.samples.values()) {
-			sample.collect();
+		for (final SampleWrapper sample : this.collectedSamples) {
+			try {
+				sample.collect();
+			} catch (final RuntimeException e) {
+				// The value is not available for this tick, the next one may
+				// succeed
+			}
 		}
-		if (!this.isDisposed() && !getDisplay().isDisposed()) {
-			getDisplay().asyncExec(new Runnable() {
+		requestRedraw();
+	}
 
-				@Override
-				public void run() {
-					if (!SystemMonitor.this.isDisposed()) {
-						redraw();
-					}
-				}
-			});
+	/**
+	 * Ask the UI thread for a redraw. Requests are coalesced : while a redraw
+	 * is pending, no other one is posted
+	 */
+	private void requestRedraw() {
+		if (!this.redrawPending.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			final Display display = getDisplay();
+			if (display.isDisposed()) {
+				return;
+			}
+			display.asyncExec(this.redrawTask);
+		} catch (final SWTException e) {
+			// The widget or the display has been disposed in the meantime
 		}
 	}
 
+	/**
+	 * @return the task posted to the UI thread to redraw the widget
+	 */
+	private Runnable createRedrawTask() {
+		return new Runnable() {
+
+			@Override
+			public void run() {
+				SystemMonitor.this.redrawPending.set(false);
+				if (!SystemMonitor.this.isDisposed()) {
+					redraw();
+				}
+			}
+		};
+	}
+
+	/**
+	 * @return the samples, as read by the sampler threads
+	 */
+	SampleWrapper[] getCollectedSamples() {
+		return this.collectedSamples;
+	}
+
+	/**
+	 * Update the array of samples read by the sampler threads
+	 */
+	private void updateCollectedSamples() {
+		this.collectedSamples = this.samples.values().toArray(new SampleWrapper[this.samples.size()]);
+		this.frameValid = false;
+	}
+
 	/**
 	 * Constructs a new instance of this class given its parent and a style
 	 * value describing its behavior and appearance.
@@ -395,8 +724,52 @@ public class SystemMonitor extends Canvas {
 	 * 
 	 */
 	public SystemMonitor(final Composite parent, final int style, final SampleIdentifier identifier) {
+		this(parent, style, identifier, SampleFactory.getInstance().getSample(identifier));
+	}
+
+	/**
+	 * Constructs a new instance of this class given its parent and a style
+	 * value describing its behavior and appearance.
+	 * <p>
+	 * The style value is either one of the style constants defined in class
+	 * <code>SWT</code> which is applicable to instances of this class, or must
+	 * be built by <em>bitwise OR</em>'in together (that is, using the
+	 * <code>int</code> "|" operator) two or more of those <code>SWT</code>
+	 * style constants. The class description lists the style constants that are
+	 * applicable to the class. Style bits are also inherited from super
+	 * classes.
+	 * </p>
+	 * 
+	 * @param parent a composite control which will be the parent of the new
+	 *            instance (cannot be null)
+	 * @param style the style of control to construct
+	 * @param identifier Sample identifier
+	 * @param url address of the JMX connector server of the monitored JVM
+	 * 
+	 * @exception IllegalArgumentException <ul>
+	 *                <li>ERROR_NULL_ARGUMENT - if the parent is null</li>
+	 *                </ul>
+	 * @exception SWTException <ul>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the
+	 *                thread that created the parent</li>
+	 *                </ul>
+	 * 
+	 */
+	public SystemMonitor(final Composite parent, final int style, final SampleIdentifier identifier, final JMXServiceURL url) {
+		this(parent, style, identifier, SampleFactory.getInstance().getSample(identifier, url));
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param parent a composite control which will be the parent of the new
+	 *            instance (cannot be null)
+	 * @param style the style of control to construct
+	 * @param identifier Sample identifier
+	 * @param wrapper sample to display
+	 */
+	private SystemMonitor(final Composite parent, final int style, final SampleIdentifier identifier, final SampleWrapper wrapper) {
 		this(parent, style);
-		final SampleWrapper wrapper = SampleFactory.getInstance().getSample(identifier);
 		addSample(identifier.name(), wrapper);
 		this.captionVisible = !wrapper.getCaption().trim().equals("");
 	}
@@ -408,7 +781,7 @@ public class SystemMonitor extends Canvas {
 	 * @param sample sample to add
 	 */
 	public void addSample(final String id, final Sample sample) {
-		this.samples.put(id, new SampleWrapper(sample));
+		addSample(id, new SampleWrapper(sample));
 	}
 
 	/**
@@ -418,20 +791,61 @@ public class SystemMonitor extends Canvas {
 	 * @param sampleWrapper sample wrapper
 	 */
 	private void addSample(final String id, final SampleWrapper sampleWrapper) {
-		this.samples.put(id, sampleWrapper);
+		sampleWrapper.setId(id);
+		final SampleWrapper previous = this.samples.put(id, sampleWrapper);
+		if (previous != null) {
+			releaseSample(previous);
+		}
+		updateCollectedSamples();
+	}
+
+	/**
+	 * Release a sample removed from this monitor: its resources, its journal
+	 * and its reference to a shared sample
+	 * 
+	 * @param sample sample to release
+	 */
+	private void releaseSample(final SampleWrapper sample) {
+		sample.disposeResources();
+		sample.closeJournal();
+		SampleFactory.getInstance().release(sample);
 	}
 
 	/**
 	 * Displays all built-in samples
 	 */
 	public void displayAll() {
-		this.samples.clear();
+		clearSamples();
 		addSample(SampleIdentifier.CPU_USAGE.name(), SampleFactory.getInstance().getSample(SampleIdentifier.CPU_USAGE));
 		addSample(SampleIdentifier.HEAP_MEMORY.name(), SampleFactory.getInstance().getSample(SampleIdentifier.HEAP_MEMORY));
 		addSample(SampleIdentifier.PHYSICAL_MEMORY.name(), SampleFactory.getInstance().getSample(SampleIdentifier.PHYSICAL_MEMORY));
 		addSample(SampleIdentifier.THREADS.name(), SampleFactory.getInstance().getSample(SampleIdentifier.THREADS));
 	}
 
+	/**
+	 * Displays all built-in samples of a remote JVM
+	 * 
+	 * @param url address of the JMX connector server of the JVM
+	 */
+	public void displayAll(final JMXServiceURL url) {
+		clearSamples();
+		addSample(SampleIdentifier.CPU_USAGE.name(), SampleFactory.getInstance().getSample(SampleIdentifier.CPU_USAGE, url));
+		addSample(SampleIdentifier.HEAP_MEMORY.name(), SampleFactory.getInstance().getSample(SampleIdentifier.HEAP_MEMORY, url));
+		addSample(SampleIdentifier.PHYSICAL_MEMORY.name(), SampleFactory.getInstance().getSample(SampleIdentifier.PHYSICAL_MEMORY, url));
+		addSample(SampleIdentifier.THREADS.name(), SampleFactory.getInstance().getSample(SampleIdentifier.THREADS, url));
+	}
+
+	/**
+	 * Remove all samples
+	 */
+	private void clearSamples() {
+		for (final SampleWrapper sample : this.samples.values()) {
+			releaseSample(sample);
+		}
+		this.samples.clear();
+		updateCollectedSamples();
+	}
+
 	/**
 	 * @return <code>true</code> if the caption is visible, <code>false</code>
 	 *         otherwise
@@ -453,11 +867,32 @@ public class SystemMonitor extends Canvas {
 		this.samples.get(id).setCaption(caption);
 	}
 
+	/**
+	 * @return the duration (in milliseconds) of the displayed history, or 0 if
+	 *         the widget displays one collected value per grid step
+	 */
+	public long getHistoryDuration() {
+		return this.historyDuration;
+	}
+
+	/**
+	 * @param historyDuration duration (in milliseconds) of the history to
+	 *            display, for instance one hour. Long durations are displayed
+	 *            with min/max/average values of rolled-up buckets. If 0, the
+	 *            widget displays one collected value per grid step
+	 */
+	public void setHistoryDuration(final long historyDuration) {
+		this.historyDuration = Math.max(0, historyDuration);
+		this.frameValid = false;
+		redraw();
+	}
+
 	/**
 	 * @param captionVisible if true, the caption is visible
 	 */
 	public void setCaptionVisible(final boolean captionVisible) {
 		this.captionVisible = captionVisible;
+		this.frameValid = false;
 	}
 
 	/**
@@ -471,6 +906,53 @@ public class SystemMonitor extends Canvas {
 			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
 		}
 		this.samples.get(id).setColor(color);
+		this.frameValid = false;
+	}
+
+	/**
+	 * Record the values of a given sample in a journal. The journal is a
+	 * memory-mapped file of fixed size used as a ring. If the file already
+	 * contains a journal, its values are loaded in the history of the sample,
+	 * so the history survives a restart of the application
+	 * 
+	 * @param id sample identifier
+	 * @param file file of the journal, or <code>null</code> to stop recording
+	 */
+	public void setJournal(final String id, final File file) {
+		setJournal(id, file, SampleJournal.DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Record the values of a given sample in a journal
+	 * 
+	 * @param id sample identifier
+	 * @param file file of the journal, or <code>null</code> to stop recording
+	 * @param capacity maximum number of values kept in a new journal, between
+	 *            1 and {@link SampleJournal#MAX_CAPACITY}
+	 * @exception IllegalArgumentException <ul>
+	 *                <li>ERROR_INVALID_ARGUMENT - if the sample does not exist
+	 *                or if the capacity is out of range</li>
+	 *                </ul>
+	 * @see #setJournal(String, File)
+	 */
+	public void setJournal(final String id, final File file, final int capacity) {
+		if (!this.samples.containsKey(id)) {
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+		}
+		if (file == null) {
+			this.samples.get(id).setJournal(null);
+			return;
+		}
+		if (capacity <= 0 || capacity > SampleJournal.MAX_CAPACITY) {
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+		}
+		try {
+			this.samples.get(id).setJournal(new SampleJournal(file, capacity));
+		} catch (final IOException e) {
+			SWT.error(SWT.ERROR_IO, e);
+		}
+		this.frameValid = false;
+		redraw();
 	}
 
 	/**
@@ -487,10 +969,58 @@ public class SystemMonitor extends Canvas {
 	}
 
 	/**
-	 * Stop the data collecting process
+	 * Write all values kept by this monitor, with their timestamps, to a
+	 * channel. The channel is not closed
+	 * 
+	 * @param channel channel to write to
+	 * @param format format of the export
+	 * @see SampleExporter
+	 */
+	public void export(final WritableByteChannel channel, final SampleExporter.Format format) {
+		try {
+			new SampleExporter(this, channel, format).export();
+		} catch (final IOException e) {
+			SWT.error(SWT.ERROR_IO, e);
+		}
+	}
+
+	/**
+	 * Write all values kept by this monitor to a channel, then write the new
+	 * values after each collect, until the returned exporter or this monitor
+	 * is stopped. The channel is not closed
+	 * 
+	 * @param channel channel to write to
+	 * @param format format of the export
+	 * @return the exporter, used to stop the export or to get the error that
+	 *         has stopped it
+	 * @see SampleExporter
+	 */
+	public SampleExporter tail(final WritableByteChannel channel, final SampleExporter.Format format) {
+		// Forget the exporters that have been stopped or have failed
+		final Iterator<SampleExporter> iterator = this.tails.iterator();
+		while (iterator.hasNext()) {
+			if (!iterator.next().isTailing()) {
+				iterator.remove();
+			}
+		}
+		final SampleExporter exporter = new SampleExporter(this, channel, format);
+		exporter.startTail(this.refreshTime);
+		this.tails.add(exporter);
+		return exporter;
+	}
+
+	/**
+	 * Stop the data collecting process and the exports started with
+	 * {@link #tail(WritableByteChannel, SampleExporter.Format)}
 	 */
 	public void stop() {
-		this.keepRunning = false;
+		if (this.collectingTask != null) {
+			this.collectingTask.cancel(false);
+		}
+		for (final SampleExporter exporter : this.tails) {
+			exporter.stop();
+		}
+		this.tails.clear();
 	}
 
 }
@@ -10,9 +10,6 @@
  *******************************************************************************/
 package org.mihalis.opal.systemMonitor;
 
-import java.lang.management.ManagementFactory;
-
-import javax.management.MBeanServerConnection;
 import javax.management.ObjectName;
 
 /**
@@ -23,18 +20,26 @@ public class ThreadsUsageSample implements Sample {
 	private static final String PEAK_THREAD_COUNT = "PeakThreadCount";
 	private static final String THREAD_COUNT = "ThreadCount";
 	private static final String OBJECT_NAME_ATTRIBUTE = "java.lang:type=Threading";
-	private final MBeanServerConnection mBeanServerConnection = ManagementFactory.getPlatformMBeanServer();
-	private ObjectName objectName;
+	private final MBeanAttributeReader reader;
+	private final ObjectName objectName;
 
 	/**
 	 * Constructor
 	 */
 	ThreadsUsageSample() {
-		try {
-			this.objectName = new ObjectName(OBJECT_NAME_ATTRIBUTE);
-		} catch (final Exception e) {
-			throw new RuntimeException(e);
-		}
+		this(MBeanAttributeReader.getPlatformReader());
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param reader reader used to get the attributes
+	 */
+	ThreadsUsageSample(final MBeanAttributeReader reader) {
+		this.reader = reader;
+		this.objectName = MBeanAttributeReader.createObjectName(OBJECT_NAME_ATTRIBUTE);
+		reader.register(this.objectName, THREAD_COUNT);
+		reader.register(this.objectName, PEAK_THREAD_COUNT);
 	}
 
 	/**
@@ -42,11 +47,7 @@ public class ThreadsUsageSample implements Sample {
 	 */
 	@Override
 	public double getValue() {
-		try {
-			return ((Integer) this.mBeanServerConnection.getAttribute(this.objectName, THREAD_COUNT)).intValue();
-		} catch (final Exception e) {
-			throw new RuntimeException(e);
-		}
+		return this.reader.getLong(this.objectName, THREAD_COUNT);
 	}
 
 	/**
@@ -54,10 +55,6 @@ public class ThreadsUsageSample implements Sample {
 	 */
 	@Override
 	public double getMaxValue() {
-		try {
-			return ((Integer) this.mBeanServerConnection.getAttribute(this.objectName, PEAK_THREAD_COUNT)).intValue();
-		} catch (final Exception e) {
-			throw new RuntimeException(e);
-		}
+		return this.reader.getLong(this.objectName, PEAK_THREAD_COUNT);
 	}
 }
@@ -24,6 +24,7 @@ class NoTransition implements Transition {
 	 */
 	@Override
 	public void performTransition(final Control first, final Control second) {
+		SnapshotTransition.cancelRunningTransition(first.getParent());
 		first.setVisible(false);
 		second.setVisible(true);
 	}
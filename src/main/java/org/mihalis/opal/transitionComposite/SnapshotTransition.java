@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright (c) 2011 Laurent CARON.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Laurent CARON (laurent.caron@gmail.com) - initial API and implementation
+ *******************************************************************************/
+package org.mihalis.opal.transitionComposite;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.Point;
+import org.eclipse.swt.graphics.Rectangle;
+import org.eclipse.swt.widgets.Canvas;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Listener;
+import org.mihalis.opal.utils.Animation;
+import org.mihalis.opal.utils.AnimationScheduler;
+
+/**
+ * Instances of this class are transitions that move snapshots of the
+ * controls. Both controls are captured once into images, then only the
+ * images are moved on a canvas that covers the composite. At the end of the
+ * transition, the canvas is disposed and the second control is shown.<br/>
+ * A transition has no state: the same instance can run several transitions at
+ * the same time on different composites.
+ */
+abstract class SnapshotTransition implements Transition {
+
+	private static final String OVERLAY_KEY = "org.mihalis.opal.transitionComposite.SnapshotTransition.overlay";
+	private static final int DURATION = 400;
+
+	/**
+	 * @see org.mihalis.opal.transitionComposite.Transition#performTransition(org.eclipse.swt.widgets.Control,
+	 *      org.eclipse.swt.widgets.Control)
+	 */
+	@Override
+	public void performTransition(final Control first, final Control second) {
+		if (first.isDisposed() || second.isDisposed()) {
+			return;
+		}
+
+		final Composite parent = first.getParent();
+		cancelRunningTransition(parent);
+
+		final Rectangle area = parent.getClientArea();
+		final int distance = getDistance(area);
+
+		first.setBounds(area);
+		second.setBounds(area);
+		// An interrupted transition leaves its controls hidden, and a hidden
+		// control may be printed as a blank image
+		first.setVisible(true);
+		second.setVisible(true);
+		first.moveAbove(second);
+		final Image firstImage = createSnapshot(first, area);
+		final Image secondImage = createSnapshot(second, area);
+		first.setVisible(false);
+		second.setVisible(false);
+
+		final Canvas overlay = new Canvas(parent, SWT.NO_BACKGROUND | SWT.DOUBLE_BUFFERED);
+		overlay.setBounds(area);
+		overlay.moveAbove(null);
+		parent.setData(OVERLAY_KEY, overlay);
+
+		final float[] progress = new float[1];
+		overlay.addListener(SWT.Paint, new Listener() {
+			@Override
+			public void handleEvent(final Event event) {
+				final int position = (int) (progress[0] * distance);
+				final Point secondLocation = getSecondLocation(position, distance);
+				final Point firstLocation = getFirstLocation(position, distance);
+				event.gc.setBackground(parent.getBackground());
+				event.gc.fillRectangle(0, 0, area.width, area.height);
+				event.gc.drawImage(secondImage, secondLocation.x, secondLocation.y);
+				event.gc.drawImage(firstImage, firstLocation.x, firstLocation.y);
+			}
+		});
+		overlay.addListener(SWT.Dispose, new Listener() {
+			@Override
+			public void handleEvent(final Event event) {
+				firstImage.dispose();
+				secondImage.dispose();
+				if (!parent.isDisposed() && parent.getData(OVERLAY_KEY) == overlay) {
+					parent.setData(OVERLAY_KEY, null);
+				}
+			}
+		});
+
+		AnimationScheduler.getInstance(overlay.getDisplay()).schedule(new Animation(overlay, DURATION) {
+			@Override
+			protected void update(final float fraction) {
+				progress[0] = fraction;
+				redraw();
+			}
+
+			@Override
+			protected void finished() {
+				if (!second.isDisposed()) {
+					second.setBounds(parent.getClientArea());
+					second.setVisible(true);
+				}
+				overlay.dispose();
+			}
+		});
+	}
+
+	/**
+	 * Stop the transition that is running on a composite, if any. The controls
+	 * of the transition stay hidden, so the next transition starts from the
+	 * current state of the composite
+	 * 
+	 * @param parent the composite
+	 */
+	static void cancelRunningTransition(final Composite parent) {
+		final Canvas overlay = (Canvas) parent.getData(OVERLAY_KEY);
+		if (overlay != null && !overlay.isDisposed()) {
+			overlay.dispose();
+		}
+	}
+
+	/**
+	 * Capture a control into an image
+	 * 
+	 * @param control control to capture
+	 * @param area client area of the composite
+	 * @return an image of the control
+	 */
+	private static Image createSnapshot(final Control control, final Rectangle area) {
+		final Image image = new Image(control.getDisplay(), Math.max(1, area.width), Math.max(1, area.height));
+		final GC gc = new GC(image);
+		gc.setBackground(control.getBackground());
+		gc.fillRectangle(0, 0, area.width, area.height);
+		control.print(gc);
+		gc.dispose();
+		return image;
+	}
+
+	/**
+	 * @param area client area of the composite
+	 * @return the distance covered by the moving controls
+	 */
+	protected abstract int getDistance(Rectangle area);
+
+	/**
+	 * @param position distance already covered
+	 * @param distance total distance
+	 * @return the location of the first control
+	 */
+	protected abstract Point getFirstLocation(int position, int distance);
+
+	/**
+	 * @param position distance already covered
+	 * @param distance total distance
+	 * @return the location of the second control
+	 */
+	protected abstract Point getSecondLocation(int position, int distance);
+
+}
@@ -10,17 +10,38 @@
  *******************************************************************************/
 package org.mihalis.opal.transitionComposite;
 
+import java.util.EnumMap;
+import java.util.Map;
+
 /**
- * This class is a transition factory
+ * This class is a transition factory. Transitions have no state, so there is
+ * one shared instance of each transition
  */
 public class TransitionFactory {
 
+	private static final Map<TRANSITIONS, Transition> TRANSITIONS_INSTANCES = new EnumMap<TRANSITIONS, Transition>(TRANSITIONS.class);
+
+	static {
+		for (final TRANSITIONS transition : TRANSITIONS.values()) {
+			TRANSITIONS_INSTANCES.put(transition, createTransition(transition));
+		}
+	}
+
 	/**
 	 * @param transition transition to get
+	 * @return the shared transition corresponding to the
+	 *         <code>transition</code> parameter
+	 */
+	public static Transition getTransitionFor(final TRANSITIONS transition) {
+		return TRANSITIONS_INSTANCES.get(transition);
+	}
+
+	/**
+	 * @param transition transition to create
 	 * @return a transition corresponding to the <code>transition</code>
 	 *         parameter
 	 */
-	public static Transition getTransitionFor(final TRANSITIONS transition) {
+	private static Transition createTransition(final TRANSITIONS transition) {
 		switch (transition) {
 		case DOWN_TO_UP:
 			return new DownUpTransition();
@@ -10,65 +10,41 @@
  *******************************************************************************/
 package org.mihalis.opal.transitionComposite;
 
-import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.graphics.Point;
+import org.eclipse.swt.graphics.Rectangle;
 
 /**
  * Instances of this class are vertical transitions (down>up, up>down...)
  */
-abstract class VerticalTransition implements Transition {
+abstract class VerticalTransition extends SnapshotTransition {
 
 	/**
-	 * @see org.mihalis.opal.transitionComposite.Transition#performTransition(org.eclipse.swt.widgets.Control,
-	 *      org.eclipse.swt.widgets.Control)
+	 * @see org.mihalis.opal.transitionComposite.SnapshotTransition#getDistance(org.eclipse.swt.graphics.Rectangle)
 	 */
 	@Override
-	public void performTransition(final Control first, final Control second) {
-		if (first.isDisposed() || second.isDisposed()) {
-			return;
-		}
-
-		final int[] currentPosition = new int[1];
-		currentPosition[0] = 0;
-		final int maxValue = first.getParent().getClientArea().height;
-
-		first.setBounds(0, 0, first.getBounds().width, first.getBounds().height);
-		second.setBounds(0, -1 * second.getBounds().width, second.getBounds().width, second.getBounds().height);
+	protected int getDistance(final Rectangle area) {
+		return area.height;
+	}
 
-		first.moveAbove(second);
-		second.setVisible(true);
+	/**
+	 * @see org.mihalis.opal.transitionComposite.SnapshotTransition#getFirstLocation(int,
+	 *      int)
+	 */
+	@Override
+	protected Point getFirstLocation(final int position, final int distance) {
+		return new Point(0, getCoeff() * position);
+	}
 
-		if (first.isDisposed() || first.getDisplay().isDisposed()) {
-			return;
+	/**
+	 * @see org.mihalis.opal.transitionComposite.SnapshotTransition#getSecondLocation(int,
+	 *      int)
+	 */
+	@Override
+	protected Point getSecondLocation(final int position, final int distance) {
+		if (secondIsBehind()) {
+			return new Point(0, -1 * getCoeff() * (distance - position));
 		}
-
-		first.getDisplay().timerExec(0, new Runnable() {
-
-			@Override
-			public void run() {
-
-				if (first.isDisposed() || second.isDisposed()) {
-					return;
-				}
-
-				currentPosition[0] = currentPosition[0] + 10;
-				if (currentPosition[0] > maxValue) {
-					first.setVisible(false);
-					second.setBounds(0, 0, first.getBounds().width, first.getBounds().height);
-
-					return;
-				}
-
-				first.setBounds(0, getCoeff() * currentPosition[0], first.getBounds().width, first.getBounds().height);
-				if (secondIsBehind()) {
-					second.setBounds(0, -1 * getCoeff() * (maxValue - currentPosition[0]), second.getBounds().width, second.getBounds().height);
-				}
-				if (!first.isDisposed() && !first.getDisplay().isDisposed()) {
-					first.getDisplay().timerExec(15, this);
-				}
-			}
-
-		});
-
+		return new Point(0, 0);
 	}
 
 	/**
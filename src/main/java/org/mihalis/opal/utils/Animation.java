@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright (c) 2011 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - Initial implementation and API
+ *******************************************************************************/
+package org.mihalis.opal.utils;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Control;
+
+/**
+ * Instances of this class are animations driven by an
+ * {@link AnimationScheduler}. An animation belongs to a control: it is paused
+ * when the shell of the control is minimized, and it is dropped when the
+ * control is disposed.<br/>
+ * The state of the animation is computed from the elapsed time, not from the
+ * number of frames, so an animation lasts the same time whatever the frame
+ * rate is.
+ */
+public abstract class Animation {
+
+	/**
+	 * Duration of an animation that runs until it is cancelled
+	 */
+	public static final int INFINITE = -1;
+
+	private final Control control;
+	private final int duration;
+	private AnimationScheduler scheduler;
+	private long elapsedTime;
+	private long lastTime;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param control control animated by this animation
+	 * @param duration duration of the animation in milliseconds, or
+	 *            {@link #INFINITE}
+	 * @exception IllegalArgumentException <ul>
+	 *                <li>ERROR_NULL_ARGUMENT - if the control is null</li>
+	 *                <li>ERROR_INVALID_ARGUMENT - if the duration is negative
+	 *                and not INFINITE</li>
+	 *                </ul>
+	 */
+	protected Animation(final Control control, final int duration) {
+		if (control == null) {
+			SWT.error(SWT.ERROR_NULL_ARGUMENT);
+		}
+		if (duration < 0 && duration != INFINITE) {
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+		}
+		this.control = control;
+		this.duration = duration;
+	}
+
+	/**
+	 * Update the animated state. This method is called once per frame
+	 * 
+	 * @param fraction eased fraction of the duration, between 0 and 1 (always 0
+	 *            for an infinite animation)
+	 */
+	protected abstract void update(float fraction);
+
+	/**
+	 * Method called when the animation reaches its end. It is not called when
+	 * the animation is cancelled, or when its control is disposed. The
+	 * animation can not be scheduled again from this method
+	 */
+	protected void finished() {
+	}
+
+	/**
+	 * Easing of the animation. The default easing accelerates then slows down
+	 * 
+	 * @param fraction linear fraction of the duration, between 0 and 1
+	 * @return the eased fraction
+	 */
+	protected float ease(final float fraction) {
+		return fraction * fraction * (3 - 2 * fraction);
+	}
+
+	/**
+	 * Ask the scheduler to redraw the control at the end of the current frame.
+	 * Several requests for the same control are merged
+	 */
+	protected void redraw() {
+		if (this.scheduler != null) {
+			this.scheduler.redraw(this.control);
+		}
+	}
+
+	/**
+	 * Stop this animation. The method {@link #finished()} is not called
+	 */
+	public void cancel() {
+		if (this.scheduler != null) {
+			this.scheduler.cancel(this);
+		}
+	}
+
+	/**
+	 * @return the control animated by this animation
+	 */
+	public Control getControl() {
+		return this.control;
+	}
+
+	/**
+	 * @return the duration of the animation in milliseconds, or
+	 *         {@link #INFINITE}
+	 */
+	public int getDuration() {
+		return this.duration;
+	}
+
+	/**
+	 * @return the time elapsed since the start of the animation, in
+	 *         milliseconds, without the time spent paused
+	 */
+	public long getElapsedTime() {
+		return Math.max(0, this.elapsedTime);
+	}
+
+	/**
+	 * @return <code>true</code> if the animation is scheduled
+	 */
+	public boolean isRunning() {
+		return this.scheduler != null;
+	}
+
+	/**
+	 * Called by the scheduler when the animation is scheduled
+	 * 
+	 * @param scheduler the scheduler
+	 * @param now current time in milliseconds
+	 * @param delay delay before the start of the animation, in milliseconds
+	 */
+	void start(final AnimationScheduler scheduler, final long now, final int delay) {
+		this.scheduler = scheduler;
+		this.elapsedTime = -delay;
+		this.lastTime = now;
+	}
+
+	/**
+	 * @return the time before the start of the animation, in milliseconds, or
+	 *         0 if the animation has started
+	 */
+	long getRemainingDelay() {
+		return Math.max(0, -this.elapsedTime);
+	}
+
+	/**
+	 * Called by the scheduler when its timer starts again after a pause: the
+	 * time spent paused is not counted
+	 * 
+	 * @param now current time in milliseconds
+	 */
+	void resume(final long now) {
+		this.lastTime = now;
+	}
+
+	/**
+	 * Called by the scheduler when the animation is removed
+	 */
+	void stop() {
+		this.scheduler = null;
+	}
+
+	/**
+	 * Advance the animation. Called by the scheduler once per frame
+	 * 
+	 * @param now current time in milliseconds
+	 * @param paused if <code>true</code>, the time does not advance
+	 * @return <code>true</code> if the animation has reached its end
+	 */
+	boolean advance(final long now, final boolean paused) {
+		if (!paused) {
+			this.elapsedTime += now - this.lastTime;
+		}
+		this.lastTime = now;
+		if (paused || this.elapsedTime < 0) {
+			return false;
+		}
+		if (this.duration == INFINITE) {
+			update(0f);
+			return false;
+		}
+		if (this.elapsedTime >= this.duration) {
+			update(ease(1f));
+			return true;
+		}
+		update(ease((float) this.elapsedTime / this.duration));
+		return false;
+	}
+
+}
@@ -0,0 +1,406 @@
+/*******************************************************************************
+ * Copyright (c) 2011 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - Initial implementation and API
+ *******************************************************************************/
+package org.mihalis.opal.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.SWTException;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Shell;
+
+/**
+ * Instances of this class drive the animations of a display. There is one
+ * scheduler per display, and a single timer for all the running animations:
+ * at each frame, all animations are updated, then each control that asked for
+ * a redraw is redrawn once. The timer is stopped when no animation is running.
+ * While all animations wait for their start, the timer is armed for the first
+ * start only, and while all animations are paused (their shells are
+ * minimized), the timer is stopped until one of these shells is restored.
+ * <br/>
+ * This class must be used from the UI thread.
+ */
+public class AnimationScheduler {
+
+	private static final String SCHEDULER_KEY = "org.mihalis.opal.utils.AnimationScheduler";
+	private static final int DEFAULT_FRAME_RATE = 60;
+
+	private final Display display;
+	private final List<Animation> animations;
+	private final List<Control> controlsToRedraw;
+	private final Runnable pulse;
+	private final Listener deiconifyListener;
+	private final List<Shell> minimizedShells;
+	private Animation[] frameAnimations;
+	private int frameInterval;
+	private boolean timerRunning;
+	private long nextFrameTime;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param display display of the animations
+	 */
+	private AnimationScheduler(final Display display) {
+		this.display = display;
+		this.animations = new ArrayList<Animation>();
+		this.controlsToRedraw = new ArrayList<Control>();
+		this.frameAnimations = new Animation[8];
+		this.frameInterval = 1000 / DEFAULT_FRAME_RATE;
+		this.pulse = new Runnable() {
+			@Override
+			public void run() {
+				AnimationScheduler.this.runFrame();
+			}
+		};
+		this.minimizedShells = new ArrayList<Shell>();
+		this.deiconifyListener = new Listener() {
+			@Override
+			public void handleEvent(final Event event) {
+				if (!AnimationScheduler.this.timerRunning && !AnimationScheduler.this.animations.isEmpty()) {
+					startTimer(AnimationScheduler.this.frameInterval);
+				}
+			}
+		};
+	}
+
+	/**
+	 * @param display display
+	 * @return the scheduler associated to this display, created on first use
+	 */
+	public static AnimationScheduler getInstance(final Display display) {
+		if (display == null) {
+			SWT.error(SWT.ERROR_NULL_ARGUMENT);
+		}
+		AnimationScheduler scheduler = (AnimationScheduler) display.getData(SCHEDULER_KEY);
+		if (scheduler == null) {
+			final AnimationScheduler newScheduler = new AnimationScheduler(display);
+			display.setData(SCHEDULER_KEY, newScheduler);
+			display.disposeExec(new Runnable() {
+				@Override
+				public void run() {
+					newScheduler.clear();
+				}
+			});
+			scheduler = newScheduler;
+		}
+		return scheduler;
+	}
+
+	/**
+	 * Start an animation
+	 * 
+	 * @param animation animation to start
+	 */
+	public void schedule(final Animation animation) {
+		schedule(animation, 0);
+	}
+
+	/**
+	 * Start an animation after a delay
+	 * 
+	 * @param animation animation to start
+	 * @param delay delay in milliseconds
+	 * @exception IllegalArgumentException <ul>
+	 *                <li>ERROR_NULL_ARGUMENT - if the animation is null</li>
+	 *                <li>ERROR_INVALID_ARGUMENT - if the animation is already
+	 *                running, or if the delay is negative</li>
+	 *                </ul>
+	 * @exception SWTException <ul>
+	 *                <li>ERROR_THREAD_INVALID_ACCESS - if not called from the
+	 *                UI thread</li>
+	 *                </ul>
+	 */
+	public void schedule(final Animation animation, final int delay) {
+		checkThread();
+		if (animation == null) {
+			SWT.error(SWT.ERROR_NULL_ARGUMENT);
+		}
+		if (animation.isRunning() || delay < 0) {
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+		}
+		if (animation.getControl().isDisposed()) {
+			return;
+		}
+		animation.start(this, now(), delay);
+		this.animations.add(animation);
+		final int firstFrame = delay > 0 ? delay : this.frameInterval;
+		if (!this.timerRunning || now() + firstFrame < this.nextFrameTime) {
+			startTimer(firstFrame);
+		}
+	}
+
+	/**
+	 * Stop an animation. The method {@link Animation#finished()} is not called
+	 * 
+	 * @param animation animation to stop
+	 */
+	public void cancel(final Animation animation) {
+		checkThread();
+		if (this.animations.remove(animation)) {
+			animation.stop();
+		}
+	}
+
+	/**
+	 * Stop all animations of a control
+	 * 
+	 * @param control the control
+	 */
+	public void cancel(final Control control) {
+		checkThread();
+		for (final Animation animation : new ArrayList<Animation>(this.animations)) {
+			if (animation.getControl() == control) {
+				cancel(animation);
+			}
+		}
+	}
+
+	/**
+	 * @param control a control
+	 * @return <code>true</code> if an animation of this control is running
+	 */
+	public boolean isAnimated(final Control control) {
+		for (final Animation animation : this.animations) {
+			if (animation.getControl() == control) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the number of running animations
+	 */
+	public int getAnimationCount() {
+		return this.animations.size();
+	}
+
+	/**
+	 * @return the maximum number of frames per second
+	 */
+	public int getFrameRate() {
+		return 1000 / this.frameInterval;
+	}
+
+	/**
+	 * @param frameRate the maximum number of frames per second (default 60)
+	 * @exception IllegalArgumentException <ul>
+	 *                <li>ERROR_INVALID_ARGUMENT - if the frame rate is not
+	 *                between 1 and 1000</li>
+	 *                </ul>
+	 */
+	public void setFrameRate(final int frameRate) {
+		if (frameRate < 1 || frameRate > 1000) {
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+		}
+		this.frameInterval = 1000 / frameRate;
+	}
+
+	/**
+	 * Ask for the redraw of a control at the end of the current frame
+	 * 
+	 * @param control control to redraw
+	 */
+	void redraw(final Control control) {
+		if (!this.controlsToRedraw.contains(control)) {
+			this.controlsToRedraw.add(control);
+		}
+	}
+
+	/**
+	 * Compute a frame: update all animations, then redraw the controls. The
+	 * animations of the frame are copied into a reused array, so a frame does
+	 * not allocate anything
+	 */
+	private void runFrame() {
+		final long start = now();
+		final int count = this.animations.size();
+		if (this.frameAnimations.length < count) {
+			this.frameAnimations = new Animation[Math.max(count, 2 * this.frameAnimations.length)];
+		}
+		for (int i = 0; i < count; i++) {
+			this.frameAnimations[i] = this.animations.get(i);
+		}
+		for (int i = 0; i < count; i++) {
+			final Animation animation = this.frameAnimations[i];
+			this.frameAnimations[i] = null;
+			if (!animation.isRunning()) {
+				// Cancelled by another animation of this frame
+				continue;
+			}
+			final Control control = animation.getControl();
+			if (control.isDisposed()) {
+				cancel(animation);
+				continue;
+			}
+			if (animation.advance(start, getMinimizedShell(control) != null) && animation.isRunning()) {
+				this.animations.remove(animation);
+				animation.finished();
+				animation.stop();
+			}
+		}
+
+		for (int i = 0; i < this.controlsToRedraw.size(); i++) {
+			final Control control = this.controlsToRedraw.get(i);
+			if (!control.isDisposed()) {
+				control.redraw();
+			}
+		}
+		this.controlsToRedraw.clear();
+
+		if (this.animations.isEmpty() || this.display.isDisposed()) {
+			this.timerRunning = false;
+			return;
+		}
+		final long delay = getNextFrameDelay();
+		if (delay < 0) {
+			// All animations are paused
+			this.timerRunning = false;
+			watchMinimizedShells();
+			return;
+		}
+		final long elapsed = now() - start;
+		armTimer((int) Math.max(1, delay - elapsed));
+	}
+
+	/**
+	 * @return the delay before the next frame: the frame interval if an
+	 *         animation has started, the time before the first start if all
+	 *         animations wait for their start, or -1 if all animations are
+	 *         paused
+	 */
+	private long getNextFrameDelay() {
+		long delay = -1;
+		for (int i = 0; i < this.animations.size(); i++) {
+			final Animation animation = this.animations.get(i);
+			final Control control = animation.getControl();
+			if (control.isDisposed()) {
+				// Removed at the next frame
+				return this.frameInterval;
+			}
+			if (getMinimizedShell(control) != null) {
+				continue;
+			}
+			final long remaining = animation.getRemainingDelay();
+			final long animationDelay = remaining > 0 ? remaining : this.frameInterval;
+			delay = delay < 0 ? animationDelay : Math.min(delay, animationDelay);
+		}
+		return delay;
+	}
+
+	/**
+	 * Start the timer after a stop. The time spent while the timer was stopped
+	 * is not counted by the paused animations
+	 * 
+	 * @param delay delay before the next frame, in milliseconds
+	 */
+	private void startTimer(final int delay) {
+		if (!this.timerRunning) {
+			final long now = now();
+			for (int i = 0; i < this.animations.size(); i++) {
+				this.animations.get(i).resume(now);
+			}
+			unwatchMinimizedShells();
+			this.timerRunning = true;
+		}
+		armTimer(delay);
+	}
+
+	/**
+	 * Arm the timer. A timer already armed is moved
+	 * 
+	 * @param delay delay before the next frame, in milliseconds
+	 */
+	private void armTimer(final int delay) {
+		this.nextFrameTime = now() + delay;
+		this.display.timerExec(delay, this.pulse);
+	}
+
+	/**
+	 * Listen to the shells that pause the animations, to start the timer
+	 * again when one of them is restored
+	 */
+	private void watchMinimizedShells() {
+		for (int i = 0; i < this.animations.size(); i++) {
+			final Shell shell = getMinimizedShell(this.animations.get(i).getControl());
+			if (shell != null && !this.minimizedShells.contains(shell)) {
+				shell.addListener(SWT.Deiconify, this.deiconifyListener);
+				this.minimizedShells.add(shell);
+			}
+		}
+	}
+
+	/**
+	 * Stop listening to the shells that paused the animations
+	 */
+	private void unwatchMinimizedShells() {
+		for (int i = 0; i < this.minimizedShells.size(); i++) {
+			final Shell shell = this.minimizedShells.get(i);
+			if (!shell.isDisposed()) {
+				shell.removeListener(SWT.Deiconify, this.deiconifyListener);
+			}
+		}
+		this.minimizedShells.clear();
+	}
+
+	/**
+	 * @param control a control
+	 * @return the shell of the control (or one of its parent shells) that is
+	 *         minimized, or null if the animations of the control are not
+	 *         paused
+	 */
+	private static Shell getMinimizedShell(final Control control) {
+		Shell shell = control.getShell();
+		while (shell != null) {
+			if (shell.getMinimized()) {
+				return shell;
+			}
+			final Composite parent = shell.getParent();
+			shell = parent == null ? null : parent.getShell();
+		}
+		return null;
+	}
+
+	/**
+	 * Stop all animations
+	 */
+	private void clear() {
+		for (final Animation animation : this.animations) {
+			animation.stop();
+		}
+		this.animations.clear();
+		this.controlsToRedraw.clear();
+		this.minimizedShells.clear();
+	}
+
+	/**
+	 * Check that the caller is the UI thread
+	 */
+	private void checkThread() {
+		if (this.display.getThread() != Thread.currentThread()) {
+			SWT.error(SWT.ERROR_THREAD_INVALID_ACCESS);
+		}
+	}
+
+	/**
+	 * @return the current time in milliseconds
+	 */
+	private static long now() {
+		return System.nanoTime() / 1000000L;
+	}
+
+}
@@ -0,0 +1,341 @@
+/*******************************************************************************
+ * Copyright (c) 2011 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - Initial implementation and API
+ *******************************************************************************/
+package org.mihalis.opal.utils;
+
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.PaletteData;
+import org.eclipse.swt.graphics.RGB;
+
+/**
+ * This class blurs images with a box filter. The filter is separable: each row
+ * is averaged horizontally, then the averaged rows are summed vertically with
+ * running sums, so the cost does not depend on the radius.<br/>
+ * Pixels are handled as packed integers (red in bits 0-7, green in bits 8-15,
+ * blue in bits 16-23): no object is created per pixel. The data of 24 and 32
+ * bits images with a direct palette are read and written directly.
+ * <p>
+ * One pass gives exactly the result of the average blur described in
+ * http://www.eclipse.org/articles/article.php?file=Article-
+ * SimpleImageEffectsForSWT/index.html. Several passes give an approximation
+ * of a gaussian blur.
+ * </p>
+ * Large images are split in bands of rows blurred in parallel, see
+ * {@link RowBandExecutor}.
+ */
+public class BoxBlur {
+
+	private final int width;
+	private final int radius;
+	private final int window;
+	private final int[] pixels;
+	private final int[] rows;
+	private final int[] redSums;
+	private final int[] greenSums;
+	private final int[] blueSums;
+	private final int[] quotients;
+	private int[] paletteColors;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param width width of the images to blur
+	 * @param height height of the images to blur
+	 * @param radius radius of the blur
+	 */
+	private BoxBlur(final int width, final int height, final int radius) {
+		this.width = width;
+		this.radius = radius;
+		this.window = Math.min(height, 2 * radius + 1);
+		this.pixels = new int[width];
+		this.rows = new int[this.window * width];
+		this.redSums = new int[width];
+		this.greenSums = new int[width];
+		this.blueSums = new int[width];
+		// Most windows are full: their averages are read in a table instead
+		// of being divided
+		final int full = 2 * radius + 1;
+		this.quotients = new int[255 * full + 1];
+		for (int i = 0; i < this.quotients.length; i++) {
+			this.quotients[i] = i / full;
+		}
+	}
+
+	/**
+	 * @param sum sum of the values of a window
+	 * @param count number of values in the window
+	 * @return the average of the window
+	 */
+	private int average(final int sum, final int count) {
+		return count == 2 * this.radius + 1 ? this.quotients[sum] : sum / count;
+	}
+
+	/**
+	 * Blur an image
+	 * 
+	 * @param source image data to blur. Transparency information will be
+	 *            ignored.
+	 * @param radius the number of radius pixels to consider when blurring
+	 * @return a blurred copy of the image data, with a 24-bit direct palette,
+	 *         or the image data itself if radius is lower than 1
+	 */
+	public static ImageData blur(final ImageData source, final int radius) {
+		return blur(source, radius, 1);
+	}
+
+	/**
+	 * Blur an image several times. Three passes give a good approximation of
+	 * a gaussian blur
+	 * 
+	 * @param source image data to blur. Transparency information will be
+	 *            ignored.
+	 * @param radius the number of radius pixels to consider when blurring
+	 * @param passes number of passes
+	 * @return a blurred copy of the image data, with a 24-bit direct palette,
+	 *         or the image data itself if radius or passes is lower than 1
+	 */
+	public static ImageData blur(final ImageData source, int radius, final int passes) {
+		if (radius < 1 || passes < 1) {
+			return source;
+		}
+		final ImageData target = createTarget(source);
+		if (radius >= source.height || radius >= source.width) {
+			radius = Math.min(source.height, source.width) - 1;
+		}
+		if (RowBandExecutor.getNumberOfBands(source.width, source.height) > 1) {
+			return blurInBands(source, target, radius, passes);
+		}
+		final BoxBlur blur = new BoxBlur(source.width, source.height, radius);
+		blur.apply(source, target, 0, source.height);
+		for (int i = 1; i < passes; i++) {
+			// A row is written once all rows of its window have been read, so
+			// the next passes can work in place
+			blur.apply(target, target, 0, source.height);
+		}
+		return target;
+	}
+
+	/**
+	 * Blur a large image, by bands of rows processed in parallel. A band reads
+	 * the rows of its neighbours, so the passes can not work in place: they
+	 * alternate between two image data
+	 * 
+	 * @param source image data to blur
+	 * @param target image data that receives the result of the first pass
+	 * @param radius radius of the blur
+	 * @param passes number of passes
+	 * @return the image data that contains the result of the last pass
+	 */
+	private static ImageData blurInBands(final ImageData source, final ImageData target, final int radius, final int passes) {
+		final ImageData spare = passes > 1 ? createTarget(source) : null;
+		ImageData from = source;
+		ImageData to = target;
+		for (int i = 0; i < passes; i++) {
+			final ImageData in = from;
+			final ImageData out = to;
+			RowBandExecutor.execute(source.width, source.height, new RowBandExecutor.RowBandTask() {
+				@Override
+				public void process(final int startRow, final int endRow) {
+					new BoxBlur(source.width, source.height, radius).apply(in, out, startRow, endRow);
+				}
+			});
+			from = out;
+			to = out == target ? spare : target;
+		}
+		return from;
+	}
+
+	/**
+	 * @param source image data to blur
+	 * @return a 24-bit image data of the same size, that receives the blurred
+	 *         pixels
+	 */
+	private static ImageData createTarget(final ImageData source) {
+		return new ImageData(source.width, source.height, 24, new PaletteData(0xFF, 0xFF00, 0xFF0000));
+	}
+
+	/**
+	 * Blur rows of an image
+	 * 
+	 * @param source image data to blur
+	 * @param target 24-bit image data with a direct palette (0xFF, 0xFF00,
+	 *            0xFF0000) that receives the blurred rows. It may be the source
+	 *            itself
+	 * @param startRow first row to write
+	 * @param endRow last row to write (exclusive)
+	 */
+	private void apply(final ImageData source, final ImageData target, final int startRow, final int endRow) {
+		preparePalette(source.palette);
+		for (int col = 0; col < this.width; col++) {
+			this.redSums[col] = 0;
+			this.greenSums[col] = 0;
+			this.blueSums[col] = 0;
+		}
+		int top = Math.max(0, startRow - this.radius);
+		int bottom = top;
+		for (int row = startRow; row < endRow; row++) {
+			// remove the rows that are out of the window
+			while (top < row - this.radius) {
+				subtractRow(top);
+				top++;
+			}
+			// add the rows that enter the window
+			while (bottom < source.height && bottom <= row + this.radius) {
+				readRow(source, bottom);
+				blurRow((bottom % this.window) * this.width);
+				addRow(bottom);
+				bottom++;
+			}
+			writeRow(target, row, bottom - top);
+		}
+	}
+
+	/**
+	 * Compute the packed colors of an indexed palette
+	 * 
+	 * @param palette palette of the source
+	 */
+	private void preparePalette(final PaletteData palette) {
+		if (palette.isDirect) {
+			this.paletteColors = null;
+			return;
+		}
+		final RGB[] colors = palette.colors;
+		this.paletteColors = new int[colors.length];
+		for (int i = 0; i < colors.length; i++) {
+			this.paletteColors[i] = colors[i].red | colors[i].green << 8 | colors[i].blue << 16;
+		}
+	}
+
+	/**
+	 * Read a row of the source as packed pixels
+	 * 
+	 * @param source source image data
+	 * @param row index of the row
+	 */
+	private void readRow(final ImageData source, final int row) {
+		final PaletteData palette = source.palette;
+		if (palette.isDirect && (source.depth == 24 || source.depth == 32)) {
+			final byte[] data = source.data;
+			final int bytesPerPixel = source.depth / 8;
+			int index = row * source.bytesPerLine;
+			for (int col = 0; col < this.width; col++) {
+				int pixel = 0;
+				for (int i = 0; i < bytesPerPixel; i++) {
+					pixel = pixel << 8 | data[index++] & 0xFF;
+				}
+				this.pixels[col] = pack(palette, pixel);
+			}
+			return;
+		}
+		source.getPixels(0, row, this.width, this.pixels, 0);
+		for (int col = 0; col < this.width; col++) {
+			this.pixels[col] = palette.isDirect ? pack(palette, this.pixels[col]) : this.paletteColors[this.pixels[col]];
+		}
+	}
+
+	/**
+	 * @param palette direct palette
+	 * @param pixel pixel value
+	 * @return the packed color of this pixel
+	 */
+	private static int pack(final PaletteData palette, final int pixel) {
+		return component(pixel & palette.redMask, palette.redShift) | //
+				component(pixel & palette.greenMask, palette.greenShift) << 8 | //
+				component(pixel & palette.blueMask, palette.blueShift) << 16;
+	}
+
+	/**
+	 * @param value masked value of a component
+	 * @param shift shift of the component in the palette
+	 * @return the value of the component, between 0 and 255
+	 */
+	private static int component(final int value, final int shift) {
+		return (shift < 0 ? value >>> -shift : value << shift) & 0xFF;
+	}
+
+	/**
+	 * Average the pixels that have been read horizontally, and store the
+	 * result in the cache of rows
+	 * 
+	 * @param offset offset of the row in the cache
+	 */
+	private void blurRow(final int offset) {
+		int r = 0, g = 0, b = 0;
+		int left = 0;
+		int right = 0;
+		for (int col = 0; col < this.width; col++) {
+			// add the pixels that enter the window
+			while (right < this.width && right <= col + this.radius) {
+				final int pixel = this.pixels[right++];
+				r += pixel & 0xFF;
+				g += pixel >> 8 & 0xFF;
+				b += pixel >> 16 & 0xFF;
+			}
+			// remove the pixel that is out of the window
+			if (left < col - this.radius) {
+				final int pixel = this.pixels[left++];
+				r -= pixel & 0xFF;
+				g -= pixel >> 8 & 0xFF;
+				b -= pixel >> 16 & 0xFF;
+			}
+			final int count = right - left;
+			this.rows[offset + col] = average(r, count) | average(g, count) << 8 | average(b, count) << 16;
+		}
+	}
+
+	/**
+	 * Add a cached row to the vertical sums
+	 * 
+	 * @param row index of the row
+	 */
+	private void addRow(final int row) {
+		final int offset = (row % this.window) * this.width;
+		for (int col = 0; col < this.width; col++) {
+			final int pixel = this.rows[offset + col];
+			this.redSums[col] += pixel & 0xFF;
+			this.greenSums[col] += pixel >> 8 & 0xFF;
+			this.blueSums[col] += pixel >> 16 & 0xFF;
+		}
+	}
+
+	/**
+	 * Subtract a cached row from the vertical sums
+	 * 
+	 * @param row index of the row
+	 */
+	private void subtractRow(final int row) {
+		final int offset = (row % this.window) * this.width;
+		for (int col = 0; col < this.width; col++) {
+			final int pixel = this.rows[offset + col];
+			this.redSums[col] -= pixel & 0xFF;
+			this.greenSums[col] -= pixel >> 8 & 0xFF;
+			this.blueSums[col] -= pixel >> 16 & 0xFF;
+		}
+	}
+
+	/**
+	 * Write the vertical averages in a row of the target
+	 * 
+	 * @param target target image data
+	 * @param row index of the row
+	 * @param count number of rows in the window
+	 */
+	private void writeRow(final ImageData target, final int row, final int count) {
+		final byte[] data = target.data;
+		int index = row * target.bytesPerLine;
+		for (int col = 0; col < this.width; col++) {
+			data[index++] = (byte) average(this.blueSums[col], count);
+			data[index++] = (byte) average(this.greenSums[col], count);
+			data[index++] = (byte) average(this.redSums[col], count);
+		}
+	}
+
+}
@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright (c) 2011 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - initial API and implementation
+ *******************************************************************************/
+package org.mihalis.opal.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Instances of this class are circular buffers of primitive doubles.<br/>
+ * When the buffer is full, the oldest element is overwritten. Appending an
+ * element is done in constant time and reading the content through
+ * {@link #get(int)} does not allocate anything.
+ */
+public class DoubleRingBuffer {
+	private double[] buffer;
+	private int head;
+	private int size;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param capacity initial capacity
+	 */
+	public DoubleRingBuffer(final int capacity) {
+		this.buffer = new double[Math.max(1, capacity)];
+		this.head = 0;
+		this.size = 0;
+	}
+
+	/**
+	 * Store an element in the buffer
+	 * 
+	 * @param element element to store
+	 */
+	public void put(final double element) {
+		this.buffer[this.head] = element;
+		this.head = (this.head + 1) % this.buffer.length;
+		if (this.size < this.buffer.length) {
+			this.size++;
+		}
+	}
+
+	/**
+	 * @param index index of the element, 0 being the oldest stored element and
+	 *            <code>getSize() - 1</code> the newest one
+	 * @return the element stored at this index
+	 */
+	public double get(final int index) {
+		if (index < 0 || index >= this.size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+		}
+		int position = this.head - this.size + index;
+		if (position < 0) {
+			position += this.buffer.length;
+		}
+		return this.buffer[position];
+	}
+
+	/**
+	 * @return the newest element stored in this buffer
+	 */
+	public double getLast() {
+		return get(this.size - 1);
+	}
+
+	/**
+	 * @return number of elements stored in the buffer
+	 */
+	public int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * @return capacity of the buffer
+	 */
+	public int getCapacity() {
+		return this.buffer.length;
+	}
+
+	/**
+	 * Remove all elements
+	 */
+	public void clear() {
+		this.head = 0;
+		this.size = 0;
+	}
+
+	/**
+	 * @param newSize new capacity of the buffer. If newSize is lower than the
+	 *            actual size, the buffer will contain the last elements that
+	 *            have been stored
+	 */
+	public void resizeTo(int newSize) {
+		if (newSize <= 0) {
+			newSize = 1;
+		}
+		if (newSize == this.buffer.length) {
+			return;
+		}
+		final double[] resizedBuffer = new double[newSize];
+		final int kept = Math.min(this.size, newSize);
+		for (int i = 0; i < kept; i++) {
+			resizedBuffer[i] = get(this.size - kept + i);
+		}
+		this.buffer = resizedBuffer;
+		this.size = kept;
+		this.head = kept % newSize;
+	}
+
+	/**
+	 * @return a copy of all values stored in this buffer, from the oldest to
+	 *         the newest
+	 */
+	public List<Double> getValues() {
+		final List<Double> list = new ArrayList<Double>(this.size);
+		for (int i = 0; i < this.size; i++) {
+			list.add(get(i));
+		}
+		return list;
+	}
+
+	/**
+	 * Test method
+	 * 
+	 * @param args
+	 */
+	public static void main(final String[] args) {
+		final DoubleRingBuffer buffer = new DoubleRingBuffer(5);
+		System.out.println("Filling...");
+		for (int i = 0; i < 10; i++) {
+			buffer.put(i);
+			System.out.println("i=" + i + ", size=" + buffer.getSize() + ", values=" + buffer.getValues());
+		}
+		System.out.println("Resize to 10...");
+		buffer.resizeTo(10);
+		System.out.println("size=" + buffer.getSize() + ", values=" + buffer.getValues());
+		buffer.put(10);
+		System.out.println("size=" + buffer.getSize() + ", values=" + buffer.getValues());
+
+		System.out.println("Resize to 3...");
+		buffer.resizeTo(3);
+		System.out.println("size=" + buffer.getSize() + ", values=" + buffer.getValues());
+		buffer.put(11);
+		System.out.println("size=" + buffer.getSize() + ", values=" + buffer.getValues());
+
+		System.out.println("Resize to 5...");
+		buffer.resizeTo(5);
+		buffer.put(12);
+		buffer.put(13);
+		buffer.put(14);
+		System.out.println("size=" + buffer.getSize() + ", values=" + buffer.getValues());
+		System.out.println("Resize to 3...");
+		buffer.resizeTo(3);
+		System.out.println("size=" + buffer.getSize() + ", values=" + buffer.getValues());
+	}
+
+}
@@ -0,0 +1,343 @@
+/*******************************************************************************
+ * Copyright (c) 2011 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - Initial implementation and API
+ *******************************************************************************/
+package org.mihalis.opal.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.SWTException;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * Instances of this class are caches of images derived from a source image
+ * (resized, reflected...). There is one cache per display.<br/>
+ * The derived images are computed from a {@link Mipmap} of the source, kept in
+ * the cache as well, so a new size costs a resize from the nearest larger
+ * level instead of a resize of the whole source.<br/>
+ * The cache is bounded by a budget in bytes: when it is exceeded, the least
+ * recently used images are disposed. All images are disposed when the display
+ * is disposed.<br/>
+ * The images returned by the cache belong to the cache: they must not be
+ * disposed by the caller, and they should be drawn at once rather than kept.
+ * This class must be used from the UI thread.
+ */
+public class ImageCache {
+
+	/**
+	 * Default budget, in bytes
+	 */
+	public static final long DEFAULT_BUDGET = 32 * 1024 * 1024;
+
+	private static final String CACHE_KEY = "org.mihalis.opal.utils.ImageCache";
+	private static final int RESIZED = 0;
+	private static final int REFLECTED_RESIZED = 1;
+	private static final int MIPMAP = 2;
+
+	private final Map<Key, Object> entries;
+	private final Key probe;
+	private long budget;
+	private long size;
+
+	/**
+	 * Constructor
+	 */
+	private ImageCache() {
+		this.entries = new LinkedHashMap<Key, Object>(16, 0.75f, true);
+		this.probe = new Key(null, 0, 0, 0);
+		this.budget = DEFAULT_BUDGET;
+	}
+
+	/**
+	 * @param display display
+	 * @return the cache associated to this display, created on first use
+	 */
+	public static ImageCache getInstance(final Display display) {
+		if (display == null) {
+			SWT.error(SWT.ERROR_NULL_ARGUMENT);
+		}
+		ImageCache cache = (ImageCache) display.getData(CACHE_KEY);
+		if (cache == null) {
+			final ImageCache newCache = new ImageCache();
+			display.setData(CACHE_KEY, newCache);
+			display.disposeExec(new Runnable() {
+				@Override
+				public void run() {
+					newCache.clear();
+				}
+			});
+			cache = newCache;
+		}
+		return cache;
+	}
+
+	/**
+	 * @param source source image
+	 * @param width width of the resized image
+	 * @param height height of the resized image
+	 * @return the resized image, from the cache if possible
+	 * @see SWTGraphicUtil#resize(Image, int, int)
+	 */
+	public Image getResizedImage(final Image source, final int width, final int height) {
+		return get(source, width, height, RESIZED);
+	}
+
+	/**
+	 * @param source source image
+	 * @param width width of the resized image
+	 * @param height height of the resized image, without the reflection
+	 * @return the resized and reflected image, from the cache if possible
+	 * @see SWTGraphicUtil#createReflectedResizedImage(Image, int, int)
+	 */
+	public Image getReflectedResizedImage(final Image source, final int width, final int height) {
+		return get(source, width, height, REFLECTED_RESIZED);
+	}
+
+	/**
+	 * @param source source image
+	 * @return the mipmap of the source, from the cache if possible
+	 * @exception SWTException <ul>
+	 *                <li>ERROR_WIDGET_DISPOSED - if the mipmap has to be
+	 *                created and the source is disposed</li>
+	 *                </ul>
+	 */
+	public Mipmap getMipmap(final Image source) {
+		if (source == null) {
+			return null;
+		}
+		Mipmap mipmap = (Mipmap) lookup(source, 0, 0, MIPMAP);
+		if (mipmap == null) {
+			if (source.isDisposed()) {
+				SWT.error(SWT.ERROR_WIDGET_DISPOSED);
+			}
+			mipmap = new Mipmap(source.getImageData());
+			put(new Key(source, 0, 0, MIPMAP), mipmap);
+		}
+		return mipmap;
+	}
+
+	/**
+	 * Find an image in the cache, or create it from the mipmap of its source.
+	 * A hit does not allocate anything, so the cache can be used at each
+	 * frame of an animation
+	 * 
+	 * @param source source image
+	 * @param width width of the derived image
+	 * @param height height of the derived image
+	 * @param kind kind of the derived image
+	 * @return the image
+	 */
+	private Image get(final Image source, final int width, final int height, final int kind) {
+		if (source == null) {
+			return null;
+		}
+		Image image = (Image) lookup(source, width, height, kind);
+		if (image != null && !image.isDisposed()) {
+			return image;
+		}
+
+		final ImageFilterChain chain = new ImageFilterChain().resize(width, height);
+		if (kind == REFLECTED_RESIZED) {
+			chain.reflect();
+		}
+		image = chain.createImage(source.getDevice(), getMipmap(source));
+		put(new Key(source, width, height, kind), image);
+		return image;
+	}
+
+	/**
+	 * Find an entry with the probe key, without creating a key
+	 * 
+	 * @param source source image
+	 * @param width width of the derived image
+	 * @param height height of the derived image
+	 * @param kind kind of the derived image
+	 * @return the image or mipmap of the entry, or null
+	 */
+	private Object lookup(final Image source, final int width, final int height, final int kind) {
+		this.probe.set(source, width, height, kind);
+		final Object value = this.entries.get(this.probe);
+		// The probe must not retain the source
+		this.probe.set(null, 0, 0, 0);
+		return value;
+	}
+
+	/**
+	 * Add an entry to the cache, and evict the oldest entries if needed
+	 * 
+	 * @param key key of the entry
+	 * @param value image or mipmap
+	 */
+	private void put(final Key key, final Object value) {
+		final Object previous = this.entries.put(key, value);
+		if (previous != null) {
+			this.size -= getSize(key, previous);
+		}
+		this.size += getSize(key, value);
+		evict();
+	}
+
+	/**
+	 * @param key key of an entry
+	 * @param value image or mipmap of the entry
+	 * @return the number of bytes used by the entry, approximately
+	 */
+	private static long getSize(final Key key, final Object value) {
+		return value instanceof Mipmap ? ((Mipmap) value).getSize() : key.getSize();
+	}
+
+	/**
+	 * Remove the least recently used entries until the cache fits in its
+	 * budget. The most recent entry is always kept
+	 */
+	private void evict() {
+		final Iterator<Map.Entry<Key, Object>> iterator = this.entries.entrySet().iterator();
+		while (this.size > this.budget && this.entries.size() > 1 && iterator.hasNext()) {
+			final Map.Entry<Key, Object> entry = iterator.next();
+			iterator.remove();
+			this.size -= getSize(entry.getKey(), entry.getValue());
+			dispose(entry.getValue());
+		}
+	}
+
+	/**
+	 * Dispose the value of an entry if it is an image
+	 * 
+	 * @param value image or mipmap
+	 */
+	private static void dispose(final Object value) {
+		if (value instanceof Image) {
+			((Image) value).dispose();
+		}
+	}
+
+	/**
+	 * Dispose all images created from a source image and forget its mipmap,
+	 * for instance when the source is disposed
+	 * 
+	 * @param source source image
+	 */
+	public void remove(final Image source) {
+		final Iterator<Map.Entry<Key, Object>> iterator = this.entries.entrySet().iterator();
+		while (iterator.hasNext()) {
+			final Map.Entry<Key, Object> entry = iterator.next();
+			if (entry.getKey().source == source) {
+				iterator.remove();
+				this.size -= getSize(entry.getKey(), entry.getValue());
+				dispose(entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Dispose all images of the cache
+	 */
+	public void clear() {
+		for (final Object value : this.entries.values()) {
+			dispose(value);
+		}
+		this.entries.clear();
+		this.size = 0;
+	}
+
+	/**
+	 * @return the budget of the cache, in bytes
+	 */
+	public long getBudget() {
+		return this.budget;
+	}
+
+	/**
+	 * @param budget the budget of the cache, in bytes
+	 */
+	public void setBudget(final long budget) {
+		this.budget = Math.max(0, budget);
+		evict();
+	}
+
+	/**
+	 * @return the number of bytes used by the images and mipmaps of the cache,
+	 *         approximately
+	 */
+	public long getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Key of an image of the cache. Source images are compared by identity.
+	 * The keys stored in the map are never modified, only the probe key is
+	 */
+	private static class Key {
+		private Image source;
+		private int width;
+		private int height;
+		private int kind;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param source source image
+		 * @param width width of the derived image
+		 * @param height height of the derived image
+		 * @param kind kind of the derived image
+		 */
+		Key(final Image source, final int width, final int height, final int kind) {
+			set(source, width, height, kind);
+		}
+
+		/**
+		 * Change the key (only used for the probe key)
+		 * 
+		 * @param source source image
+		 * @param width width of the derived image
+		 * @param height height of the derived image
+		 * @param kind kind of the derived image
+		 */
+		void set(final Image source, final int width, final int height, final int kind) {
+			this.source = source;
+			this.width = width;
+			this.height = height;
+			this.kind = kind;
+		}
+
+		/**
+		 * @return the number of bytes used by the derived image,
+		 *         approximately
+		 */
+		long getSize() {
+			final int imageHeight = this.kind == REFLECTED_RESIZED ? (int) (this.height * 1.5) : this.height;
+			return 4L * this.width * imageHeight;
+		}
+
+		/**
+		 * @see java.lang.Object#hashCode()
+		 */
+		@Override
+		public int hashCode() {
+			return ((System.identityHashCode(this.source) * 31 + this.width) * 31 + this.height) * 31 + this.kind;
+		}
+
+		/**
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			final Key other = (Key) obj;
+			return this.source == other.source && this.width == other.width && this.height == other.height && this.kind == other.kind;
+		}
+	}
+
+}
@@ -0,0 +1,686 @@
+/*******************************************************************************
+ * Copyright (c) 2011 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - Initial implementation and API
+ *******************************************************************************/
+package org.mihalis.opal.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.SWTException;
+import org.eclipse.swt.graphics.Device;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.PaletteData;
+import org.eclipse.swt.graphics.RGB;
+
+/**
+ * Instances of this class are chains of filters applied to images. The
+ * filters are declared once, then the chain can be applied to any number of
+ * images:
+ * 
+ * <pre>
+ * final ImageFilterChain chain = new ImageFilterChain().resize(64, 64).reflect();
+ * final Image thumbnail = chain.createImage(source);
+ * </pre>
+ * 
+ * The source is read once into a buffer of ARGB pixels, all filters work on
+ * this buffer, and a single image is created at the end: no native image or
+ * GC is used in between. The buffers are kept and reused by the next
+ * applications of the chain. When the chain is applied to a {@link Mipmap}
+ * and starts with a resize, the resize starts from the nearest larger level
+ * of the mipmap.<br/>
+ * A chain must not be used by several threads at the same time. The images
+ * must be created on the UI thread, but {@link #apply(ImageData)} can be
+ * called from any thread.
+ */
+public class ImageFilterChain {
+
+	private static final PaletteData PALETTE = new PaletteData(0xFF0000, 0xFF00, 0xFF);
+
+	private final List<Filter> filters;
+	private int[] pixels;
+	private int[] buffer;
+	private int width;
+	private int height;
+	private int initialWidth;
+	private int initialHeight;
+
+	/**
+	 * A filter of the chain
+	 */
+	private interface Filter {
+		/**
+		 * Apply the filter to the pixels of the chain
+		 */
+		void apply();
+	}
+
+	/**
+	 * Constructor
+	 */
+	public ImageFilterChain() {
+		this.filters = new ArrayList<Filter>();
+		this.pixels = new int[0];
+		this.buffer = new int[0];
+	}
+
+	/**
+	 * Resize the image. Pixels are averaged when the image is reduced and
+	 * interpolated when it is enlarged
+	 * 
+	 * @param newWidth new width of the image
+	 * @param newHeight new height of the image
+	 * @return the chain
+	 * @exception IllegalArgumentException <ul>
+	 *                <li>ERROR_INVALID_ARGUMENT - if the width or the height is
+	 *                not positive</li>
+	 *                </ul>
+	 */
+	public ImageFilterChain resize(final int newWidth, final int newHeight) {
+		if (newWidth <= 0 || newHeight <= 0) {
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+		}
+		if (this.filters.isEmpty()) {
+			// Size used to choose the level of a mipmap
+			this.initialWidth = newWidth;
+			this.initialHeight = newHeight;
+		}
+		this.filters.add(new Filter() {
+			@Override
+			public void apply() {
+				applyResize(newWidth, newHeight);
+			}
+		});
+		return this;
+	}
+
+	/**
+	 * Add a reflection below the image. The reflection is half as high as the
+	 * image and fades out, like in
+	 * {@link SWTGraphicUtil#createReflectedImage(Image)}
+	 * 
+	 * @return the chain
+	 */
+	public ImageFilterChain reflect() {
+		this.filters.add(new Filter() {
+			@Override
+			public void apply() {
+				applyReflect();
+			}
+		});
+		return this;
+	}
+
+	/**
+	 * Multiply the alpha of the pixels by a vertical gradient
+	 * 
+	 * @param startAlpha alpha of the first row (0-255)
+	 * @param endAlpha alpha of the last row (0-255)
+	 * @return the chain
+	 * @exception IllegalArgumentException <ul>
+	 *                <li>ERROR_INVALID_ARGUMENT - if an alpha is not between 0
+	 *                and 255 inclusive</li>
+	 *                </ul>
+	 */
+	public ImageFilterChain alphaGradient(final int startAlpha, final int endAlpha) {
+		if (startAlpha < 0 || startAlpha > 255 || endAlpha < 0 || endAlpha > 255) {
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+		}
+		this.filters.add(new Filter() {
+			@Override
+			public void apply() {
+				applyAlphaGradient(startAlpha, endAlpha);
+			}
+		});
+		return this;
+	}
+
+	/**
+	 * Blur the image with a box filter
+	 * 
+	 * @param radius the number of radius pixels to consider when blurring
+	 * @return the chain
+	 * @see BoxBlur
+	 */
+	public ImageFilterChain blur(final int radius) {
+		return blur(radius, 1);
+	}
+
+	/**
+	 * Blur the image with a box filter several times. Three passes give a good
+	 * approximation of a gaussian blur
+	 * 
+	 * @param radius the number of radius pixels to consider when blurring
+	 * @param passes number of passes
+	 * @return the chain
+	 * @see BoxBlur
+	 */
+	public ImageFilterChain blur(final int radius, final int passes) {
+		this.filters.add(new Filter() {
+			@Override
+			public void apply() {
+				for (int i = 0; i < passes; i++) {
+					applyBlur(radius);
+				}
+			}
+		});
+		return this;
+	}
+
+	/**
+	 * Convert the image to shades of gray
+	 * 
+	 * @return the chain
+	 */
+	public ImageFilterChain grayscale() {
+		this.filters.add(new Filter() {
+			@Override
+			public void apply() {
+				applyGrayscale(false);
+			}
+		});
+		return this;
+	}
+
+	/**
+	 * Give the image a disabled look: light shades of gray with a low
+	 * contrast, close to the result of SWT.IMAGE_DISABLE
+	 * 
+	 * @return the chain
+	 */
+	public ImageFilterChain disabled() {
+		this.filters.add(new Filter() {
+			@Override
+			public void apply() {
+				applyGrayscale(true);
+			}
+		});
+		return this;
+	}
+
+	/**
+	 * Mix the colors of the image with a color
+	 * 
+	 * @param color the color
+	 * @param amount amount of the color, between 0 (no change) and 1 (all
+	 *            pixels have the color)
+	 * @return the chain
+	 * @exception IllegalArgumentException <ul>
+	 *                <li>ERROR_NULL_ARGUMENT - if the color is null</li>
+	 *                <li>ERROR_INVALID_ARGUMENT - if the amount is not between
+	 *                0 and 1 inclusive</li>
+	 *                </ul>
+	 */
+	public ImageFilterChain tint(final RGB color, final float amount) {
+		if (color == null) {
+			SWT.error(SWT.ERROR_NULL_ARGUMENT);
+		}
+		if (amount < 0f || amount > 1f) {
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+		}
+		final int factor = Math.round(amount * 256);
+		final int red = color.red;
+		final int green = color.green;
+		final int blue = color.blue;
+		this.filters.add(new Filter() {
+			@Override
+			public void apply() {
+				applyTint(red, green, blue, factor);
+			}
+		});
+		return this;
+	}
+
+	/**
+	 * Apply the filters to an image
+	 * 
+	 * @param source source image
+	 * @return a new image, created by the filters
+	 * @exception IllegalArgumentException <ul>
+	 *                <li>ERROR_NULL_ARGUMENT - if the source is null</li>
+	 *                </ul>
+	 * @exception SWTException <ul>
+	 *                <li>ERROR_WIDGET_DISPOSED - if the source is disposed</li>
+	 *                </ul>
+	 */
+	public Image createImage(final Image source) {
+		if (source == null) {
+			SWT.error(SWT.ERROR_NULL_ARGUMENT);
+		}
+		if (source.isDisposed()) {
+			SWT.error(SWT.ERROR_WIDGET_DISPOSED);
+		}
+		return new Image(source.getDevice(), apply(source.getImageData()));
+	}
+
+	/**
+	 * Apply the filters to an image data
+	 * 
+	 * @param device device of the new image
+	 * @param source source image data
+	 * @return a new image, created by the filters
+	 */
+	public Image createImage(final Device device, final ImageData source) {
+		return new Image(device, apply(source));
+	}
+
+	/**
+	 * Apply the filters to an image data
+	 * 
+	 * @param source source image data
+	 * @return a new 32-bit image data, with alpha data if some pixels are not
+	 *         opaque
+	 * @exception IllegalArgumentException <ul>
+	 *                <li>ERROR_NULL_ARGUMENT - if the source is null</li>
+	 *                </ul>
+	 */
+	public ImageData apply(final ImageData source) {
+		if (source == null) {
+			SWT.error(SWT.ERROR_NULL_ARGUMENT);
+		}
+		read(source);
+		for (final Filter filter : this.filters) {
+			filter.apply();
+		}
+		return write();
+	}
+
+	/**
+	 * Apply the filters to a mipmap
+	 * 
+	 * @param device device of the new image
+	 * @param source mipmap of the source image
+	 * @return a new image, created by the filters
+	 */
+	public Image createImage(final Device device, final Mipmap source) {
+		return new Image(device, apply(source));
+	}
+
+	/**
+	 * Apply the filters to a mipmap. If the first filter is a resize, it
+	 * starts from the smallest level of the mipmap that is not smaller than
+	 * its target
+	 * 
+	 * @param source mipmap of the source image
+	 * @return a new 32-bit image data, with alpha data if some pixels are not
+	 *         opaque
+	 * @exception IllegalArgumentException <ul>
+	 *                <li>ERROR_NULL_ARGUMENT - if the source is null</li>
+	 *                </ul>
+	 */
+	public ImageData apply(final Mipmap source) {
+		if (source == null) {
+			SWT.error(SWT.ERROR_NULL_ARGUMENT);
+		}
+		final int level = this.initialWidth == 0 ? 0 : source.getLevel(this.initialWidth, this.initialHeight);
+		this.width = source.getWidth(level);
+		this.height = source.getHeight(level);
+		this.pixels = ensureCapacity(this.pixels, this.width * this.height);
+		System.arraycopy(source.getPixels(level), 0, this.pixels, 0, this.width * this.height);
+		for (final Filter filter : this.filters) {
+			filter.apply();
+		}
+		return write();
+	}
+
+	/**
+	 * @param source image data
+	 * @return the ARGB pixels of the image data, in a new array
+	 */
+	int[] readPixels(final ImageData source) {
+		read(source);
+		final int[] result = new int[this.width * this.height];
+		System.arraycopy(this.pixels, 0, result, 0, result.length);
+		return result;
+	}
+
+	/**
+	 * Read an image data into the buffer of pixels
+	 * 
+	 * @param source image data
+	 */
+	private void read(final ImageData source) {
+		this.width = source.width;
+		this.height = source.height;
+		this.pixels = ensureCapacity(this.pixels, this.width * this.height);
+
+		final PaletteData palette = source.palette;
+		int[] colors = null;
+		if (!palette.isDirect) {
+			colors = new int[palette.colors.length];
+			for (int i = 0; i < colors.length; i++) {
+				colors[i] = palette.colors[i].red << 16 | palette.colors[i].green << 8 | palette.colors[i].blue;
+			}
+		}
+
+		final int transparencyType = source.getTransparencyType();
+		final ImageData mask = transparencyType == SWT.TRANSPARENCY_MASK || transparencyType == SWT.TRANSPARENCY_PIXEL ? source.getTransparencyMask() : null;
+		final byte[] maskRow = mask == null ? null : new byte[this.width];
+
+		for (int y = 0; y < this.height; y++) {
+			final int offset = y * this.width;
+			source.getPixels(0, y, this.width, this.pixels, offset);
+			if (mask != null) {
+				mask.getPixels(0, y, this.width, maskRow, 0);
+			}
+			for (int x = 0; x < this.width; x++) {
+				final int pixel = this.pixels[offset + x];
+				final int rgb;
+				if (colors == null) {
+					rgb = component(pixel & palette.redMask, palette.redShift) << 16 | //
+							component(pixel & palette.greenMask, palette.greenShift) << 8 | //
+							component(pixel & palette.blueMask, palette.blueShift);
+				} else {
+					rgb = colors[pixel];
+				}
+
+				final int alpha;
+				if (source.alphaData != null) {
+					alpha = source.alphaData[offset + x] & 0xFF;
+				} else if (source.alpha != -1) {
+					alpha = source.alpha;
+				} else if (maskRow != null) {
+					alpha = maskRow[x] == 0 ? 0 : 255;
+				} else {
+					alpha = 255;
+				}
+				this.pixels[offset + x] = alpha << 24 | rgb;
+			}
+		}
+	}
+
+	/**
+	 * @param value masked value of a component
+	 * @param shift shift of the component in the palette
+	 * @return the value of the component, between 0 and 255
+	 */
+	private static int component(final int value, final int shift) {
+		return (shift < 0 ? value >>> -shift : value << shift) & 0xFF;
+	}
+
+	/**
+	 * Write the buffer of pixels in a new image data
+	 * 
+	 * @return the image data
+	 */
+	private ImageData write() {
+		final ImageData data = new ImageData(this.width, this.height, 32, PALETTE);
+		final byte[] alphaData = new byte[this.width * this.height];
+		boolean transparent = false;
+		for (int y = 0; y < this.height; y++) {
+			int index = y * data.bytesPerLine;
+			final int offset = y * this.width;
+			for (int x = 0; x < this.width; x++) {
+				final int pixel = this.pixels[offset + x];
+				// 32 bits pixels are stored with the most significant byte
+				// first: unused byte, red, green, blue
+				data.data[index++] = 0;
+				data.data[index++] = (byte) (pixel >> 16);
+				data.data[index++] = (byte) (pixel >> 8);
+				data.data[index++] = (byte) pixel;
+				alphaData[offset + x] = (byte) (pixel >>> 24);
+				transparent |= pixel >>> 24 != 0xFF;
+			}
+		}
+		if (transparent) {
+			data.alphaData = alphaData;
+		}
+		return data;
+	}
+
+	/**
+	 * Resize the pixels, one axis after the other
+	 * 
+	 * @param newWidth new width
+	 * @param newHeight new height
+	 */
+	private void applyResize(final int newWidth, final int newHeight) {
+		if (newWidth != this.width) {
+			this.buffer = ensureCapacity(this.buffer, newWidth * this.height);
+			resample(this.pixels, this.buffer, this.height, this.width, newWidth, this.width, 1, newWidth, 1);
+			swap();
+			this.width = newWidth;
+		}
+		if (newHeight != this.height) {
+			this.buffer = ensureCapacity(this.buffer, this.width * newHeight);
+			resample(this.pixels, this.buffer, this.width, this.height, newHeight, 1, this.width, 1, this.width);
+			swap();
+			this.height = newHeight;
+		}
+	}
+
+	/**
+	 * Resample lines of pixels (rows or columns). The colors are weighted by
+	 * the alpha of the pixels, so transparent pixels do not darken their
+	 * neighbours
+	 * 
+	 * @param source source pixels
+	 * @param target target pixels
+	 * @param lines number of lines
+	 * @param length length of the source lines
+	 * @param newLength length of the target lines
+	 * @param sourceLineStep distance between two lines in the source
+	 * @param sourceStep distance between two pixels of a line in the source
+	 * @param targetLineStep distance between two lines in the target
+	 * @param targetStep distance between two pixels of a line in the target
+	 */
+	private static void resample(final int[] source, final int[] target, final int lines, final int length, final int newLength, final int sourceLineStep, final int sourceStep, final int targetLineStep, final int targetStep) {
+		final float scale = (float) length / newLength;
+		final int taps = scale > 1 ? (int) Math.ceil(scale) + 1 : 2;
+		final int[] starts = new int[newLength];
+		final float[] weights = new float[newLength * taps];
+
+		for (int i = 0; i < newLength; i++) {
+			if (scale > 1) {
+				// Reduction: average of the source pixels covered by the
+				// target pixel
+				final float low = i * scale;
+				final float high = Math.min(length, (i + 1) * scale);
+				starts[i] = (int) low;
+				for (int t = 0; t < taps && starts[i] + t < high; t++) {
+					final int position = starts[i] + t;
+					weights[i * taps + t] = Math.min(high, position + 1) - Math.max(low, position);
+				}
+			} else {
+				// Enlargement: linear interpolation between two pixels
+				final float center = Math.max(0, (i + 0.5f) * scale - 0.5f);
+				starts[i] = Math.min(length - 1, (int) center);
+				final float fraction = starts[i] + 1 < length ? center - starts[i] : 0;
+				weights[i * taps] = 1 - fraction;
+				weights[i * taps + 1] = fraction;
+			}
+		}
+
+		for (int line = 0; line < lines; line++) {
+			final int sourceOffset = line * sourceLineStep;
+			final int targetOffset = line * targetLineStep;
+			for (int i = 0; i < newLength; i++) {
+				float a = 0, r = 0, g = 0, b = 0, total = 0;
+				for (int t = 0; t < taps; t++) {
+					final float weight = weights[i * taps + t];
+					if (weight == 0) {
+						continue;
+					}
+					final int pixel = source[sourceOffset + (starts[i] + t) * sourceStep];
+					final float alphaWeight = weight * (pixel >>> 24);
+					a += alphaWeight;
+					r += alphaWeight * (pixel >> 16 & 0xFF);
+					g += alphaWeight * (pixel >> 8 & 0xFF);
+					b += alphaWeight * (pixel & 0xFF);
+					total += weight;
+				}
+				target[targetOffset + i * targetStep] = a == 0 ? 0 : Math.round(a / total) << 24 | Math.round(r / a) << 16 | Math.round(g / a) << 8 | Math.round(b / a);
+			}
+		}
+	}
+
+	/**
+	 * Add the reflection below the pixels. Each row of the reflection is the
+	 * average of two rows of the image, and its alpha decreases with its
+	 * position
+	 */
+	private void applyReflect() {
+		final int newHeight = (int) (this.height * 1.5);
+		this.buffer = ensureCapacity(this.buffer, this.width * newHeight);
+		System.arraycopy(this.pixels, 0, this.buffer, 0, this.width * this.height);
+		for (int y = this.height; y < newHeight; y++) {
+			final int first = Math.max(0, Math.min(this.height - 1, 3 * this.height - 2 * y - 2));
+			final int second = Math.min(this.height - 1, first + 1);
+			final int fade = 255 - 255 * y / newHeight;
+			for (int x = 0; x < this.width; x++) {
+				final int pixel1 = this.pixels[first * this.width + x];
+				final int pixel2 = this.pixels[second * this.width + x];
+				final int alpha = ((pixel1 >>> 24) + (pixel2 >>> 24)) / 2 * fade / 255;
+				this.buffer[y * this.width + x] = alpha << 24 | average(pixel1, pixel2, 16) << 16 | average(pixel1, pixel2, 8) << 8 | average(pixel1, pixel2, 0);
+			}
+		}
+		swap();
+		this.height = newHeight;
+	}
+
+	/**
+	 * @param pixel1 first pixel
+	 * @param pixel2 second pixel
+	 * @param shift shift of the component
+	 * @return the average of a component of two pixels
+	 */
+	private static int average(final int pixel1, final int pixel2, final int shift) {
+		return ((pixel1 >> shift & 0xFF) + (pixel2 >> shift & 0xFF)) / 2;
+	}
+
+	/**
+	 * Multiply the alpha of the pixels by a vertical gradient
+	 * 
+	 * @param startAlpha alpha of the first row
+	 * @param endAlpha alpha of the last row
+	 */
+	private void applyAlphaGradient(final int startAlpha, final int endAlpha) {
+		for (int y = 0; y < this.height; y++) {
+			final int factor = this.height == 1 ? startAlpha : startAlpha + (endAlpha - startAlpha) * y / (this.height - 1);
+			final int offset = y * this.width;
+			for (int x = 0; x < this.width; x++) {
+				final int pixel = this.pixels[offset + x];
+				this.pixels[offset + x] = (pixel >>> 24) * factor / 255 << 24 | pixel & 0xFFFFFF;
+			}
+		}
+	}
+
+	/**
+	 * Blur the pixels with a box filter, horizontally then vertically
+	 * 
+	 * @param radius radius of the blur
+	 */
+	private void applyBlur(final int radius) {
+		if (radius < 1) {
+			return;
+		}
+		this.buffer = ensureCapacity(this.buffer, this.width * this.height);
+		blurLines(this.pixels, this.buffer, this.height, this.width, this.width, 1, radius);
+		blurLines(this.buffer, this.pixels, this.width, this.height, 1, this.width, radius);
+	}
+
+	/**
+	 * Blur lines of pixels (rows or columns) with running sums. The window is
+	 * smaller at both ends of the lines
+	 * 
+	 * @param source source pixels
+	 * @param target target pixels
+	 * @param lines number of lines
+	 * @param length length of a line
+	 * @param lineStep distance between two lines
+	 * @param step distance between two pixels of a line
+	 * @param radius radius of the blur
+	 */
+	private static void blurLines(final int[] source, final int[] target, final int lines, final int length, final int lineStep, final int step, final int radius) {
+		for (int line = 0; line < lines; line++) {
+			final int offset = line * lineStep;
+			int a = 0, r = 0, g = 0, b = 0;
+			int left = 0;
+			int right = 0;
+			for (int i = 0; i < length; i++) {
+				// add the pixels that enter the window
+				while (right < length && right <= i + radius) {
+					final int pixel = source[offset + right++ * step];
+					a += pixel >>> 24;
+					r += pixel >> 16 & 0xFF;
+					g += pixel >> 8 & 0xFF;
+					b += pixel & 0xFF;
+				}
+				// remove the pixel that is out of the window
+				if (left < i - radius) {
+					final int pixel = source[offset + left++ * step];
+					a -= pixel >>> 24;
+					r -= pixel >> 16 & 0xFF;
+					g -= pixel >> 8 & 0xFF;
+					b -= pixel & 0xFF;
+				}
+				final int count = right - left;
+				target[offset + i * step] = a / count << 24 | r / count << 16 | g / count << 8 | b / count;
+			}
+		}
+	}
+
+	/**
+	 * Convert the pixels to shades of gray
+	 * 
+	 * @param disabled if <code>true</code>, the shades are lightened and their
+	 *            contrast is reduced
+	 */
+	private void applyGrayscale(final boolean disabled) {
+		final int size = this.width * this.height;
+		for (int i = 0; i < size; i++) {
+			final int pixel = this.pixels[i];
+			int gray = (77 * (pixel >> 16 & 0xFF) + 151 * (pixel >> 8 & 0xFF) + 28 * (pixel & 0xFF)) >> 8;
+			if (disabled) {
+				gray = 128 + gray / 2;
+			}
+			this.pixels[i] = pixel & 0xFF000000 | gray << 16 | gray << 8 | gray;
+		}
+	}
+
+	/**
+	 * Mix the pixels with a color
+	 * 
+	 * @param red red component of the color
+	 * @param green green component of the color
+	 * @param blue blue component of the color
+	 * @param factor amount of the color, between 0 and 256
+	 */
+	private void applyTint(final int red, final int green, final int blue, final int factor) {
+		final int size = this.width * this.height;
+		for (int i = 0; i < size; i++) {
+			final int pixel = this.pixels[i];
+			final int r = pixel >> 16 & 0xFF;
+			final int g = pixel >> 8 & 0xFF;
+			final int b = pixel & 0xFF;
+			this.pixels[i] = pixel & 0xFF000000 | r + ((red - r) * factor >> 8) << 16 | g + ((green - g) * factor >> 8) << 8 | b + ((blue - b) * factor >> 8);
+		}
+	}
+
+	/**
+	 * Exchange the pixels and the buffer
+	 */
+	private void swap() {
+		final int[] temp = this.pixels;
+		this.pixels = this.buffer;
+		this.buffer = temp;
+	}
+
+	/**
+	 * @param array an array
+	 * @param size required size
+	 * @return the array if it is large enough, a new array otherwise
+	 */
+	private static int[] ensureCapacity(final int[] array, final int size) {
+		return array.length >= size ? array : new int[size];
+	}
+
+}
@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (c) 2011 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - Initial implementation and API
+ *******************************************************************************/
+package org.mihalis.opal.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.ImageData;
+
+/**
+ * Instances of this class are mipmaps of an image: the image itself, then
+ * copies of half size, quarter size... down to 1 pixel. Each level is the
+ * average of 2x2 pixels of the previous level.<br/>
+ * A mipmap is built once per source image. A filter chain applied to a
+ * mipmap starts its first resize from the smallest level that is not smaller
+ * than the target, so the cost of a resize depends on the size of the target
+ * rather than the size of the source, and large reductions do not alias.
+ * 
+ * @see ImageFilterChain#apply(Mipmap)
+ */
+public class Mipmap {
+
+	private final List<int[]> levels;
+	private final List<int[]> sizes;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param source source image data
+	 * @exception IllegalArgumentException <ul>
+	 *                <li>ERROR_NULL_ARGUMENT - if the source is null</li>
+	 *                </ul>
+	 */
+	public Mipmap(final ImageData source) {
+		if (source == null) {
+			SWT.error(SWT.ERROR_NULL_ARGUMENT);
+		}
+		this.levels = new ArrayList<int[]>();
+		this.sizes = new ArrayList<int[]>();
+
+		int width = source.width;
+		int height = source.height;
+		int[] pixels = new ImageFilterChain().readPixels(source);
+		addLevel(pixels, width, height);
+		while (width > 1 || height > 1) {
+			final int newWidth = Math.max(1, width / 2);
+			final int newHeight = Math.max(1, height / 2);
+			pixels = halve(pixels, width, height, newWidth, newHeight);
+			width = newWidth;
+			height = newHeight;
+			addLevel(pixels, width, height);
+		}
+	}
+
+	/**
+	 * Add a level
+	 * 
+	 * @param pixels ARGB pixels of the level
+	 * @param width width of the level
+	 * @param height height of the level
+	 */
+	private void addLevel(final int[] pixels, final int width, final int height) {
+		this.levels.add(pixels);
+		this.sizes.add(new int[] { width, height });
+	}
+
+	/**
+	 * Compute the next level. Each pixel is the average of 2x2 pixels (2x3,
+	 * 3x2 or 3x3 on the last row or column of odd sizes), weighted by alpha
+	 * 
+	 * @param pixels pixels of the previous level
+	 * @param width width of the previous level
+	 * @param height height of the previous level
+	 * @param newWidth width of the new level
+	 * @param newHeight height of the new level
+	 * @return the pixels of the new level
+	 */
+	private static int[] halve(final int[] pixels, final int width, final int height, final int newWidth, final int newHeight) {
+		final int[] result = new int[newWidth * newHeight];
+		for (int y = 0; y < newHeight; y++) {
+			final int top = y * height / newHeight;
+			final int bottom = y == newHeight - 1 ? height : (y + 1) * height / newHeight;
+			for (int x = 0; x < newWidth; x++) {
+				final int left = x * width / newWidth;
+				final int right = x == newWidth - 1 ? width : (x + 1) * width / newWidth;
+				int a = 0, r = 0, g = 0, b = 0, count = 0;
+				for (int sy = top; sy < bottom; sy++) {
+					for (int sx = left; sx < right; sx++) {
+						final int pixel = pixels[sy * width + sx];
+						final int alpha = pixel >>> 24;
+						a += alpha;
+						r += alpha * (pixel >> 16 & 0xFF);
+						g += alpha * (pixel >> 8 & 0xFF);
+						b += alpha * (pixel & 0xFF);
+						count++;
+					}
+				}
+				result[y * newWidth + x] = a == 0 ? 0 : (a + count / 2) / count << 24 | (r + a / 2) / a << 16 | (g + a / 2) / a << 8 | (b + a / 2) / a;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param width width of the target of a resize
+	 * @param height height of the target of a resize
+	 * @return the index of the smallest level that is not smaller than the
+	 *         target (0 if the target is larger than the image)
+	 */
+	public int getLevel(final int width, final int height) {
+		int level = 0;
+		while (level + 1 < this.levels.size() && getWidth(level + 1) >= width && getHeight(level + 1) >= height) {
+			level++;
+		}
+		return level;
+	}
+
+	/**
+	 * @return the number of levels
+	 */
+	public int getLevelCount() {
+		return this.levels.size();
+	}
+
+	/**
+	 * @param level index of a level
+	 * @return the width of this level
+	 */
+	public int getWidth(final int level) {
+		return this.sizes.get(level)[0];
+	}
+
+	/**
+	 * @param level index of a level
+	 * @return the height of this level
+	 */
+	public int getHeight(final int level) {
+		return this.sizes.get(level)[1];
+	}
+
+	/**
+	 * @param level index of a level
+	 * @return the ARGB pixels of this level. The array must not be modified
+	 */
+	int[] getPixels(final int level) {
+		return this.levels.get(level);
+	}
+
+	/**
+	 * @return the number of bytes used by the levels
+	 */
+	public long getSize() {
+		long size = 0;
+		for (final int[] level : this.levels) {
+			size += 4L * level.length;
+		}
+		return size;
+	}
+
+}
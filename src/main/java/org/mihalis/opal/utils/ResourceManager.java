@@ -63,6 +63,13 @@ public class ResourceManager {
 	public static final String CPU_USAGE = "cpuUsage";
 	public static final String PEAK = "peak";
 	public static final String MB = "mb";
+	public static final String GC_TIME = "gcTime";
+	public static final String GC_COUNT = "gcCount";
+	public static final String ALLOCATION_RATE = "allocationRate";
+	public static final String OLD_GEN_MEMORY = "oldGenMemory";
+	public static final String EDEN_SPACE = "edenSpace";
+	public static final String SURVIVOR_SPACE = "survivorSpace";
+	public static final String METASPACE = "metaspace";
 
 	public static final String CALCULATOR_DIVIDE_BY_ZERO = "calculator.dividebyzero";
 	public static final String CALCULATOR_INVALID_VALUE = "calculator.invalid";
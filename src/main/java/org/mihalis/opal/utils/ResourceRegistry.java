@@ -0,0 +1,284 @@
+/*******************************************************************************
+ * Copyright (c) 2011 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - Initial implementation and API
+ *******************************************************************************/
+package org.mihalis.opal.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.graphics.FontData;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.RGB;
+import org.eclipse.swt.graphics.Resource;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * Instances of this class are registries of shared resources (images loaded
+ * from the classpath, colors and fonts). There is one registry per display.<br/>
+ * Each resource is created once, and shared by all its users. The registry
+ * counts the references: each call to a <code>getXXX</code> method must be
+ * balanced by a call to {@link #release(Resource...)}, and the resource is
+ * disposed when its last user releases it. All resources are disposed when the
+ * display is disposed.<br/>
+ * The resources returned by the registry belong to the registry: they must
+ * not be disposed by the caller. This class must be used from the UI thread.
+ */
+public class ResourceRegistry {
+
+	private static final String REGISTRY_KEY = "org.mihalis.opal.utils.ResourceRegistry";
+	private static final String DISABLED_PREFIX = "disabled:";
+
+	private final Display display;
+	private final Map<Object, Entry> entries;
+	private final Map<Resource, Entry> entriesByResource;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param display display of the resources
+	 */
+	private ResourceRegistry(final Display display) {
+		this.display = display;
+		this.entries = new HashMap<Object, Entry>();
+		this.entriesByResource = new IdentityHashMap<Resource, Entry>();
+	}
+
+	/**
+	 * @param display display
+	 * @return the registry associated to this display, created on first use
+	 */
+	public static ResourceRegistry getInstance(final Display display) {
+		if (display == null) {
+			SWT.error(SWT.ERROR_NULL_ARGUMENT);
+		}
+		ResourceRegistry registry = (ResourceRegistry) display.getData(REGISTRY_KEY);
+		if (registry == null) {
+			final ResourceRegistry newRegistry = new ResourceRegistry(display);
+			display.setData(REGISTRY_KEY, newRegistry);
+			display.disposeExec(new Runnable() {
+				@Override
+				public void run() {
+					newRegistry.clear();
+				}
+			});
+			registry = newRegistry;
+		}
+		return registry;
+	}
+
+	/**
+	 * @param path path of an image in the classpath
+	 * @return the shared image
+	 * @exception IllegalArgumentException <ul>
+	 *                <li>ERROR_NULL_ARGUMENT - if the path is null</li>
+	 *                <li>ERROR_INVALID_ARGUMENT - if the image is not in the
+	 *                classpath</li>
+	 *                </ul>
+	 */
+	public Image getImage(final String path) {
+		if (path == null) {
+			SWT.error(SWT.ERROR_NULL_ARGUMENT);
+		}
+		Entry entry = this.entries.get(path);
+		if (entry == null) {
+			entry = register(path, loadImage(path));
+		}
+		entry.count++;
+		return (Image) entry.resource;
+	}
+
+	/**
+	 * @param image an image returned by {@link #getImage(String)}
+	 * @return the shared disabled version of this image
+	 * @exception IllegalArgumentException <ul>
+	 *                <li>ERROR_NULL_ARGUMENT - if the image is null</li>
+	 *                <li>ERROR_INVALID_ARGUMENT - if the image does not belong
+	 *                to the registry</li>
+	 *                </ul>
+	 * @see ImageFilterChain#disabled()
+	 */
+	public Image getDisabledImage(final Image image) {
+		if (image == null) {
+			SWT.error(SWT.ERROR_NULL_ARGUMENT);
+		}
+		final Entry source = this.entriesByResource.get(image);
+		if (source == null || !(source.key instanceof String)) {
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT);
+		}
+		final String key = DISABLED_PREFIX + source.key;
+		Entry entry = this.entries.get(key);
+		if (entry == null) {
+			entry = register(key, new ImageFilterChain().disabled().createImage(image));
+		}
+		entry.count++;
+		return (Image) entry.resource;
+	}
+
+	/**
+	 * Load an image from the classpath
+	 * 
+	 * @param path path of the image
+	 * @return the image
+	 */
+	private Image loadImage(final String path) {
+		final InputStream stream = ResourceRegistry.class.getClassLoader().getResourceAsStream(path);
+		if (stream == null) {
+			SWT.error(SWT.ERROR_INVALID_ARGUMENT, null, path);
+		}
+		try {
+			return new Image(this.display, stream);
+		} finally {
+			try {
+				stream.close();
+			} catch (final IOException e) {
+				// The image is loaded
+			}
+		}
+	}
+
+	/**
+	 * @param r red component
+	 * @param g green component
+	 * @param b blue component
+	 * @return the shared color
+	 */
+	public Color getColor(final int r, final int g, final int b) {
+		return getColor(new RGB(r, g, b));
+	}
+
+	/**
+	 * @param rgb components of the color
+	 * @return the shared color
+	 * @exception IllegalArgumentException <ul>
+	 *                <li>ERROR_NULL_ARGUMENT - if the rgb is null</li>
+	 *                </ul>
+	 */
+	public Color getColor(final RGB rgb) {
+		if (rgb == null) {
+			SWT.error(SWT.ERROR_NULL_ARGUMENT);
+		}
+		Entry entry = this.entries.get(rgb);
+		if (entry == null) {
+			entry = register(rgb, new Color(this.display, rgb));
+		}
+		entry.count++;
+		return (Color) entry.resource;
+	}
+
+	/**
+	 * @param name name of the font
+	 * @param height height of the font, in points
+	 * @param style style of the font (SWT.NORMAL, SWT.BOLD, SWT.ITALIC)
+	 * @return the shared font
+	 */
+	public Font getFont(final String name, final int height, final int style) {
+		return getFont(new FontData(name, height, style));
+	}
+
+	/**
+	 * @param fontData description of the font
+	 * @return the shared font
+	 * @exception IllegalArgumentException <ul>
+	 *                <li>ERROR_NULL_ARGUMENT - if the font data is null</li>
+	 *                </ul>
+	 */
+	public Font getFont(final FontData fontData) {
+		if (fontData == null) {
+			SWT.error(SWT.ERROR_NULL_ARGUMENT);
+		}
+		Entry entry = this.entries.get(fontData);
+		if (entry == null) {
+			entry = register(fontData, new Font(this.display, fontData));
+		}
+		entry.count++;
+		return (Font) entry.resource;
+	}
+
+	/**
+	 * Register a new resource
+	 * 
+	 * @param key key of the resource
+	 * @param resource the resource
+	 * @return the entry of the resource
+	 */
+	private Entry register(final Object key, final Resource resource) {
+		final Entry entry = new Entry(key, resource);
+		this.entries.put(key, entry);
+		this.entriesByResource.put(resource, entry);
+		return entry;
+	}
+
+	/**
+	 * Release resources returned by this registry. A resource is disposed when
+	 * it has been released by all its users. Null resources and resources that
+	 * do not belong to the registry are ignored
+	 * 
+	 * @param resources resources to release
+	 */
+	public void release(final Resource... resources) {
+		for (final Resource resource : resources) {
+			final Entry entry = this.entriesByResource.get(resource);
+			if (entry == null) {
+				continue;
+			}
+			entry.count--;
+			if (entry.count <= 0) {
+				this.entries.remove(entry.key);
+				this.entriesByResource.remove(resource);
+				SWTGraphicUtil.safeDispose(resource);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of distinct resources held by the registry
+	 */
+	public int getResourceCount() {
+		return this.entries.size();
+	}
+
+	/**
+	 * Dispose all resources of the registry
+	 */
+	private void clear() {
+		for (final Entry entry : this.entries.values()) {
+			SWTGraphicUtil.safeDispose(entry.resource);
+		}
+		this.entries.clear();
+		this.entriesByResource.clear();
+	}
+
+	/**
+	 * Entry of the registry: a resource and its number of users
+	 */
+	private static class Entry {
+		private final Object key;
+		private final Resource resource;
+		private int count;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param key key of the resource
+		 * @param resource the resource
+		 */
+		Entry(final Object key, final Resource resource) {
+			this.key = key;
+			this.resource = resource;
+		}
+	}
+
+}
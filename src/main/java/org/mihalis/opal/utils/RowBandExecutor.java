@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Copyright (c) 2011 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - Initial implementation and API
+ *******************************************************************************/
+package org.mihalis.opal.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class splits the processing of an image in bands of rows, processed in
+ * parallel by a shared pool of daemon threads. The calling thread processes
+ * the first band itself and waits for the others.<br/>
+ * Small images are processed sequentially by the calling thread, as well as
+ * images processed from a thread of the pool. The tasks only work on arrays
+ * and image data: SWT images must still be created on the UI thread.
+ */
+public class RowBandExecutor {
+
+	/**
+	 * Minimum number of pixels of a band. Smaller images are processed
+	 * sequentially
+	 */
+	public static final int MIN_PIXELS_PER_BAND = 128 * 1024;
+
+	private static final ThreadLocal<Boolean> WORKER = new ThreadLocal<Boolean>();
+	private static ExecutorService executor;
+
+	/**
+	 * Task that processes a band of rows
+	 */
+	public interface RowBandTask {
+		/**
+		 * Process a band of rows
+		 * 
+		 * @param startRow first row of the band
+		 * @param endRow last row of the band (exclusive)
+		 */
+		void process(int startRow, int endRow);
+	}
+
+	/**
+	 * Constructor
+	 */
+	private RowBandExecutor() {
+	}
+
+	/**
+	 * @return the shared pool, created on first use
+	 */
+	private static synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = Executors.newFixedThreadPool(getParallelism(), new ThreadFactory() {
+				private final AtomicInteger counter = new AtomicInteger();
+
+				@Override
+				public Thread newThread(final Runnable runnable) {
+					final Thread thread = new Thread(new Runnable() {
+						@Override
+						public void run() {
+							WORKER.set(Boolean.TRUE);
+							runnable.run();
+						}
+					}, "Opal Image Worker-" + this.counter.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+
+	/**
+	 * @return the number of bands an image can be split in
+	 */
+	private static int getParallelism() {
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * @param width width of an image
+	 * @param height height of an image
+	 * @return the number of bands used to process this image, 1 if it is
+	 *         processed sequentially
+	 */
+	public static int getNumberOfBands(final int width, final int height) {
+		if (WORKER.get() != null) {
+			return 1;
+		}
+		final long pixels = (long) width * height;
+		return (int) Math.max(1, Math.min(Math.min(getParallelism(), height), pixels / MIN_PIXELS_PER_BAND));
+	}
+
+	/**
+	 * Process all rows of an image, in parallel if the image is large enough
+	 * 
+	 * @param width width of the image
+	 * @param height height of the image
+	 * @param task task that processes a band of rows
+	 */
+	public static void execute(final int width, final int height, final RowBandTask task) {
+		final int bands = getNumberOfBands(width, height);
+		if (bands <= 1) {
+			task.process(0, height);
+			return;
+		}
+
+		final List<Future<?>> futures = new ArrayList<Future<?>>(bands - 1);
+		for (int band = 1; band < bands; band++) {
+			final int startRow = height * band / bands;
+			final int endRow = height * (band + 1) / bands;
+			futures.add(getExecutor().submit(new Runnable() {
+				@Override
+				public void run() {
+					task.process(startRow, endRow);
+				}
+			}));
+		}
+
+		try {
+			task.process(0, height / bands);
+		} finally {
+			waitFor(futures);
+		}
+	}
+
+	/**
+	 * Wait for the end of the bands processed by the pool
+	 * 
+	 * @param futures futures of the bands
+	 */
+	private static void waitFor(final List<Future<?>> futures) {
+		boolean interrupted = false;
+		RuntimeException failure = null;
+		for (final Future<?> future : futures) {
+			while (true) {
+				try {
+					future.get();
+					break;
+				} catch (final InterruptedException e) {
+					// All bands must be done before the image is used
+					interrupted = true;
+				} catch (final ExecutionException e) {
+					if (e.getCause() instanceof Error) {
+						throw (Error) e.getCause();
+					}
+					if (failure == null) {
+						failure = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+					}
+					break;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+}
@@ -12,7 +12,6 @@ package org.mihalis.opal.utils;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
 
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.custom.StyledText;
@@ -24,11 +23,8 @@ import org.eclipse.swt.graphics.FontData;
 import org.eclipse.swt.graphics.GC;
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.graphics.ImageData;
-import org.eclipse.swt.graphics.PaletteData;
-import org.eclipse.swt.graphics.RGB;
 import org.eclipse.swt.graphics.Rectangle;
 import org.eclipse.swt.graphics.Resource;
-import org.eclipse.swt.graphics.Transform;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Control;
 import org.eclipse.swt.widgets.Display;
@@ -118,60 +114,13 @@ public class SWTGraphicUtil {
 	 *
 	 * @param source source to be reflected
 	 * @return the source image with a reflection
+	 * @see ImageFilterChain#reflect()
 	 */
 	public static Image createReflectedImage(final Image source) {
 		if (source == null) {
 			return null;
 		}
-
-		if (source.isDisposed()) {
-			SWT.error(SWT.ERROR_WIDGET_DISPOSED);
-		}
-
-		// Create a new image
-		final Rectangle sourceBounds = source.getBounds();
-		final Image newImage = new Image(source.getDevice(), new Rectangle(0, 0, sourceBounds.width, (int) (sourceBounds.height * 1.5)));
-		final GC gc = new GC(newImage);
-		gc.setAdvanced(true);
-
-		gc.drawImage(source, 0, 0);
-
-		// Add the reflection
-		final Transform t = new Transform(source.getDevice());
-		t.setElements(1, 0, 0, -.5f, 0, sourceBounds.height + sourceBounds.height / 2);
-		gc.setTransform(t);
-
-		gc.drawImage(source, 0, 0);
-
-		t.dispose();
-		gc.dispose();
-
-		// And add the alpha mask
-		final ImageData imgData = newImage.getImageData();
-		final int width = imgData.width;
-		final int height = imgData.height;
-		final byte[] alphaData = new byte[height * width];
-
-		final byte[] noAlpha = new byte[width];
-		for (int x = 0; x < width; x++) {
-			noAlpha[x] = (byte) 255;
-		}
-
-		for (int y = 0; y < height; y++) {
-			final byte[] alphaRow = new byte[width];
-			if (y < sourceBounds.height) {
-				System.arraycopy(noAlpha, 0, alphaData, y * width, width);
-			} else {
-				for (int x = 0; x < width; x++) {
-					alphaRow[x] = (byte) (255 - 255 * y / height);
-				}
-				System.arraycopy(alphaRow, 0, alphaData, y * width, width);
-			}
-
-		}
-		imgData.alphaData = alphaData;
-		newImage.dispose();
-		return new Image(source.getDevice(), imgData);
+		return new ImageFilterChain().reflect().createImage(source);
 	}
 
 	/**
@@ -181,24 +130,13 @@ public class SWTGraphicUtil {
 	 * @param newWidth new width of the image
 	 * @param newHeight new height of the image
 	 * @return a scaled image of the source
+	 * @see ImageFilterChain#resize(int, int)
 	 */
 	public static Image resize(final Image source, final int newWidth, final int newHeight) {
 		if (source == null) {
 			return null;
 		}
-
-		if (source.isDisposed()) {
-			SWT.error(SWT.ERROR_WIDGET_DISPOSED);
-		}
-
-		final Image scaledImage = new Image(source.getDevice(), newWidth, newHeight);
-		final GC gc = new GC(scaledImage);
-		gc.setAntialias(SWT.ON);
-		gc.setInterpolation(SWT.HIGH);
-		gc.drawImage(source, 0, 0, source.getBounds().width, source.getBounds().height, 0, 0, newWidth, newHeight);
-		gc.dispose();
-
-		return scaledImage;
+		return new ImageFilterChain().resize(newWidth, newHeight).createImage(source);
 	}
 
 	/**
@@ -213,53 +151,7 @@ public class SWTGraphicUtil {
 		if (source == null) {
 			return null;
 		}
-
-		if (source.isDisposed()) {
-			SWT.error(SWT.ERROR_WIDGET_DISPOSED);
-		}
-
-		final Image newImage = new Image(source.getDevice(), newWidth, (int) (newHeight * 1.5));
-		final GC gc = new GC(newImage);
-		gc.setAntialias(SWT.ON);
-		gc.setInterpolation(SWT.HIGH);
-		gc.drawImage(source, 0, 0, source.getBounds().width, source.getBounds().height, 0, 0, newWidth, newHeight);
-
-		// Add the reflection
-		final Transform t = new Transform(source.getDevice());
-		t.setElements(1, 0, 0, -.5f, 0, (float) (newHeight * 1.5));
-		gc.setTransform(t);
-
-		gc.drawImage(source, 0, 0, source.getBounds().width, source.getBounds().height, 0, 0, newWidth, newHeight);
-
-		t.dispose();
-		gc.dispose();
-
-		// And add the alpha mask
-		final ImageData imgData = newImage.getImageData();
-		final int width = imgData.width;
-		final int height = imgData.height;
-		final byte[] alphaData = new byte[height * width];
-
-		final byte[] noAlpha = new byte[width];
-		for (int x = 0; x < width; x++) {
-			noAlpha[x] = (byte) 255;
-		}
-
-		for (int y = 0; y < height; y++) {
-			final byte[] alphaRow = new byte[width];
-			if (y < newHeight) {
-				System.arraycopy(noAlpha, 0, alphaData, y * width, width);
-			} else {
-				for (int x = 0; x < width; x++) {
-					alphaRow[x] = (byte) (255 - 255 * y / height);
-				}
-				System.arraycopy(alphaRow, 0, alphaData, y * width, width);
-			}
-
-		}
-		imgData.alphaData = alphaData;
-		return new Image(source.getDevice(), imgData);
-
+		return new ImageFilterChain().resize(newWidth, newHeight).reflect().createImage(source);
 	}
 
 	/**
@@ -316,137 +208,24 @@ public class SWTGraphicUtil {
 	 * @author Nicholas Rajendram
 	 * @see http://www.eclipse.org/articles/article.php?file=Article-
 	 *      SimpleImageEffectsForSWT/index.html
+	 * @see BoxBlur
 	 */
-	public static ImageData blur(final ImageData originalImageData, int radius) {
-
-		if (radius < 1) {
-			return originalImageData;
-		}
-
-		// prepare new image data with 24-bit direct palette to hold blurred
-		// copy of image
-		final ImageData newImageData = new ImageData(originalImageData.width, originalImageData.height, 24, new PaletteData(0xFF, 0xFF00, 0xFF0000));
-		if (radius >= newImageData.height || radius >= newImageData.width) {
-			radius = Math.min(newImageData.height, newImageData.width) - 1;
-		}
-		// initialize cache
-		final ArrayList<RGB[]> rowCache = new ArrayList<RGB[]>();
-		final int cacheSize = radius * 2 + 1 > newImageData.height ? newImageData.height : radius * 2 + 1; // number
-																											// of
-																											// rows
-																											// of
-																											// imageData
-																											// we
-																											// cache
-		int cacheStartIndex = 0; // which row of imageData the cache begins with
-		for (int row = 0; row < cacheSize; row++) {
-			// row data is horizontally blurred before caching
-			rowCache.add(rowCache.size(), blurRow(originalImageData, row, radius));
-		}
-
-		// sum red, green, and blue values separately for averaging
-		final RGB[] rowRGBSums = new RGB[newImageData.width];
-		final int[] rowRGBAverages = new int[newImageData.width];
-		int topSumBoundary = 0; // current top row of summed values scope
-		int targetRow = 0; // row with RGB averages to be determined
-		int bottomSumBoundary = 0; // current bottom row of summed values scope
-		int numRows = 0; // number of rows included in current summing scope
-		for (int i = 0; i < newImageData.width; i++) {
-			rowRGBSums[i] = new RGB(0, 0, 0);
-		}
-
-		while (targetRow < newImageData.height) {
-			if (bottomSumBoundary < newImageData.height) {
-				do {
-					// sum pixel RGB values for each column in our radius scope
-					for (int col = 0; col < newImageData.width; col++) {
-						rowRGBSums[col].red += rowCache.get(bottomSumBoundary - cacheStartIndex)[col].red;
-						rowRGBSums[col].green += rowCache.get(bottomSumBoundary - cacheStartIndex)[col].green;
-						rowRGBSums[col].blue += rowCache.get(bottomSumBoundary - cacheStartIndex)[col].blue;
-					}
-					numRows++;
-					bottomSumBoundary++; // move bottom scope boundary lower
-					if (bottomSumBoundary < newImageData.height && bottomSumBoundary - cacheStartIndex > radius * 2) {
-						// grow cache
-						rowCache.add(rowCache.size(), blurRow(originalImageData, bottomSumBoundary, radius));
-					}
-				} while (bottomSumBoundary <= radius); // to initialize
-														// rowRGBSums at start
-			}
-
-			if (targetRow - topSumBoundary > radius) {
-				// subtract values of top row from sums as scope of summed
-				// values moves down
-				for (int col = 0; col < newImageData.width; col++) {
-					rowRGBSums[col].red -= rowCache.get(topSumBoundary - cacheStartIndex)[col].red;
-					rowRGBSums[col].green -= rowCache.get(topSumBoundary - cacheStartIndex)[col].green;
-					rowRGBSums[col].blue -= rowCache.get(topSumBoundary - cacheStartIndex)[col].blue;
-				}
-				numRows--;
-				topSumBoundary++; // move top scope boundary lower
-				rowCache.remove(0); // remove top row which is out of summing
-									// scope
-				cacheStartIndex++;
-			}
-
-			// calculate each column's RGB-averaged pixel
-			for (int col = 0; col < newImageData.width; col++) {
-				rowRGBAverages[col] = newImageData.palette.getPixel(new RGB(rowRGBSums[col].red / numRows, rowRGBSums[col].green / numRows, rowRGBSums[col].blue / numRows));
-			}
-
-			// replace original pixels
-			newImageData.setPixels(0, targetRow, newImageData.width, rowRGBAverages, 0);
-			targetRow++;
-		}
-		return newImageData;
+	public static ImageData blur(final ImageData originalImageData, final int radius) {
+		return BoxBlur.blur(originalImageData, radius);
 	}
 
 	/**
-	 * Average blurs a given row of image data. Returns the blurred row as a
-	 * matrix of separated RGB values.
+	 * @param originalImageData The ImageData to be blurred. Transparency
+	 *            information will be ignored.
+	 * @param radius the number of radius pixels to consider when blurring
+	 *            image.
+	 * @param passes number of passes of the average blur. Three passes give a
+	 *            good approximation of a gaussian blur
+	 * @return A blurred copy of the image data
+	 * @see BoxBlur
 	 */
-	private static RGB[] blurRow(final ImageData originalImageData, final int row, final int radius) {
-		final RGB[] rowRGBAverages = new RGB[originalImageData.width]; // resulting
-																		// rgb
-																		// averages
-		final int[] lineData = new int[originalImageData.width];
-		originalImageData.getPixels(0, row, originalImageData.width, lineData, 0);
-		int r = 0, g = 0, b = 0; // sum red, green, and blue values separately
-									// for averaging
-		int leftSumBoundary = 0; // beginning index of summed values scope
-		int targetColumn = 0; // column of RGB average to be determined
-		int rightSumBoundary = 0; // ending index of summed values scope
-		int numCols = 0; // number of columns included in current summing scope
-		RGB rgb;
-		while (targetColumn < lineData.length) {
-			if (rightSumBoundary < lineData.length) {
-				// sum RGB values for each pixel in our radius scope
-				do {
-					rgb = originalImageData.palette.getRGB(lineData[rightSumBoundary]);
-					r += rgb.red;
-					g += rgb.green;
-					b += rgb.blue;
-					numCols++;
-					rightSumBoundary++;
-				} while (rightSumBoundary <= radius); // to initialize summing
-														// scope at start
-			}
-
-			// subtract sum of left pixel as summing scope moves right
-			if (targetColumn - leftSumBoundary > radius) {
-				rgb = originalImageData.palette.getRGB(lineData[leftSumBoundary]);
-				r -= rgb.red;
-				g -= rgb.green;
-				b -= rgb.blue;
-				numCols--;
-				leftSumBoundary++;
-			}
-
-			// calculate RGB averages
-			rowRGBAverages[targetColumn] = new RGB(r / numCols, g / numCols, b / numCols);
-			targetColumn++;
-		}
-		return rowRGBAverages;
+	public static ImageData blur(final ImageData originalImageData, final int radius, final int passes) {
+		return BoxBlur.blur(originalImageData, radius, passes);
 	}
 
 	/**
@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - initial API and implementation
+ *******************************************************************************/
+package org.mihalis.opal.SystemMonitor;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.remote.JMXConnectorServer;
+import javax.management.remote.JMXConnectorServerFactory;
+import javax.management.remote.JMXServiceURL;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Shell;
+import org.mihalis.opal.systemMonitor.MBeanAttributeReader;
+import org.mihalis.opal.systemMonitor.SampleIdentifier;
+import org.mihalis.opal.systemMonitor.SystemMonitor;
+
+/**
+ * This snippet monitors a JVM through a JMX connector. The connector server is
+ * started in the same JVM, so no external service is needed
+ */
+public class RemoteSystemMonitorSnippet {
+	public static void main(final String[] args) throws Exception {
+		final JMXConnectorServer server = JMXConnectorServerFactory.newJMXConnectorServer(new JMXServiceURL("service:jmx:rmi://localhost"), null, ManagementFactory.getPlatformMBeanServer());
+		server.start();
+		final JMXServiceURL url = server.getAddress();
+
+		final Display display = new Display();
+		final Shell shell = new Shell(display);
+		shell.setText("Monitoring " + url.getProtocol() + "://" + url.getHost());
+		shell.setLayout(new GridLayout(2, false));
+
+		final SystemMonitor all = new SystemMonitor(shell, SWT.NONE);
+		all.displayAll(url);
+		all.setCaptionVisible(false);
+		all.setLayoutData(createLayoutData());
+
+		final SystemMonitor cpu = new SystemMonitor(shell, SWT.NONE, SampleIdentifier.CPU_USAGE, url);
+		cpu.setLayoutData(createLayoutData());
+
+		final SystemMonitor heap = new SystemMonitor(shell, SWT.NONE, SampleIdentifier.HEAP_MEMORY, url);
+		heap.setLayoutData(createLayoutData());
+
+		final SystemMonitor gcTime = new SystemMonitor(shell, SWT.NONE, SampleIdentifier.GC_TIME, url);
+		gcTime.setLayoutData(createLayoutData());
+
+		shell.pack();
+		shell.open();
+
+		while (!shell.isDisposed()) {
+			if (!display.readAndDispatch()) {
+				display.sleep();
+			}
+		}
+		display.dispose();
+		MBeanAttributeReader.closeRemoteConnections();
+		server.stop();
+	}
+
+	/**
+	 * @return a layout data
+	 */
+	private static GridData createLayoutData() {
+		final GridData gd = new GridData(GridData.FILL, GridData.FILL, true, true);
+		gd.widthHint = 500;
+		gd.heightHint = 300;
+		return gd;
+	}
+}
@@ -45,6 +45,12 @@ public class SystemMonitorSnippet {
 		final SystemMonitor threads = new SystemMonitor(shell, SWT.NONE, SampleIdentifier.THREADS);
 		threads.setLayoutData(createLayoutData());
 
+		final SystemMonitor gcTime = new SystemMonitor(shell, SWT.NONE, SampleIdentifier.GC_TIME);
+		gcTime.setLayoutData(createLayoutData());
+
+		final SystemMonitor allocationRate = new SystemMonitor(shell, SWT.NONE, SampleIdentifier.ALLOCATION_RATE);
+		allocationRate.setLayoutData(createLayoutData());
+
 		final SystemMonitor custom = new SystemMonitor(shell, SWT.NONE);
 		custom.addSample("custom", new RandomSample());
 		custom.setCaption("custom", "Random value:");
@@ -52,6 +58,11 @@ public class SystemMonitorSnippet {
 		custom.setFormatPattern("custom", "%{value},.0f / %{maxValue},.0f / %{percentValue}.0f%%");
 		custom.setLayoutData(createLayoutData());
 
+		final SystemMonitor lastHour = new SystemMonitor(shell, SWT.NONE, SampleIdentifier.CPU_USAGE);
+		lastHour.setHistoryDuration(60 * 60 * 1000);
+		lastHour.setCaption(SampleIdentifier.CPU_USAGE.name(), "CPU (last hour):");
+		lastHour.setLayoutData(createLayoutData());
+
 		shell.pack();
 		shell.open();
 
@@ -0,0 +1,509 @@
+/*******************************************************************************
+ * Copyright (c) 2011 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - Initial implementation and API
+ *******************************************************************************/
+package org.mihalis.opal.benchmark;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.DeviceData;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.layout.FillLayout;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Shell;
+import org.mihalis.opal.angles.AngleSlider;
+import org.mihalis.opal.breadcrumb.Breadcrumb;
+import org.mihalis.opal.breadcrumb.BreadcrumbItem;
+import org.mihalis.opal.imageSelector.ISItem;
+import org.mihalis.opal.imageSelector.ImageSelector;
+import org.mihalis.opal.obutton.OButton;
+import org.mihalis.opal.rangeSlider.RangeSlider;
+import org.mihalis.opal.starRating.StarRating;
+import org.mihalis.opal.switchButton.SwitchButton;
+import org.mihalis.opal.systemMonitor.SystemMonitor;
+import org.mihalis.opal.utils.AnimationScheduler;
+
+import com.sun.management.ThreadMXBean;
+
+/**
+ * This program measures the paint code of the custom drawn widgets. Each
+ * widget is created in a shell that is never opened, then painted N times in
+ * an off-screen image: the paint listeners of the widget receive a paint event
+ * whose GC draws in the image.<br/>
+ * For each widget, the program reports the time per frame, the bytes allocated
+ * per frame by the UI thread and the number of native resources (images,
+ * colors, fonts, GCs...) that have been created and not disposed during the
+ * frames. The report is written as JSON on the standard output, or in a file.
+ * <p>
+ * Options (system properties):
+ * <ul>
+ * <li>benchmark.frames: number of measured frames (default 200)</li>
+ * <li>benchmark.warmup: number of frames painted before the measure (default
+ * 20)</li>
+ * <li>benchmark.widgets: comma separated names of the widgets to measure
+ * (default all)</li>
+ * <li>benchmark.output: file that receives the report (default standard
+ * output)</li>
+ * <li>benchmark.strict: if true, the program exits with the status 1 when a
+ * widget whose frames must not allocate anything allocates (default false,
+ * only a warning is printed)</li>
+ * </ul>
+ * </p>
+ * On a Linux box without display, run it in a virtual X server:
+ * 
+ * <pre>
+ * xvfb-run -a mvn -Pbenchmark test-compile exec:java -Dbenchmark.output=target/benchmark.json
+ * </pre>
+ */
+public class PaintBenchmark {
+
+	private static final int WIDTH = 640;
+	private static final int HEIGHT = 360;
+	// Kept in a field: getThreadMXBean() allocates at each call
+	private static final java.lang.management.ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+
+	/**
+	 * A widget to measure
+	 */
+	private static abstract class Benchmark {
+		private final String name;
+
+		Benchmark(final String name) {
+			this.name = name;
+		}
+
+		/**
+		 * @param parent parent of the widget
+		 * @return the widget, ready to be painted
+		 */
+		abstract Control create(Composite parent);
+
+		/**
+		 * @return <code>true</code> if a frame of this widget must not
+		 *         allocate anything
+		 */
+		boolean isAllocationFree() {
+			return false;
+		}
+
+		/**
+		 * Called before each frame, for instance to keep an animation running.
+		 * The time spent and the bytes allocated by this method are not
+		 * measured
+		 * 
+		 * @param control the widget
+		 */
+		void beforeFrame(final Control control) {
+		}
+	}
+
+	/**
+	 * Result of the measure of a widget
+	 */
+	private static class Result {
+		private final String name;
+		private double msPerFrame;
+		private long bytesPerFrame;
+		private boolean allocationFree;
+		private int handleGrowth;
+		private String error;
+
+		Result(final String name) {
+			this.name = name;
+		}
+	}
+
+	/**
+	 * @param args not used, see the system properties
+	 * @throws IOException if the report can not be written
+	 */
+	public static void main(final String[] args) throws IOException {
+		final int frames = Integer.getInteger("benchmark.frames", 200);
+		final int warmup = Integer.getInteger("benchmark.warmup", 20);
+		final String widgets = System.getProperty("benchmark.widgets");
+		final String output = System.getProperty("benchmark.output");
+		final boolean strict = Boolean.getBoolean("benchmark.strict");
+
+		final DeviceData data = new DeviceData();
+		data.tracking = true;
+		final Display display = new Display(data);
+		final Shell shell = new Shell(display);
+		shell.setLayout(new FillLayout());
+		shell.setSize(WIDTH, HEIGHT);
+		final Image buffer = new Image(display, WIDTH, HEIGHT);
+
+		final List<Result> results = new ArrayList<Result>();
+		for (final Benchmark benchmark : createBenchmarks()) {
+			if (widgets == null || Arrays.asList(widgets.split(",")).contains(benchmark.name)) {
+				results.add(measure(benchmark, shell, buffer, warmup, frames));
+			}
+		}
+
+		buffer.dispose();
+		display.dispose();
+
+		final PrintWriter writer = output == null ? new PrintWriter(System.out) : new PrintWriter(new OutputStreamWriter(new FileOutputStream(output), "UTF-8"));
+		try {
+			writeReport(writer, frames, results);
+		} finally {
+			writer.flush();
+			if (output != null) {
+				writer.close();
+			}
+		}
+
+		if (!checkAllocations(results) && strict) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Print a warning for each widget whose frames must not allocate anything
+	 * and that allocates
+	 * 
+	 * @param results results of the widgets
+	 * @return <code>true</code> if no widget has failed the check
+	 */
+	private static boolean checkAllocations(final List<Result> results) {
+		boolean success = true;
+		for (final Result result : results) {
+			if (!result.allocationFree || result.error != null) {
+				continue;
+			}
+			if (result.bytesPerFrame < 0) {
+				System.err.println("WARNING: " + result.name + " should not allocate, but this JVM can not measure the allocated bytes");
+			} else if (result.bytesPerFrame > 0) {
+				System.err.println("WARNING: " + result.name + " should not allocate, but allocates " + result.bytesPerFrame + " bytes per frame");
+				success = false;
+			}
+		}
+		return success;
+	}
+
+	/**
+	 * @return the widgets to measure
+	 */
+	private static List<Benchmark> createBenchmarks() {
+		final List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		benchmarks.add(new Benchmark("AngleSlider") {
+			@Override
+			Control create(final Composite parent) {
+				final AngleSlider slider = new AngleSlider(parent, SWT.NONE);
+				slider.setSelection(45);
+				return slider;
+			}
+		});
+		benchmarks.add(new Benchmark("Breadcrumb") {
+			@Override
+			Control create(final Composite parent) {
+				final Breadcrumb breadcrumb = new Breadcrumb(parent, SWT.BORDER);
+				for (int i = 0; i < 5; i++) {
+					final BreadcrumbItem item = new BreadcrumbItem(breadcrumb, SWT.PUSH);
+					item.setText("Item " + i);
+				}
+				return breadcrumb;
+			}
+		});
+		benchmarks.add(new Benchmark("ImageSelector") {
+			@Override
+			Control create(final Composite parent) {
+				return createImageSelector(parent);
+			}
+		});
+		benchmarks.add(new Benchmark("ImageSelectorAnimated") {
+			private final Event keyEvent = new Event();
+			private int direction = SWT.ARROW_RIGHT;
+
+			@Override
+			Control create(final Composite parent) {
+				return createImageSelector(parent);
+			}
+
+			@Override
+			boolean isAllocationFree() {
+				return true;
+			}
+
+			@Override
+			void beforeFrame(final Control control) {
+				// Run the frame of the scheduler, and start a new scroll when
+				// the previous one is over, so that each measured paint is a
+				// paint of a running animation
+				final ImageSelector imageSelector = (ImageSelector) control;
+				control.getDisplay().readAndDispatch();
+				if (AnimationScheduler.getInstance(control.getDisplay()).isAnimated(control)) {
+					return;
+				}
+				if (imageSelector.getIndex() == imageSelector.getItems().size() - 1) {
+					direction = SWT.ARROW_LEFT;
+				} else if (imageSelector.getIndex() == 0) {
+					direction = SWT.ARROW_RIGHT;
+				}
+				keyEvent.keyCode = direction;
+				control.notifyListeners(SWT.KeyUp, keyEvent);
+			}
+		});
+		benchmarks.add(new Benchmark("OButton") {
+			@Override
+			Control create(final Composite parent) {
+				final OButton button = new OButton(parent, SWT.PUSH);
+				button.setText("Button");
+				return button;
+			}
+		});
+		benchmarks.add(new Benchmark("RangeSlider") {
+			@Override
+			Control create(final Composite parent) {
+				final RangeSlider slider = new RangeSlider(parent, SWT.HORIZONTAL | SWT.HIGH);
+				slider.setSelection(20, 60);
+				return slider;
+			}
+		});
+		benchmarks.add(new Benchmark("RangeSliderDisabled") {
+			@Override
+			Control create(final Composite parent) {
+				final RangeSlider slider = new RangeSlider(parent, SWT.HORIZONTAL | SWT.HIGH);
+				slider.setSelection(20, 60);
+				slider.setEnabled(false);
+				return slider;
+			}
+		});
+		benchmarks.add(new Benchmark("StarRating") {
+			@Override
+			Control create(final Composite parent) {
+				final StarRating rating = new StarRating(parent, SWT.NONE);
+				rating.setMaxNumberOfStars(10);
+				rating.setCurrentNumberOfStars(4);
+				return rating;
+			}
+		});
+		benchmarks.add(new Benchmark("SwitchButton") {
+			@Override
+			Control create(final Composite parent) {
+				final SwitchButton button = new SwitchButton(parent, SWT.NONE);
+				button.setText("Switch");
+				return button;
+			}
+		});
+		benchmarks.add(new Benchmark("SystemMonitor") {
+			@Override
+			Control create(final Composite parent) {
+				return new SystemMonitor(parent, SWT.NONE);
+			}
+		});
+		return benchmarks;
+	}
+
+	/**
+	 * @param parent parent of the widget
+	 * @return an image selector with the images of the snippet
+	 */
+	private static ImageSelector createImageSelector(final Composite parent) {
+		final ImageSelector imageSelector = new ImageSelector(parent, SWT.NONE);
+		final List<ISItem> items = new ArrayList<ISItem>();
+		for (final String title : new String[] { "Black Eyed Peas", "Coldplay", "Foo Fighters", "Gorillaz", "Green Day", "Moby", "Norah Jones", "Shivaree", "Sin City" }) {
+			items.add(new ISItem(title, "org/mihalis/opal/imageSelector/images/" + title + ".jpg"));
+		}
+		imageSelector.setItems(items);
+		return imageSelector;
+	}
+
+	/**
+	 * Measure a widget
+	 * 
+	 * @param benchmark the widget to measure
+	 * @param shell shell that contains the widget
+	 * @param buffer off-screen image
+	 * @param warmup number of frames painted before the measure
+	 * @param frames number of measured frames
+	 * @return the result
+	 */
+	private static Result measure(final Benchmark benchmark, final Shell shell, final Image buffer, final int warmup, final int frames) {
+		final Result result = new Result(benchmark.name);
+		result.allocationFree = benchmark.isAllocationFree();
+		final Display display = shell.getDisplay();
+		Control control = null;
+		final GC gc = new GC(buffer);
+		final Event event = new Event();
+		try {
+			control = benchmark.create(shell);
+			shell.layout(true);
+			flushEvents(display);
+
+			for (int i = 0; i < warmup; i++) {
+				benchmark.beforeFrame(control);
+				paint(control, gc, event);
+			}
+
+			final int handlesBefore = countHandles(display);
+			final long probeCost = getProbeCost();
+			long time = 0;
+			long bytes = 0;
+			for (int i = 0; i < frames; i++) {
+				benchmark.beforeFrame(control);
+				final long bytesBefore = getAllocatedBytes();
+				final long start = System.nanoTime();
+				paint(control, gc, event);
+				time += System.nanoTime() - start;
+				bytes += getAllocatedBytes() - bytesBefore - probeCost;
+			}
+			final int handlesAfter = countHandles(display);
+
+			result.msPerFrame = time / 1000000d / frames;
+			result.bytesPerFrame = getAllocatedBytes() < 0 ? -1 : Math.max(0, bytes) / frames;
+			result.handleGrowth = handlesBefore < 0 ? -1 : handlesAfter - handlesBefore;
+		} catch (final RuntimeException e) {
+			result.error = e.toString();
+		} catch (final Error e) {
+			result.error = e.toString();
+		} finally {
+			gc.dispose();
+			if (control != null) {
+				control.dispose();
+			}
+			flushEvents(display);
+		}
+		return result;
+	}
+
+	/**
+	 * Paint a widget in an off-screen GC. The event is reused, so the
+	 * allocations of the benchmark itself do not count
+	 * 
+	 * @param control widget
+	 * @param gc GC of the off-screen image
+	 * @param event paint event, reused for all frames
+	 */
+	private static void paint(final Control control, final GC gc, final Event event) {
+		event.gc = gc;
+		event.x = 0;
+		event.y = 0;
+		event.width = WIDTH;
+		event.height = HEIGHT;
+		control.notifyListeners(SWT.Paint, event);
+	}
+
+	/**
+	 * Process the pending events (layout, resize...)
+	 * 
+	 * @param display display
+	 */
+	private static void flushEvents(final Display display) {
+		while (display.readAndDispatch()) {
+			// Nothing to do
+		}
+	}
+
+	/**
+	 * @param display display created with tracking enabled
+	 * @return the number of native resources not disposed, or -1 if the
+	 *         platform does not track them
+	 */
+	private static int countHandles(final Display display) {
+		final Object[] objects = display.getDeviceData().objects;
+		return objects == null ? -1 : objects.length;
+	}
+
+	/**
+	 * @return the number of bytes allocated by the current thread, or -1 if
+	 *         the JVM does not provide it
+	 */
+	private static long getAllocatedBytes() {
+		try {
+			// Same extension of the bean as the allocation rate sample of the
+			// SystemMonitor. It is a public interface, so it can be called
+			// without reflection on any recent JVM
+			if (!(THREAD_BEAN instanceof ThreadMXBean)) {
+				return -1;
+			}
+			return ((ThreadMXBean) THREAD_BEAN).getThreadAllocatedBytes(Thread.currentThread().getId());
+		} catch (final UnsupportedOperationException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * @return the number of bytes allocated by a call to
+	 *         {@link #getAllocatedBytes()}, removed from the measures
+	 */
+	private static long getProbeCost() {
+		long cost = Long.MAX_VALUE;
+		for (int i = 0; i < 10; i++) {
+			final long before = getAllocatedBytes();
+			final long after = getAllocatedBytes();
+			cost = Math.min(cost, after - before);
+		}
+		return Math.max(0, cost);
+	}
+
+	/**
+	 * Write the report
+	 * 
+	 * @param writer writer
+	 * @param frames number of measured frames
+	 * @param results results of the widgets
+	 */
+	private static void writeReport(final PrintWriter writer, final int frames, final List<Result> results) {
+		writer.println("{");
+		writer.println("  \"platform\": " + quote(SWT.getPlatform()) + ",");
+		writer.println("  \"swtVersion\": " + SWT.getVersion() + ",");
+		writer.println("  \"javaVersion\": " + quote(System.getProperty("java.version")) + ",");
+		writer.println("  \"frames\": " + frames + ",");
+		writer.println("  \"width\": " + WIDTH + ",");
+		writer.println("  \"height\": " + HEIGHT + ",");
+		writer.println("  \"widgets\": [");
+		for (int i = 0; i < results.size(); i++) {
+			final Result result = results.get(i);
+			final StringBuilder line = new StringBuilder("    { \"name\": ").append(quote(result.name));
+			if (result.error == null) {
+				line.append(", \"msPerFrame\": ").append(String.format(Locale.US, "%.4f", result.msPerFrame));
+				line.append(", \"bytesPerFrame\": ").append(result.bytesPerFrame);
+				line.append(", \"handleGrowth\": ").append(result.handleGrowth);
+			} else {
+				line.append(", \"error\": ").append(quote(result.error));
+			}
+			line.append(i == results.size() - 1 ? " }" : " },");
+			writer.println(line);
+		}
+		writer.println("  ]");
+		writer.println("}");
+	}
+
+	/**
+	 * @param value a string
+	 * @return the string as a JSON literal
+	 */
+	private static String quote(final String value) {
+		final StringBuilder builder = new StringBuilder("\"");
+		for (final char c : value.toCharArray()) {
+			if (c == '"' || c == '\\') {
+				builder.append('\\').append(c);
+			} else if (c < 0x20) {
+				builder.append(String.format("\\u%04x", (int) c));
+			} else {
+				builder.append(c);
+			}
+		}
+		return builder.append('"').toString();
+	}
+
+}
@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (c) 2011 Laurent CARON
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Laurent CARON (laurent.caron at gmail dot com) - Initial implementation and API
+ *******************************************************************************/
+package org.mihalis.opal.imageSelector;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.layout.FillLayout;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Shell;
+
+/**
+ * A snippet for the Image Selector widget with an item provider: a catalogue
+ * of 10000 images loaded on demand
+ *
+ */
+public class ImageSelectorProviderSnippet {
+	private static final String[] TITLES = { "Black Eyed Peas", "Coldplay", "Foo Fighters", "Gorillaz", "Green Day", "Moby", "Norah Jones", "Shivaree", "Sin City" };
+
+	public static void main(final String[] args) {
+		final Display display = new Display();
+		final Shell shell = new Shell(display);
+		shell.setLayout(new FillLayout());
+
+		final ImageSelector imageSelector = new ImageSelector(shell, SWT.NONE);
+		imageSelector.setItemProvider(new ISItemProvider() {
+
+			@Override
+			public int getItemCount() {
+				return 10000;
+			}
+
+			@Override
+			public String getText(final int index) {
+				return "#" + index + " " + TITLES[index % TITLES.length];
+			}
+
+			@Override
+			public ImageData loadImageData(final int index) {
+				final InputStream stream = ImageSelectorProviderSnippet.class.getClassLoader().getResourceAsStream("org/mihalis/opal/imageSelector/images/" + TITLES[index % TITLES.length] + ".jpg");
+				if (stream == null) {
+					return null;
+				}
+				try {
+					return new ImageData(stream);
+				} finally {
+					try {
+						stream.close();
+					} catch (final IOException e) {
+						// The image is loaded
+					}
+				}
+			}
+		});
+
+		// Open the shell
+		shell.setSize(640, 360);
+		shell.open();
+		while (!shell.isDisposed()) {
+			if (!display.readAndDispatch()) {
+				display.sleep();
+			}
+		}
+		display.dispose();
+	}
+
+}
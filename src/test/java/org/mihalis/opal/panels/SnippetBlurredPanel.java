@@ -64,6 +64,7 @@ public class SnippetBlurredPanel {
 
 	private static void createButtons(final Shell shell) {
 		final BlurredPanel p = new BlurredPanel(shell);
+		p.setProgressive(true);
 
 		final Composite composite = new Composite(shell, SWT.NONE);
 		composite.setLayoutData(new GridData(SWT.FILL, SWT.FILL, true, true, 2, 1));